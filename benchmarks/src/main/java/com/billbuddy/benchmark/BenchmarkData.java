@@ -0,0 +1,134 @@
+// BenchmarkData.java
+package com.billbuddy.benchmark;
+
+import com.billbuddy.index.LexicalIndex;
+import com.billbuddy.index.VectorIndex;
+import com.billbuddy.index.VectorSearchStrategy;
+import com.billbuddy.model.Plan;
+import com.billbuddy.model.PlanType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic plan catalogs and embeddings for benchmarks.
+ */
+public final class BenchmarkData {
+
+    public static final int DIMENSION = 1536;
+
+    private static final String[] PROVIDERS = {"Telstra", "Optus", "Vodafone", "TPG", "Aussie Broadband", "AGL", "Origin", "EnergyAustralia"};
+    private static final PlanType[] TYPES = PlanType.values();
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Gaussian components scaled like ada-002 output (roughly unit length).
+     */
+    public static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        double scale = 1.0 / Math.sqrt(dimension);
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) (random.nextGaussian() * scale);
+        }
+        return vector;
+    }
+
+    public static float[][] randomVectors(int count, int dimension, long seed) {
+        Random random = new Random(seed);
+        float[][] vectors = new float[count][];
+        for (int i = 0; i < count; i++) {
+            vectors[i] = randomVector(random, dimension);
+        }
+        return vectors;
+    }
+
+    public static List<Plan> catalog(int size, long seed) {
+        Random random = new Random(seed);
+        List<Plan> plans = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Plan plan = new Plan();
+            plan.setId((long) i + 1);
+            plan.setType(TYPES[random.nextInt(TYPES.length)]);
+            plan.setProvider(PROVIDERS[random.nextInt(PROVIDERS.length)]);
+            plan.setName("Plan " + (i + 1));
+            plan.setDescription("Synthetic plan " + (i + 1) + " with " + (10 + random.nextInt(490)) + "GB data and "
+                    + "no lock-in contract. Suitable for streaming, gaming and working from home.");
+            plan.setMonthlyPrice(20.0 + random.nextInt(200));
+            plan.setDataLimit(random.nextBoolean() ? "Unlimited" : (50 + random.nextInt(450)) + "GB");
+            plan.setSpeed(random.nextBoolean() ? "100 Mbps" : "5G");
+            plan.setContractLength(random.nextBoolean() ? "No contract" : "12 months");
+            plan.setFeatures("Unlimited calls, 24/7 support, Free modem");
+            plan.setLimitations("Speeds vary at peak times");
+            plan.setBestFor("Families, heavy streaming users");
+            plans.add(plan);
+        }
+        return plans;
+    }
+
+    public static VectorIndex index(List<Plan> plans, float[][] vectors, VectorSearchStrategy strategy) {
+        VectorIndex index = new VectorIndex(strategy);
+        for (int i = 0; i < plans.size(); i++) {
+            index.upsert(plans.get(i), vectors[i]);
+        }
+        return index;
+    }
+
+    /**
+     * Lexical index over the same text VectorStoreService indexes.
+     */
+    public static LexicalIndex lexicalIndex(List<Plan> plans) {
+        LexicalIndex index = new LexicalIndex();
+        for (Plan plan : plans) {
+            index.upsert(plan, String.format(
+                    "Provider: %s. Plan: %s. Type: %s. Price: $%.2f/month. %s Features: %s. Best for: %s",
+                    plan.getProvider(), plan.getName(), plan.getType(), plan.getMonthlyPrice(),
+                    plan.getDescription(), plan.getFeatures(), plan.getBestFor()));
+        }
+        return index;
+    }
+
+    public static String sampleAnswer() {
+        return """
+                RECOMMENDATION: Telstra Family Unlimited NBN
+                EXPLANATION: It offers unlimited data on NBN 100 with no throttling, which suits a family
+                that streams and games heavily. There is no lock-in contract and the modem is included.
+                MONTHLY COST: $99.00 per month
+                TRADEOFFS:
+                - Premium pricing compared with Optus Internet Everyday Plus ($75/month)
+                - Optus includes Optus Sport but caps data at 500GB
+                - Consider Vodafone Mobile Max if mobile data matters more than home internet
+                """;
+    }
+
+    public static String sampleJsonAnswer() {
+        return """
+                {"recommendation": "Telstra Family Unlimited NBN",
+                 "explanation": "It offers unlimited data on NBN 100 with no throttling, which suits a family that streams and games heavily. There is no lock-in contract and the modem is included.",
+                 "estimatedMonthlyCost": 99.00,
+                 "tradeoffs": ["Premium pricing compared with Optus Internet Everyday Plus ($75/month)",
+                               "Optus includes Optus Sport but caps data at 500GB",
+                               "Consider Vodafone Mobile Max if mobile data matters more than home internet"]}
+                """;
+    }
+
+    public static String document(int chars, long seed) {
+        Random random = new Random(seed);
+        String[] words = {"unlimited", "data", "plan", "NBN", "speed", "contract", "modem", "support",
+                "streaming", "family", "5G", "roaming", "solar", "tariff", "usage", "monthly"};
+        StringBuilder text = new StringBuilder(chars + 32);
+        int sentenceLength = 0;
+        while (text.length() < chars) {
+            text.append(words[random.nextInt(words.length)]);
+            if (++sentenceLength >= 8 + random.nextInt(12)) {
+                text.append(". ");
+                sentenceLength = 0;
+            } else {
+                text.append(' ');
+            }
+        }
+        return text.substring(0, chars);
+    }
+}
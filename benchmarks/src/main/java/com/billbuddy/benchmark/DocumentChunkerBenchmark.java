@@ -0,0 +1,48 @@
+// DocumentChunkerBenchmark.java
+package com.billbuddy.benchmark;
+
+import com.billbuddy.util.DocumentChunker;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DocumentChunkerBenchmark {
+
+    @Param({"2000", "50000"})
+    public int documentChars;
+
+    private final DocumentChunker chunker = new DocumentChunker();
+    private String document;
+
+    @Setup
+    public void setup() {
+        document = BenchmarkData.document(documentChars, 11);
+    }
+
+    @Benchmark
+    public List<String> chunkText() {
+        return chunker.chunkText(document);
+    }
+
+    /**
+     * Streaming path used by indexing: chunks are consumed one at a time.
+     */
+    @Benchmark
+    public int streamChunks() {
+        int chars = 0;
+        Iterator<String> chunks = chunker.chunks(new StringReader(document));
+        while (chunks.hasNext()) {
+            chars += chunks.next().length();
+        }
+        return chars;
+    }
+}
@@ -0,0 +1,64 @@
+// EmbeddingDecodeBenchmark.java
+package com.billbuddy.benchmark;
+
+import com.billbuddy.util.EmbeddingCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning one stored 1536-dim embedding back into a vector:
+ * the legacy JSON CLOB versus each EmbeddingCodec encoding.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmbeddingDecodeBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private String json;
+    private byte[] float32;
+    private byte[] float16;
+    private byte[] int8;
+
+    @Setup
+    public void setup() throws Exception {
+        float[] vector = BenchmarkData.randomVector(new Random(5), BenchmarkData.DIMENSION);
+        List<Double> boxed = new ArrayList<>(vector.length);
+        for (float v : vector) {
+            boxed.add((double) v);
+        }
+        json = objectMapper.writeValueAsString(boxed);
+        float32 = EmbeddingCodec.encode(vector, EmbeddingCodec.Encoding.FLOAT32);
+        float16 = EmbeddingCodec.encode(vector, EmbeddingCodec.Encoding.FLOAT16);
+        int8 = EmbeddingCodec.encode(vector, EmbeddingCodec.Encoding.INT8);
+    }
+
+    @Benchmark
+    public List<Double> jsonToBoxedList() throws Exception {
+        return objectMapper.readValue(json,
+                objectMapper.getTypeFactory().constructCollectionType(List.class, Double.class));
+    }
+
+    @Benchmark
+    public float[] binaryFloat32() {
+        return EmbeddingCodec.decode(float32);
+    }
+
+    @Benchmark
+    public float[] binaryFloat16() {
+        return EmbeddingCodec.decode(float16);
+    }
+
+    @Benchmark
+    public float[] binaryInt8() {
+        return EmbeddingCodec.decode(int8);
+    }
+}
@@ -0,0 +1,52 @@
+// EmbeddingServiceBenchmark.java
+package com.billbuddy.benchmark;
+
+import com.billbuddy.provider.HashingEmbeddingProvider;
+import com.billbuddy.service.EmbeddingCache;
+import com.billbuddy.service.EmbeddingService;
+import com.billbuddy.service.UpstreamGuard;
+import com.billbuddy.service.UpstreamLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EmbeddingService overhead around the embeddings call: cache key hashing and
+ * the upstream guard, with the in-process {@link HashingEmbeddingProvider}
+ * (no latency) standing in for the API.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmbeddingServiceBenchmark {
+
+    private static final String QUERY = "What is the cheapest NBN plan for a family of four?";
+
+    private EmbeddingService cached;
+    private EmbeddingService uncached;
+
+    @Setup
+    public void setup() {
+        UpstreamGuard upstream = new UpstreamGuard(new UpstreamLimiter("embedding", 64, Duration.ofSeconds(1)));
+        HashingEmbeddingProvider provider = new HashingEmbeddingProvider(BenchmarkData.DIMENSION, Duration.ZERO);
+        cached = new EmbeddingService(provider, 100,
+                new EmbeddingCache(10_000, Duration.ofHours(1), "", 0), upstream);
+        uncached = new EmbeddingService(provider, 100,
+                new EmbeddingCache(0, Duration.ZERO, "", 0), upstream);
+        cached.embed(QUERY);
+    }
+
+    @Benchmark
+    public float[] embedCacheHit() {
+        return cached.embed(QUERY);
+    }
+
+    @Benchmark
+    public float[] embedUncached() {
+        return uncached.embed(QUERY);
+    }
+}
@@ -0,0 +1,66 @@
+// HnswRecall.java
+package com.billbuddy.benchmark;
+
+import com.billbuddy.index.ExactSearchStrategy;
+import com.billbuddy.index.HnswSearchStrategy;
+import com.billbuddy.index.SearchHit;
+import com.billbuddy.index.VectorIndex;
+import com.billbuddy.model.Plan;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Prints recall@K of the HNSW strategy against the exact scan.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.billbuddy.benchmark.HnswRecall [size] [m] [efConstruction] [efSearch] [k]
+ * </pre>
+ */
+public final class HnswRecall {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int m = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int efConstruction = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int efSearch = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        int k = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        int queryCount = 200;
+
+        List<Plan> plans = BenchmarkData.catalog(size, 1);
+        float[][] vectors = BenchmarkData.randomVectors(size, BenchmarkData.DIMENSION, 2);
+        VectorIndex exact = BenchmarkData.index(plans, vectors, new ExactSearchStrategy());
+
+        long buildStart = System.nanoTime();
+        VectorIndex hnsw = BenchmarkData.index(plans, vectors, new HnswSearchStrategy(m, efConstruction, efSearch, 42));
+        long buildMs = (System.nanoTime() - buildStart) / 1_000_000;
+
+        float[][] queries = BenchmarkData.randomVectors(queryCount, BenchmarkData.DIMENSION, 3);
+        long found = 0;
+        long exactNanos = 0;
+        long hnswNanos = 0;
+        for (float[] query : queries) {
+            long start = System.nanoTime();
+            List<SearchHit> expected = exact.search(query, k);
+            exactNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<SearchHit> actual = hnsw.search(query, k);
+            hnswNanos += System.nanoTime() - start;
+
+            Set<Long> expectedIds = new HashSet<>();
+            expected.forEach(hit -> expectedIds.add(hit.plan().getId()));
+            for (SearchHit hit : actual) {
+                if (expectedIds.contains(hit.plan().getId())) {
+                    found++;
+                }
+            }
+        }
+
+        System.out.printf("size=%d m=%d efConstruction=%d efSearch=%d k=%d%n", size, m, efConstruction, efSearch, k);
+        System.out.printf("build=%dms recall@%d=%.4f exact=%.1fus hnsw=%.1fus%n",
+                buildMs, k, (double) found / ((long) queryCount * k),
+                exactNanos / 1000.0 / queryCount, hnswNanos / 1000.0 / queryCount);
+    }
+}
@@ -0,0 +1,100 @@
+// LegacyRetrievalBenchmark.java
+package com.billbuddy.benchmark;
+
+import com.billbuddy.model.Plan;
+import com.billbuddy.provider.HashingEmbeddingProvider;
+import com.billbuddy.service.EmbeddingCache;
+import com.billbuddy.service.EmbeddingService;
+import com.billbuddy.service.UpstreamGuard;
+import com.billbuddy.service.UpstreamLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The original per-request search path: Jackson-decode every plan's JSON
+ * embedding, boxed cosine against each, sort everything. Kept as the baseline
+ * the resident index is measured against.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class LegacyRetrievalBenchmark {
+
+    @Param({"1000", "10000"})
+    public int catalogSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private EmbeddingService embeddingService;
+    private List<Plan> plans;
+    private List<String> embeddingJson;
+    private List<Double> query;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        embeddingService = new EmbeddingService(
+                new HashingEmbeddingProvider(BenchmarkData.DIMENSION, Duration.ZERO), 100,
+                new EmbeddingCache(0, Duration.ZERO, "", 0),
+                new UpstreamGuard(new UpstreamLimiter("embedding", 64, Duration.ofSeconds(1))));
+
+        plans = BenchmarkData.catalog(catalogSize, 1);
+        float[][] vectors = BenchmarkData.randomVectors(catalogSize, BenchmarkData.DIMENSION, 2);
+        embeddingJson = new ArrayList<>(catalogSize);
+        for (float[] vector : vectors) {
+            embeddingJson.add(objectMapper.writeValueAsString(boxed(vector)));
+        }
+        query = boxed(embeddingService.embed("cheapest NBN plan for a family"));
+    }
+
+    @Benchmark
+    public List<Map.Entry<Plan, Double>> jsonDecodeAndScan() throws Exception {
+        Map<Plan, Double> similarities = new HashMap<>();
+        for (int i = 0; i < plans.size(); i++) {
+            List<Double> planEmbedding = objectMapper.readValue(
+                    embeddingJson.get(i),
+                    objectMapper.getTypeFactory().constructCollectionType(List.class, Double.class)
+            );
+            similarities.put(plans.get(i), boxedCosine(query, planEmbedding));
+        }
+
+        return similarities.entrySet().stream()
+                .sorted(Map.Entry.<Plan, Double>comparingByValue().reversed())
+                .limit(5)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The original boxed cosine (formerly {@code EmbeddingService.cosineSimilarity(List, List)}).
+     */
+    static double boxedCosine(List<Double> vec1, List<Double> vec2) {
+        double dotProduct = 0.0;
+        double norm1 = 0.0;
+        double norm2 = 0.0;
+
+        for (int i = 0; i < vec1.size(); i++) {
+            dotProduct += vec1.get(i) * vec2.get(i);
+            norm1 += Math.pow(vec1.get(i), 2);
+            norm2 += Math.pow(vec2.get(i), 2);
+        }
+
+        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    }
+
+    static List<Double> boxed(float[] vector) {
+        List<Double> list = new ArrayList<>(vector.length);
+        for (float v : vector) {
+            list.add((double) v);
+        }
+        return list;
+    }
+}
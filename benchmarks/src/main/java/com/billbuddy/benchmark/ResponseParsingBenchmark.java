@@ -0,0 +1,64 @@
+// ResponseParsingBenchmark.java
+package com.billbuddy.benchmark;
+
+import com.billbuddy.util.ResponseParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Structured-answer parsing: the single-pass {@link ResponseParser} on section
+ * and JSON answers, rendering a JSON answer as sections for streaming, and
+ * the per-call regex extraction it replaced as a baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseParsingBenchmark {
+
+    private String answer;
+    private String jsonAnswer;
+
+    @Setup
+    public void setup() {
+        answer = BenchmarkData.sampleAnswer();
+        jsonAnswer = BenchmarkData.sampleJsonAnswer();
+    }
+
+    @Benchmark
+    public ResponseParser.Parsed parseSections() {
+        return ResponseParser.parse(answer);
+    }
+
+    @Benchmark
+    public ResponseParser.Parsed parseJson() {
+        return ResponseParser.parse(jsonAnswer);
+    }
+
+    @Benchmark
+    public String jsonAsSections() {
+        return ResponseParser.asSections(jsonAnswer);
+    }
+
+    @Benchmark
+    public Object[] regexBaseline() {
+        String recommendation = regexSection(answer, "RECOMMENDATION:");
+        String explanation = regexSection(answer, "EXPLANATION:");
+        String monthlyCost = regexSection(answer, "MONTHLY COST:");
+        String tradeoffs = regexSection(answer, "TRADEOFFS:");
+        Matcher cost = Pattern.compile("\\$?([0-9]+\\.?[0-9]*)").matcher(monthlyCost);
+        Double estimatedMonthlyCost = cost.find() ? Double.parseDouble(cost.group(1)) : null;
+        return new Object[]{recommendation, explanation, estimatedMonthlyCost, Arrays.asList(tradeoffs.split("\n"))};
+    }
+
+    private static String regexSection(String text, String marker) {
+        Matcher matcher = Pattern.compile(marker + "\\s*(.+?)(?=\\n[A-Z]+:|$)", Pattern.DOTALL).matcher(text);
+        return matcher.find() ? matcher.group(1).trim() : "";
+    }
+}
@@ -0,0 +1,111 @@
+// RetrievalBenchmark.java
+package com.billbuddy.benchmark;
+
+import com.billbuddy.index.ExactSearchStrategy;
+import com.billbuddy.index.HnswSearchStrategy;
+import com.billbuddy.index.LexicalIndex;
+import com.billbuddy.index.RankFusion;
+import com.billbuddy.index.SearchHit;
+import com.billbuddy.index.VectorIndex;
+import com.billbuddy.model.Plan;
+import com.billbuddy.model.PlanType;
+import com.billbuddy.model.SearchFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-K search over the resident {@link VectorIndex}, pre-filtered search,
+ * BM25 over the {@link LexicalIndex}, their rank fusion, and a batch of
+ * {@value #BATCH} queries searched one by one versus in one matrix pass. HNSW graphs at 100k x 1536
+ * take a long time to build; run them explicitly with {@code -p mode=hnsw}.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class RetrievalBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int catalogSize;
+
+    @Param({"exact"})
+    public String mode;
+
+    @Param({"5"})
+    public int topK;
+
+    private static final int BATCH = 32;
+
+    private static final String[] TEXT_QUERIES = {
+            "NBN 100 unlimited data", "5G mobile with no contract", "Telstra family streaming",
+            "cheap plan for gaming", "AGL solar", "Optus 500GB data"
+    };
+    private static final SearchFilter FILTER = SearchFilter.builder()
+            .types(EnumSet.of(PlanType.MOBILE))
+            .maxPrice(60.0)
+            .build();
+
+    private VectorIndex index;
+    private LexicalIndex lexicalIndex;
+    private float[][] queries;
+    private List<float[]> batch;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<Plan> plans = BenchmarkData.catalog(catalogSize, 1);
+        float[][] vectors = BenchmarkData.randomVectors(catalogSize, BenchmarkData.DIMENSION, 2);
+        index = BenchmarkData.index(plans, vectors, "hnsw".equals(mode)
+                ? new HnswSearchStrategy(16, 200, 64, 42)
+                : new ExactSearchStrategy());
+        lexicalIndex = BenchmarkData.lexicalIndex(plans);
+        queries = BenchmarkData.randomVectors(64, BenchmarkData.DIMENSION, 3);
+        batch = Arrays.asList(Arrays.copyOf(queries, BATCH));
+    }
+
+    @Benchmark
+    public List<SearchHit> search() {
+        float[] query = queries[next++ & 63];
+        return index.search(query, topK);
+    }
+
+    @Benchmark
+    public List<SearchHit> filteredSearch() {
+        float[] query = queries[next++ & 63];
+        return index.search(query, topK, FILTER);
+    }
+
+    @Benchmark
+    public List<SearchHit> lexicalSearch() {
+        return lexicalIndex.search(TEXT_QUERIES[next++ % TEXT_QUERIES.length], topK, null);
+    }
+
+    @Benchmark
+    public List<SearchHit> hybridSearch() {
+        int i = next++;
+        return RankFusion.reciprocalRank(60, topK, List.of(
+                index.search(queries[i & 63], 20),
+                lexicalIndex.search(TEXT_QUERIES[i % TEXT_QUERIES.length], 20, null)));
+    }
+
+    @Benchmark
+    public List<List<SearchHit>> sequentialBatchSearch() {
+        List<List<SearchHit>> results = new ArrayList<>(BATCH);
+        for (float[] query : batch) {
+            results.add(index.search(query, topK));
+        }
+        return results;
+    }
+
+    @Benchmark
+    public List<List<SearchHit>> batchSearch() {
+        return index.searchBatch(batch, topK);
+    }
+}
@@ -0,0 +1,64 @@
+// SimilarityBenchmark.java
+package com.billbuddy.benchmark;
+
+import com.billbuddy.util.SimilarityKernel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class SimilarityBenchmark {
+
+    private List<Double> boxedA;
+    private List<Double> boxedB;
+    private float[] a;
+    private float[] b;
+    private float[] matrix;
+    private float[] scores;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(7);
+        a = BenchmarkData.randomVector(random, BenchmarkData.DIMENSION);
+        b = BenchmarkData.randomVector(random, BenchmarkData.DIMENSION);
+        boxedA = LegacyRetrievalBenchmark.boxed(a);
+        boxedB = LegacyRetrievalBenchmark.boxed(b);
+
+        matrix = new float[256 * BenchmarkData.DIMENSION];
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = random.nextFloat() - 0.5f;
+        }
+        scores = new float[256];
+    }
+
+    @Benchmark
+    public double boxedCosine() {
+        return LegacyRetrievalBenchmark.boxedCosine(boxedA, boxedB);
+    }
+
+    @Benchmark
+    public float kernelCosine() {
+        return SimilarityKernel.cosine(a, b);
+    }
+
+    @Benchmark
+    public float kernelDot() {
+        return SimilarityKernel.dot(a, b);
+    }
+
+    /**
+     * One exact-scan block: 256 rows scored against the query.
+     */
+    @Benchmark
+    public float[] kernelDotBatch() {
+        SimilarityKernel.dotBatch(a, matrix, BenchmarkData.DIMENSION, 0, 256, scores);
+        return scores;
+    }
+}
@@ -3,7 +3,7 @@ package com.billbuddy.config;
 
 import com.billbuddy.model.Plan;
 import com.billbuddy.model.PlanType;
-import com.billbuddy.service.VectorStoreService;
+import com.billbuddy.service.IndexingQueue;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
@@ -15,10 +15,10 @@ import java.util.List;
 @Slf4j
 public class DataInitializer implements CommandLineRunner {
 
-    private final VectorStoreService vectorStoreService;
+    private final IndexingQueue indexingQueue;
 
-    public DataInitializer(VectorStoreService vectorStoreService) {
-        this.vectorStoreService = vectorStoreService;
+    public DataInitializer(IndexingQueue indexingQueue) {
+        this.indexingQueue = indexingQueue;
     }
 
     @Override
@@ -55,14 +55,11 @@ public class DataInitializer implements CommandLineRunner {
                         "Homeowners, solar panel owners")
         );
 
-        for (Plan plan : samplePlans) {
-            try {
-                vectorStoreService.indexPlan(plan);
-
-            } catch (RuntimeException e) {
-                log.error("Indexing skipped at startup (embeddings unavailable). App will continue.", e);
-                // optionally set a flag / health indicator / schedule retry later
-            }
+        // Plans are searchable lexically as soon as they are staged; changed ones embed in the background
+        try {
+            indexingQueue.submit(samplePlans);
+        } catch (RuntimeException e) {
+            log.error("Staging sample plans failed. App will continue.", e);
         }
 
         log.info("Sample data initialized successfully!");
@@ -0,0 +1,74 @@
+// EmbeddingStorageMigrator.java
+package com.billbuddy.config;
+
+import com.billbuddy.model.Plan;
+import com.billbuddy.repository.PlanRepository;
+import com.billbuddy.util.EmbeddingCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Converts rows that still carry the legacy JSON embedding CLOB into the packed
+ * binary column, one batch per transaction, and clears the JSON afterwards.
+ */
+@Component
+@Slf4j
+public class EmbeddingStorageMigrator {
+
+    private final PlanRepository planRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final EmbeddingCodec.Encoding encoding;
+    private final int batchSize;
+
+    public EmbeddingStorageMigrator(PlanRepository planRepository,
+                                    TransactionTemplate transactionTemplate,
+                                    @Value("${billbuddy.embedding.storage-format:float32}") String storageFormat,
+                                    @Value("${billbuddy.embedding.migration-batch-size:200}") int batchSize) {
+        this.planRepository = planRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = new ObjectMapper();
+        this.encoding = EmbeddingCodec.Encoding.fromName(storageFormat);
+        this.batchSize = batchSize;
+    }
+
+    public int migrateLegacyEmbeddings() {
+        int migrated = 0;
+        while (true) {
+            Integer converted = transactionTemplate.execute(status -> migrateBatch());
+            if (converted == null || converted == 0) {
+                break;
+            }
+            migrated += converted;
+        }
+
+        if (migrated > 0) {
+            log.info("Migrated {} legacy JSON embeddings to {} binary storage", migrated, encoding);
+        }
+        return migrated;
+    }
+
+    private int migrateBatch() {
+        // Migrated rows drop out of the query, so the first page is always the next batch
+        List<Plan> plans = planRepository.findByEmbeddingIsNotNull(PageRequest.of(0, batchSize));
+        for (Plan plan : plans) {
+            if (plan.getEmbeddingVector() == null) {
+                try {
+                    float[] vector = objectMapper.readValue(plan.getEmbedding(), float[].class);
+                    plan.setEmbeddingVector(EmbeddingCodec.encode(vector, encoding));
+                } catch (Exception e) {
+                    log.warn("Dropping unreadable legacy embedding for plan {}", plan.getId(), e);
+                }
+            }
+            plan.setEmbedding(null);
+        }
+        planRepository.saveAll(plans);
+        return plans.size();
+    }
+}
@@ -0,0 +1,91 @@
+// ExecutionConfig.java
+package com.billbuddy.config;
+
+import com.billbuddy.service.UpstreamLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+@Slf4j
+public class ExecutionConfig {
+
+    /**
+     * Runs the query pipeline off the servlet thread (async /ask and /ask/stream).
+     * With virtual threads enabled on a Java 21+ runtime every request gets its own
+     * virtual thread, so blocking OpenAI calls no longer pin platform threads;
+     * otherwise a bounded platform pool is used.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService requestExecutor(@Value("${billbuddy.execution.virtual-threads:true}") boolean virtualThreads,
+                                           @Value("${billbuddy.execution.pool-size:32}") int poolSize,
+                                           @Value("${billbuddy.execution.queue-capacity:100}") int queueCapacity) {
+        if (virtualThreads) {
+            try {
+                ExecutorService executor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+                log.info("Request pipeline running on virtual threads");
+                return executor;
+            } catch (ReflectiveOperationException e) {
+                log.info("Virtual threads need Java 21+ (running {}), using a platform thread pool",
+                        Runtime.version().feature());
+            }
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "billbuddy-request-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Embeds the batches of a bulk load in parallel, shared by every indexing
+     * call so concurrent loads cannot multiply the thread count. When the queue
+     * is full the submitting thread embeds the batch itself.
+     */
+    @Bean(destroyMethod = "shutdown")
+    @Qualifier("indexingExecutor")
+    public ExecutorService indexingExecutor(@Value("${billbuddy.indexing.concurrency:4}") int concurrency,
+                                            @Value("${billbuddy.indexing.queue-capacity:64}") int queueCapacity) {
+        int threads = Math.max(concurrency, 1);
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "billbuddy-embed-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Bean
+    @Qualifier("embeddingLimiter")
+    public UpstreamLimiter embeddingLimiter(@Value("${billbuddy.upstream.embedding.max-concurrency:16}") int maxConcurrency,
+                                            @Value("${billbuddy.upstream.acquire-timeout:PT2S}") Duration acquireTimeout) {
+        return new UpstreamLimiter("embedding", maxConcurrency, acquireTimeout);
+    }
+
+    @Bean
+    @Qualifier("completionLimiter")
+    public UpstreamLimiter completionLimiter(@Value("${billbuddy.upstream.completion.max-concurrency:8}") int maxConcurrency,
+                                             @Value("${billbuddy.upstream.acquire-timeout:PT2S}") Duration acquireTimeout) {
+        return new UpstreamLimiter("completion", maxConcurrency, acquireTimeout);
+    }
+}
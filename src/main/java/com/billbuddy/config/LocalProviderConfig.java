@@ -0,0 +1,43 @@
+// LocalProviderConfig.java
+package com.billbuddy.config;
+
+import com.billbuddy.provider.CompletionProvider;
+import com.billbuddy.provider.EmbeddingProvider;
+import com.billbuddy.provider.HashingEmbeddingProvider;
+import com.billbuddy.provider.TemplateCompletionProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Network-free providers for {@code billbuddy.provider=local} (hashed n-gram
+ * embeddings, template answers from the retrieved plans) and {@code stub},
+ * the same with simulated upstream latency for load tests. No API key is
+ * needed in either mode.
+ */
+@Configuration
+@ConditionalOnExpression("'${billbuddy.provider:openai}' == 'local' or '${billbuddy.provider:openai}' == 'stub'")
+@Slf4j
+public class LocalProviderConfig {
+
+    @Bean
+    public EmbeddingProvider embeddingProvider(@Value("${billbuddy.provider:openai}") String provider,
+                                               @Value("${billbuddy.provider.local.dimensions:1536}") int dimensions,
+                                               @Value("${billbuddy.provider.stub.embedding-latency:PT0.05S}") Duration latency) {
+        Duration effective = "stub".equals(provider) ? latency : Duration.ZERO;
+        log.info("Using {} embeddings ({} dimensions, latency {}ms)", provider, dimensions, effective.toMillis());
+        return new HashingEmbeddingProvider(dimensions, effective);
+    }
+
+    @Bean
+    public CompletionProvider completionProvider(@Value("${billbuddy.provider:openai}") String provider,
+                                                 @Value("${billbuddy.provider.stub.completion-latency:PT1S}") Duration latency) {
+        Duration effective = "stub".equals(provider) ? latency : Duration.ZERO;
+        log.info("Using {} completions (latency {}ms)", provider, effective.toMillis());
+        return new TemplateCompletionProvider(effective);
+    }
+}
@@ -0,0 +1,130 @@
+// MetricsConfig.java
+package com.billbuddy.config;
+
+import com.billbuddy.index.PlanCatalog;
+import com.billbuddy.service.AdmissionController;
+import com.billbuddy.service.AnswerCache;
+import com.billbuddy.service.CircuitBreaker;
+import com.billbuddy.service.EmbeddingCache;
+import com.billbuddy.service.IndexingQueue;
+import com.billbuddy.service.UpstreamGuard;
+import com.billbuddy.util.ObservabilityLogger;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Publishes the components' own {@code stats()} to Micrometer, read at scrape
+ * time: cache hits and hit ratios, upstream calls, retries, failures and
+ * circuit state, admission limit and rejections, indexing backlog, plan
+ * catalog size and version, and query-log backlog. Pipeline stage timings
+ * are recorded directly by PipelineMetrics. Meters reference the component
+ * beans themselves, since Micrometer holds its state objects weakly.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder billbuddyMeters(AnswerCache answerCache,
+                                       EmbeddingCache embeddingCache,
+                                       @Qualifier("embeddingUpstream") UpstreamGuard embeddingUpstream,
+                                       @Qualifier("completionUpstream") UpstreamGuard completionUpstream,
+                                       AdmissionController admissionController,
+                                       IndexingQueue indexingQueue,
+                                       PlanCatalog planCatalog,
+                                       ObservabilityLogger observabilityLogger) {
+        return registry -> {
+            bindCache(registry, "answer", answerCache, AnswerCache::stats);
+            bindCache(registry, "embedding", embeddingCache, EmbeddingCache::stats);
+            bindUpstream(registry, "embedding", embeddingUpstream);
+            bindUpstream(registry, "completion", completionUpstream);
+
+            Function<AdmissionController, Map<String, Object>> admission = AdmissionController::stats;
+            gauge(registry, "billbuddy.admission.limit", admissionController, admission, "limit", Tags.empty(), null);
+            gauge(registry, "billbuddy.admission.inflight", admissionController, admission, "inFlight", Tags.empty(), null);
+            counter(registry, "billbuddy.admission.rejected", admissionController, admission, "rejectedSession", Tags.of("reason", "session_rate"));
+            counter(registry, "billbuddy.admission.rejected", admissionController, admission, "rejectedClient", Tags.of("reason", "client_rate"));
+            counter(registry, "billbuddy.admission.rejected", admissionController, admission, "rejectedOverloaded", Tags.of("reason", "overloaded"));
+
+            Function<IndexingQueue, Map<String, Object>> indexing = IndexingQueue::stats;
+            gauge(registry, "billbuddy.indexing.queued", indexingQueue, indexing, "queued", Tags.empty(), null);
+            gauge(registry, "billbuddy.indexing.inflight", indexingQueue, indexing, "inFlight", Tags.empty(), null);
+            gauge(registry, "billbuddy.indexing.lag", indexingQueue, indexing, "lagMs", Tags.empty(), "milliseconds");
+            counter(registry, "billbuddy.indexing.plans", indexingQueue, indexing, "embedded", Tags.of("result", "embedded"));
+            counter(registry, "billbuddy.indexing.plans", indexingQueue, indexing, "failed", Tags.of("result", "failed"));
+
+            Function<PlanCatalog, Map<String, Object>> catalog = PlanCatalog::stats;
+            gauge(registry, "billbuddy.catalog.plans", planCatalog, catalog, "plans", Tags.empty(), null);
+            gauge(registry, "billbuddy.catalog.version", planCatalog, catalog, "version", Tags.empty(), null);
+
+            Function<ObservabilityLogger, Map<String, Object>> queryLog = ObservabilityLogger::stats;
+            gauge(registry, "billbuddy.querylog.pending", observabilityLogger, queryLog, "pending", Tags.empty(), null);
+            counter(registry, "billbuddy.querylog.entries", observabilityLogger, queryLog, "written", Tags.of("result", "written"));
+            counter(registry, "billbuddy.querylog.entries", observabilityLogger, queryLog, "dropped", Tags.of("result", "dropped"));
+        };
+    }
+
+    private static <T> void bindCache(MeterRegistry registry, String cache, T source,
+                                      Function<T, Map<String, Object>> stats) {
+        Tags tags = Tags.of("cache", cache);
+        counter(registry, "billbuddy.cache.requests", source, stats, "hits", tags.and("result", "hit"));
+        counter(registry, "billbuddy.cache.requests", source, stats, "misses", tags.and("result", "miss"));
+        if (stats.apply(source).containsKey("diskHits")) {
+            counter(registry, "billbuddy.cache.requests", source, stats, "diskHits", tags.and("result", "disk_hit"));
+        }
+        counter(registry, "billbuddy.cache.evictions", source, stats, "evictions", tags);
+        gauge(registry, "billbuddy.cache.size", source, stats, "size", tags, null);
+        gauge(registry, "billbuddy.cache.hit.ratio", source, stats, "hitRate", tags, null);
+    }
+
+    private static void bindUpstream(MeterRegistry registry, String upstream, UpstreamGuard guard) {
+        Tags tags = Tags.of("upstream", upstream);
+        Function<UpstreamGuard, Map<String, Object>> stats = UpstreamGuard::stats;
+        gauge(registry, "billbuddy.upstream.inflight", guard, stats, "inFlight", tags, null);
+        counter(registry, "billbuddy.upstream.calls", guard, stats, "calls", tags);
+        counter(registry, "billbuddy.upstream.retries", guard, stats, "retries", tags);
+        counter(registry, "billbuddy.upstream.failures", guard, stats, "failures", tags);
+        counter(registry, "billbuddy.upstream.hedged", guard, stats, "hedged", tags);
+        counter(registry, "billbuddy.upstream.rejected", guard, g -> nested(g.stats(), "circuit"), "rejected", tags);
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder("billbuddy.upstream.circuit.state", guard, g -> g.state() == state ? 1 : 0)
+                    .description("1 for the circuit's current state")
+                    .tags(tags.and("state", state.name().toLowerCase(Locale.ROOT)))
+                    .register(registry);
+        }
+    }
+
+    private static <T> void counter(MeterRegistry registry, String name, T source,
+                                    Function<T, Map<String, Object>> stats, String key, Tags tags) {
+        FunctionCounter.builder(name, source, s -> value(stats.apply(s), key))
+                .tags(tags)
+                .register(registry);
+    }
+
+    private static <T> void gauge(MeterRegistry registry, String name, T source,
+                                  Function<T, Map<String, Object>> stats, String key, Tags tags, String baseUnit) {
+        Gauge.builder(name, source, s -> value(stats.apply(s), key))
+                .tags(tags)
+                .baseUnit(baseUnit)
+                .register(registry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> nested(Map<String, Object> stats, String key) {
+        Object value = stats.get(key);
+        return value instanceof Map<?, ?> map ? (Map<String, Object>) map : Map.of();
+    }
+
+    private static double value(Map<String, Object> stats, String key) {
+        return stats.get(key) instanceof Number number ? number.doubleValue() : Double.NaN;
+    }
+}
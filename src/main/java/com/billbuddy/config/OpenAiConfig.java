@@ -0,0 +1,93 @@
+// OpenAiConfig.java
+package com.billbuddy.config;
+
+import com.billbuddy.provider.CompletionProvider;
+import com.billbuddy.provider.EmbeddingProvider;
+import com.billbuddy.provider.OpenAiCompletionProvider;
+import com.billbuddy.provider.OpenAiEmbeddingProvider;
+import com.theokanning.openai.client.OpenAiApi;
+import com.theokanning.openai.service.OpenAiService;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OpenAI clients. Embeddings and completions share one OkHttp connection pool
+ * and dispatcher, so connections stay warm across both; each gets its own call
+ * timeout, which bounds a single attempt. Retries and the overall deadline are
+ * {@link com.billbuddy.service.UpstreamGuard}'s. Only loaded for
+ * {@code billbuddy.provider=openai} (the default); see LocalProviderConfig.
+ */
+@Configuration
+@ConditionalOnProperty(name = "billbuddy.provider", havingValue = "openai", matchIfMissing = true)
+@Slf4j
+public class OpenAiConfig {
+
+    @Bean
+    public OkHttpClient openAiHttpClient(@Value("${openai.api.key}") String apiKey,
+                                         @Value("${openai.http.connect-timeout:PT5S}") Duration connectTimeout,
+                                         @Value("${openai.http.max-idle-connections:16}") int maxIdleConnections,
+                                         @Value("${openai.http.keep-alive:PT5M}") Duration keepAlive,
+                                         @Value("${openai.http.max-requests:64}") int maxRequests) {
+        if (apiKey == null || apiKey.isBlank()) {
+            throw new IllegalStateException("openai.api.key is empty - check config sources");
+        }
+
+        String trimmed = apiKey.trim();
+        String suffix = trimmed.length() >= 4 ? trimmed.substring(trimmed.length() - 4) : trimmed;
+        log.info("OpenAI key loaded (len={}, suffix=****{})", trimmed.length(), suffix);
+
+        // Streamed completions go through the dispatcher, whose default is 5 per host
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+
+        return OpenAiService.defaultClient(trimmed, Duration.ZERO).newBuilder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    @Bean
+    public OpenAiService embeddingOpenAiService(OkHttpClient openAiHttpClient,
+                                                @Value("${openai.embedding.timeout:PT10S}") Duration timeout) {
+        return service(openAiHttpClient, timeout);
+    }
+
+    @Bean
+    public OpenAiService completionOpenAiService(OkHttpClient openAiHttpClient,
+                                                 @Value("${openai.completion.timeout:PT60S}") Duration timeout) {
+        return service(openAiHttpClient, timeout);
+    }
+
+    @Bean
+    public EmbeddingProvider embeddingProvider(OpenAiService embeddingOpenAiService,
+                                               @Value("${openai.embedding.model:text-embedding-ada-002}") String model) {
+        return new OpenAiEmbeddingProvider(embeddingOpenAiService, model);
+    }
+
+    @Bean
+    public CompletionProvider completionProvider(OpenAiService completionOpenAiService,
+                                                 @Value("${openai.completion.model:gpt-4}") String model) {
+        return new OpenAiCompletionProvider(completionOpenAiService, model);
+    }
+
+    private static OpenAiService service(OkHttpClient shared, Duration timeout) {
+        OkHttpClient client = shared.newBuilder()
+                .readTimeout(timeout)
+                .callTimeout(timeout)
+                .build();
+        OpenAiApi api = OpenAiService.defaultRetrofit(client, OpenAiService.defaultObjectMapper())
+                .create(OpenAiApi.class);
+        return new OpenAiService(api, client.dispatcher().executorService());
+    }
+}
@@ -0,0 +1,62 @@
+// UpstreamConfig.java
+package com.billbuddy.config;
+
+import com.billbuddy.service.CircuitBreaker;
+import com.billbuddy.service.UpstreamGuard;
+import com.billbuddy.service.UpstreamLimiter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * One {@link UpstreamGuard} per upstream, each with its own limiter and
+ * circuit breaker so an embedding outage does not open the completion circuit.
+ */
+@Configuration
+public class UpstreamConfig {
+
+    private final Duration initialBackoff;
+    private final int breakerWindow;
+    private final int breakerMinimumCalls;
+    private final double breakerFailureRate;
+    private final Duration breakerOpenDuration;
+
+    public UpstreamConfig(@Value("${billbuddy.upstream.retry.initial-backoff:PT0.2S}") Duration initialBackoff,
+                          @Value("${billbuddy.upstream.breaker.window:20}") int breakerWindow,
+                          @Value("${billbuddy.upstream.breaker.minimum-calls:10}") int breakerMinimumCalls,
+                          @Value("${billbuddy.upstream.breaker.failure-rate:0.5}") double breakerFailureRate,
+                          @Value("${billbuddy.upstream.breaker.open-duration:PT30S}") Duration breakerOpenDuration) {
+        this.initialBackoff = initialBackoff;
+        this.breakerWindow = breakerWindow;
+        this.breakerMinimumCalls = breakerMinimumCalls;
+        this.breakerFailureRate = breakerFailureRate;
+        this.breakerOpenDuration = breakerOpenDuration;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @Qualifier("embeddingUpstream")
+    public UpstreamGuard embeddingUpstream(@Qualifier("embeddingLimiter") UpstreamLimiter embeddingLimiter,
+                                           @Value("${billbuddy.upstream.embedding.max-attempts:3}") int maxAttempts,
+                                           @Value("${billbuddy.upstream.embedding.deadline:PT20S}") Duration deadline,
+                                           @Value("${billbuddy.upstream.embedding.hedge-delay:PT0S}") Duration hedgeDelay) {
+        return guard(embeddingLimiter, maxAttempts, deadline, hedgeDelay);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @Qualifier("completionUpstream")
+    public UpstreamGuard completionUpstream(@Qualifier("completionLimiter") UpstreamLimiter completionLimiter,
+                                            @Value("${billbuddy.upstream.completion.max-attempts:2}") int maxAttempts,
+                                            @Value("${billbuddy.upstream.completion.deadline:PT60S}") Duration deadline,
+                                            @Value("${billbuddy.upstream.completion.hedge-delay:PT0S}") Duration hedgeDelay) {
+        return guard(completionLimiter, maxAttempts, deadline, hedgeDelay);
+    }
+
+    private UpstreamGuard guard(UpstreamLimiter limiter, int maxAttempts, Duration deadline, Duration hedgeDelay) {
+        CircuitBreaker breaker = new CircuitBreaker(limiter.getName(), breakerWindow,
+                breakerMinimumCalls, breakerFailureRate, breakerOpenDuration);
+        return new UpstreamGuard(limiter, breaker, maxAttempts, initialBackoff, deadline, hedgeDelay);
+    }
+}
@@ -0,0 +1,48 @@
+// VectorIndexConfig.java
+package com.billbuddy.config;
+
+import com.billbuddy.index.ExactSearchStrategy;
+import com.billbuddy.index.HnswSearchStrategy;
+import com.billbuddy.index.LexicalIndex;
+import com.billbuddy.index.PlanCatalog;
+import com.billbuddy.index.VectorIndex;
+import com.billbuddy.index.VectorSearchStrategy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Locale;
+
+@Configuration
+@Slf4j
+public class VectorIndexConfig {
+
+    @Bean
+    public VectorIndex vectorIndex(@Value("${billbuddy.vector.search-mode:exact}") String searchMode,
+                                   @Value("${billbuddy.vector.hnsw.m:16}") int m,
+                                   @Value("${billbuddy.vector.hnsw.ef-construction:200}") int efConstruction,
+                                   @Value("${billbuddy.vector.hnsw.ef-search:64}") int efSearch,
+                                   @Value("${billbuddy.vector.hnsw.seed:42}") long seed) {
+        VectorSearchStrategy strategy;
+        switch (searchMode.trim().toLowerCase(Locale.ROOT)) {
+            case "exact" -> strategy = new ExactSearchStrategy();
+            case "hnsw" -> strategy = new HnswSearchStrategy(m, efConstruction, efSearch, seed);
+            default -> throw new IllegalStateException("Unknown billbuddy.vector.search-mode: " + searchMode);
+        }
+
+        log.info("Vector search mode: {}", searchMode);
+        return new VectorIndex(strategy);
+    }
+
+    @Bean
+    public LexicalIndex lexicalIndex(@Value("${billbuddy.lexical.bm25.k1:1.2}") double k1,
+                                     @Value("${billbuddy.lexical.bm25.b:0.75}") double b) {
+        return new LexicalIndex(k1, b);
+    }
+
+    @Bean
+    public PlanCatalog planCatalog() {
+        return new PlanCatalog();
+    }
+}
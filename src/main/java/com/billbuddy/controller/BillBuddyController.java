@@ -3,10 +3,36 @@ package com.billbuddy.controller;
 
 import com.billbuddy.model.QueryRequest;
 import com.billbuddy.model.QueryResponse;
+import com.billbuddy.service.AdmissionController;
+import com.billbuddy.service.AdmissionRejectedException;
+import com.billbuddy.service.CircuitBreaker;
 import com.billbuddy.service.ComparisonService;
+import com.billbuddy.service.IndexingQueue;
+import com.billbuddy.service.UpstreamUnavailableException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/billbuddy")
@@ -14,20 +40,156 @@ import org.springframework.web.bind.annotation.*;
 public class BillBuddyController {
 
     private final ComparisonService comparisonService;
+    private final IndexingQueue indexingQueue;
+    private final AdmissionController admissionController;
+    private final ExecutorService requestExecutor;
+    private final ObjectReader queryReader;
+    private final boolean asyncExecution;
+    private final long streamTimeoutMs;
+    private final int maxBatchSize;
+    private final long batchTimeoutMs;
 
-    public BillBuddyController(ComparisonService comparisonService) {
+    public BillBuddyController(ComparisonService comparisonService,
+                               IndexingQueue indexingQueue,
+                               AdmissionController admissionController,
+                               ExecutorService requestExecutor,
+                               ObjectMapper objectMapper,
+                               @Value("${billbuddy.execution.mode:blocking}") String executionMode,
+                               @Value("${billbuddy.streaming.timeout:PT2M}") Duration streamTimeout,
+                               @Value("${billbuddy.batch.max-size:500}") int maxBatchSize,
+                               @Value("${billbuddy.batch.timeout:PT30M}") Duration batchTimeout) {
         this.comparisonService = comparisonService;
+        this.indexingQueue = indexingQueue;
+        this.admissionController = admissionController;
+        this.requestExecutor = requestExecutor;
+        this.queryReader = objectMapper.readerFor(QueryRequest.class);
+        this.asyncExecution = "async".equalsIgnoreCase(executionMode.trim());
+        this.streamTimeoutMs = streamTimeout.toMillis();
+        this.maxBatchSize = maxBatchSize;
+        this.batchTimeoutMs = batchTimeout.toMillis();
     }
 
     @PostMapping("/ask")
-    public ResponseEntity<QueryResponse> askQuestion(@RequestBody QueryRequest request) {
+    public CompletableFuture<ResponseEntity<QueryResponse>> askQuestion(@RequestBody QueryRequest request,
+                                                                       HttpServletRequest servletRequest) {
         log.info("Received query: {}", request.getQuery());
-        QueryResponse response = comparisonService.processQuery(request);
-        return ResponseEntity.ok(response);
+        admissionController.admit(request.getSessionId(), servletRequest.getRemoteAddr());
+        if (!asyncExecution) {
+            QueryResponse response = comparisonService.processQuery(request);
+            return CompletableFuture.completedFuture(ResponseEntity.ok(response));
+        }
+
+        // Release the servlet thread while the OpenAI-bound pipeline runs
+        return CompletableFuture.supplyAsync(
+                () -> ResponseEntity.ok(comparisonService.processQuery(request)), requestExecutor);
+    }
+
+    @PostMapping(value = "/ask/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter askQuestionStream(@RequestBody QueryRequest request, HttpServletRequest servletRequest) {
+        log.info("Received streaming query: {}", request.getQuery());
+        admissionController.admit(request.getSessionId(), servletRequest.getRemoteAddr());
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        requestExecutor.execute(() ->
+                comparisonService.streamQuery(request, new SseQueryStreamListener(emitter)));
+        return emitter;
+    }
+
+    /**
+     * Answers many questions in one request, streamed back as NDJSON in
+     * completion order; see {@link NdjsonBatchListener} for the line format.
+     * Takes a JSON array of questions.
+     */
+    @PostMapping(value = "/ask/batch", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> askBatch(@RequestBody List<QueryRequest> requests) {
+        checkBatchSize(requests.size());
+        return startBatch(requests);
+    }
+
+    /**
+     * The same batch with one question per NDJSON line, read as it arrives.
+     */
+    @PostMapping(value = "/ask/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> askBatchNdjson(InputStream body) {
+        List<QueryRequest> requests = new ArrayList<>();
+        try (MappingIterator<QueryRequest> lines = queryReader.readValues(body)) {
+            while (lines.hasNextValue()) {
+                checkBatchSize(requests.size() + 1);
+                requests.add(lines.nextValue());
+            }
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Malformed NDJSON at question " + requests.size(), e);
+        }
+        return startBatch(requests);
+    }
+
+    private void checkBatchSize(int size) {
+        if (size > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Batches are limited to " + maxBatchSize + " questions");
+        }
+    }
+
+    private ResponseEntity<ResponseBodyEmitter> startBatch(List<QueryRequest> requests) {
+        log.info("Received batch of {} queries", requests.size());
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(batchTimeoutMs);
+        requestExecutor.execute(() ->
+                comparisonService.processBatch(requests, new NdjsonBatchListener(emitter)));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
     }
 
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("BillBuddy is running!");
     }
+
+    /**
+     * Indexing readiness and progress. 200 once plans are searchable (possibly
+     * lexically only while embeddings catch up), 503 before that.
+     */
+    @GetMapping("/ready")
+    public ResponseEntity<Map<String, Object>> ready() {
+        Map<String, Object> stats = indexingQueue.stats();
+        HttpStatus status = stats.get("state") == IndexingQueue.State.STARTING
+                ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK;
+        return ResponseEntity.status(status).body(stats);
+    }
+
+    /**
+     * Shed questions: 429 when the session or client is over its rate, 503
+     * when completions are at their limit, both with Retry-After.
+     */
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Map<String, Object>> rejected(AdmissionRejectedException e) {
+        HttpStatus status = e.getReason() == AdmissionRejectedException.Reason.OVERLOADED
+                ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.TOO_MANY_REQUESTS;
+        return retryLater(status, e.getMessage(), e.getRetryAfterMs());
+    }
+
+    /**
+     * The request pool and its queue are full ({@code billbuddy.execution.*}).
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Map<String, Object>> poolFull(RejectedExecutionException e) {
+        log.warn("Request pool full, shedding request");
+        return retryLater(HttpStatus.SERVICE_UNAVAILABLE, "Too many requests in progress", 1000);
+    }
+
+    /**
+     * Completions unavailable with the retrieval-only fallback disabled.
+     */
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<Map<String, Object>> upstreamUnavailable(UpstreamUnavailableException e) {
+        long retryAfterMs = e instanceof CircuitBreaker.CircuitOpenException open ? open.getRetryAfterMs() : 1000;
+        return retryLater(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), retryAfterMs);
+    }
+
+    private static ResponseEntity<Map<String, Object>> retryLater(HttpStatus status, String message, long retryAfterMs) {
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max((retryAfterMs + 999) / 1000, 1)))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", message, "retryAfterMs", retryAfterMs));
+    }
 }
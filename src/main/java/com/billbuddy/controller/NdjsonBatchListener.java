@@ -0,0 +1,80 @@
+// NdjsonBatchListener.java
+package com.billbuddy.controller;
+
+import com.billbuddy.model.QueryResponse;
+import com.billbuddy.service.BatchQueryListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes a batch to the client as newline-delimited JSON, one line per
+ * question as it finishes: {@code {"index":i,"response":{...}}} or
+ * {@code {"index":i,"error":"..."}}, then a final
+ * {@code {"done":true,"succeeded":n,"failed":m,"processingTimeMs":t}}.
+ */
+@Slf4j
+class NdjsonBatchListener implements BatchQueryListener {
+
+    private final ResponseBodyEmitter emitter;
+    // Not a monitor: a worker blocked on a slow client must not pin its virtual thread's carrier
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private volatile boolean closed;
+
+    NdjsonBatchListener(ResponseBodyEmitter emitter) {
+        this.emitter = emitter;
+        emitter.onCompletion(() -> closed = true);
+        emitter.onTimeout(() -> closed = true);
+        emitter.onError(e -> closed = true);
+    }
+
+    @Override
+    public void onResult(int index, QueryResponse response) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("index", index);
+        line.put("response", response);
+        send(line);
+    }
+
+    @Override
+    public void onError(int index, String message) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("index", index);
+        line.put("error", message);
+        send(line);
+    }
+
+    @Override
+    public void onComplete(int succeeded, int failed, long processingTimeMs) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("done", true);
+        line.put("succeeded", succeeded);
+        line.put("failed", failed);
+        line.put("processingTimeMs", processingTimeMs);
+        send(line);
+        emitter.complete();
+    }
+
+    // Lines come from several workers; one at a time keeps them whole
+    private void send(Map<String, Object> line) {
+        sendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            emitter.send(line, MediaType.APPLICATION_JSON);
+            emitter.send("\n", MediaType.TEXT_PLAIN);
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; keep answering so results are still cached and logged
+            log.debug("Dropping batch line, client disconnected");
+            closed = true;
+        } finally {
+            sendLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+// SseQueryStreamListener.java
+package com.billbuddy.controller;
+
+import com.billbuddy.model.Citation;
+import com.billbuddy.model.QueryResponse;
+import com.billbuddy.service.AdmissionRejectedException;
+import com.billbuddy.service.QueryStreamListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Forwards a streamed query to the client as server-sent events:
+ * {@code citations}, {@code token}, one event per parsed section
+ * ({@code recommendation}, {@code explanation}, {@code monthlyCost},
+ * {@code tradeoffs}), then {@code done} with the full response or {@code error}.
+ * Token and section events carry JSON {@code {"text": value}}.
+ */
+@Slf4j
+class SseQueryStreamListener implements QueryStreamListener {
+
+    private final SseEmitter emitter;
+    private volatile boolean closed;
+
+    SseQueryStreamListener(SseEmitter emitter) {
+        this.emitter = emitter;
+        emitter.onCompletion(() -> closed = true);
+        emitter.onTimeout(() -> closed = true);
+        emitter.onError(e -> closed = true);
+    }
+
+    @Override
+    public void onCitations(String sessionId, List<Citation> citations) {
+        send("citations", Map.of("sessionId", sessionId, "citations", citations));
+    }
+
+    @Override
+    public void onToken(String text) {
+        send("token", Map.of("text", text));
+    }
+
+    @Override
+    public void onSection(String section, Object value) {
+        send(section, Map.of("text", value != null ? value : ""));
+    }
+
+    @Override
+    public void onComplete(QueryResponse response) {
+        send("done", response);
+        emitter.complete();
+    }
+
+    @Override
+    public void onError(Exception e) {
+        if (e instanceof AdmissionRejectedException rejected) {
+            send("error", Map.of("message", rejected.getMessage(), "retryAfterMs", rejected.getRetryAfterMs()));
+            emitter.complete();
+            return;
+        }
+        send("error", Map.of("message", "Failed to process query"));
+        emitter.complete();
+    }
+
+    private void send(String event, Object data) {
+        if (closed) {
+            return;
+        }
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; keep generating so the answer is still cached and logged
+            log.debug("Dropping '{}' event, client disconnected", event);
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+// ExactSearchStrategy.java
+package com.billbuddy.index;
+
+import com.billbuddy.util.SimilarityKernel;
+
+/**
+ * Brute-force cosine scan over every row. Exact, and the reference for ANN recall.
+ */
+public class ExactSearchStrategy implements VectorSearchStrategy {
+
+    private static final int BLOCK_ROWS = 256;
+
+    @Override
+    public void onUpsert(VectorIndex index, int row) {
+        // Nothing to maintain; the matrix is the index
+    }
+
+    @Override
+    public void clear() {
+    }
+
+    @Override
+    public TopKHeap search(VectorIndex index, float[] unitQuery, int topK) {
+        int rows = index.rowCount();
+        int dimension = index.dimension();
+        float[] matrix = index.matrix();
+        TopKHeap heap = new TopKHeap(Math.min(topK, rows));
+
+        // Score a block of rows in one kernel call, then feed the heap
+        float[] scores = new float[Math.min(BLOCK_ROWS, rows)];
+        for (int from = 0; from < rows; from += BLOCK_ROWS) {
+            int to = Math.min(from + BLOCK_ROWS, rows);
+            SimilarityKernel.dotBatch(unitQuery, matrix, dimension, from, to, scores);
+            for (int row = from; row < to; row++) {
+                if (index.hasVector(row)) {
+                    heap.offer(row, scores[row - from]);
+                }
+            }
+        }
+        return heap;
+    }
+
+    @Override
+    public TopKHeap[] search(VectorIndex index, float[][] unitQueries, int topK) {
+        int rows = index.rowCount();
+        int dimension = index.dimension();
+        float[] matrix = index.matrix();
+        TopKHeap[] heaps = new TopKHeap[unitQueries.length];
+        for (int q = 0; q < heaps.length; q++) {
+            heaps[q] = new TopKHeap(Math.min(topK, rows));
+        }
+
+        // One pass over the matrix: each block is scored against every query
+        float[][] scores = new float[unitQueries.length][Math.min(BLOCK_ROWS, rows)];
+        for (int from = 0; from < rows; from += BLOCK_ROWS) {
+            int to = Math.min(from + BLOCK_ROWS, rows);
+            SimilarityKernel.dotMatrix(unitQueries, matrix, dimension, from, to, scores);
+            for (int row = from; row < to; row++) {
+                if (index.hasVector(row)) {
+                    for (int q = 0; q < heaps.length; q++) {
+                        heaps[q].offer(row, scores[q][row - from]);
+                    }
+                }
+            }
+        }
+        return heaps;
+    }
+}
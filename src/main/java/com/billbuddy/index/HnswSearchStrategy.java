@@ -0,0 +1,413 @@
+// HnswSearchStrategy.java
+package com.billbuddy.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Hierarchical Navigable Small World graph over the rows of a {@link VectorIndex}.
+ * The graph stores row numbers only; vectors stay in the index matrix.
+ *
+ * <p>{@code m} bounds links per node on upper layers (2m on layer 0),
+ * {@code efConstruction} is the candidate list size while linking and
+ * {@code efSearch} the minimum candidate list size at query time. Higher values
+ * trade latency for recall.
+ */
+public class HnswSearchStrategy implements VectorSearchStrategy {
+
+    // Filters keeping fewer than 1/N of the rows are scanned directly instead of walking the graph
+    private static final int FILTERED_SCAN_RATIO = 4;
+    private static final int MAX_FILTERED_EF_BOOST = 4;
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+    private final Random random;
+
+    // links[row][level] = {count, neighbour...}
+    private int[][][] links = new int[0][][];
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswSearchStrategy(int m, int efConstruction, int efSearch, long seed) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW m must be at least 2");
+        }
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = Math.max(efSearch, 1);
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public void onUpsert(VectorIndex index, int row) {
+        ensureCapacity(row + 1);
+
+        boolean existing = links[row] != null;
+        int level = existing ? links[row].length - 1 : randomLevel();
+        if (!existing) {
+            links[row] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                links[row][l] = new int[1 + maxLinks(l)];
+            }
+        }
+
+        if (entryPoint < 0 || (entryPoint == row && index.rowCount() == 1)) {
+            entryPoint = row;
+            maxLevel = level;
+            return;
+        }
+
+        float[] vector = index.rowVector(row);
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(index, vector, current, l);
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            int[] candidates = searchLayer(index, vector, current, efConstruction, l, row, null);
+            if (candidates.length == 0) {
+                continue;
+            }
+
+            int[] own = links[row][l];
+            int count = selectNeighbours(index, row, candidates, candidates.length, m, own);
+
+            for (int i = 1; i <= count; i++) {
+                addLink(index, own[i], row, l);
+            }
+            current = candidates[0];
+        }
+
+        if (level > maxLevel) {
+            entryPoint = row;
+            maxLevel = level;
+        }
+    }
+
+    @Override
+    public void clear() {
+        links = new int[0][][];
+        entryPoint = -1;
+        maxLevel = -1;
+    }
+
+    /**
+     * Takes the snapshot's links as they are. A graph built with a larger
+     * {@code m} does not fit the link lists and is rebuilt instead.
+     */
+    @Override
+    public boolean restore(VectorIndex index, VectorSnapshot snapshot) {
+        int entry = snapshot.entryPoint();
+        if (entry < 0 || entry >= index.rowCount()) {
+            return false;
+        }
+        int rows = index.rowCount();
+        int[][][] restored = new int[rows][][];
+        for (int row = 0; row < rows; row++) {
+            int[][] stored = snapshot.links(row);
+            if (stored.length == 0) {
+                continue;
+            }
+            restored[row] = new int[stored.length][];
+            for (int l = 0; l < stored.length; l++) {
+                int count = stored[l][0];
+                if (count > maxLinks(l)) {
+                    return false;
+                }
+                restored[row][l] = Arrays.copyOf(stored[l], 1 + maxLinks(l));
+            }
+        }
+        if (restored[entry] == null) {
+            return false;
+        }
+        links = restored;
+        entryPoint = entry;
+        maxLevel = restored[entry].length - 1;
+        return true;
+    }
+
+    @Override
+    public int[][] links(int row) {
+        return row < links.length ? links[row] : null;
+    }
+
+    @Override
+    public int entryPoint() {
+        return entryPoint;
+    }
+
+    @Override
+    public TopKHeap search(VectorIndex index, float[] query, int topK) {
+        TopKHeap heap = new TopKHeap(Math.min(topK, index.rowCount()));
+        if (entryPoint < 0) {
+            return heap;
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(index, query, current, l);
+        }
+
+        int[] candidates = searchLayer(index, query, current, Math.max(efSearch, topK), 0, -1, null);
+        for (int row : candidates) {
+            if (index.hasVector(row)) {
+                heap.offer(row, index.score(row, query));
+            }
+        }
+        return heap;
+    }
+
+    /**
+     * Sparse filters are scanned directly. Dense ones walk the graph through
+     * every node but only collect allowed rows, widening the beam by the
+     * inverse selectivity so enough allowed rows are reached.
+     */
+    @Override
+    public TopKHeap search(VectorIndex index, float[] query, int topK, BitSet allowed) {
+        int allowedCount = allowed.cardinality();
+        if (entryPoint < 0 || (long) allowedCount * FILTERED_SCAN_RATIO < index.rowCount()) {
+            return VectorSearchStrategy.super.search(index, query, topK, allowed);
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(index, query, current, l);
+        }
+
+        int boost = Math.min(MAX_FILTERED_EF_BOOST, Math.max(1, index.rowCount() / allowedCount));
+        int ef = Math.max(efSearch, topK) * boost;
+        TopKHeap heap = new TopKHeap(Math.min(topK, allowedCount));
+        for (int row : searchLayer(index, query, current, ef, 0, -1, allowed)) {
+            heap.offer(row, index.score(row, query));
+        }
+        return heap;
+    }
+
+    private int greedyClosest(VectorIndex index, float[] query, int start, int level) {
+        int current = start;
+        float best = index.score(current, query);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbours = neighbours(current, level);
+            if (neighbours == null) {
+                break;
+            }
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int candidate = neighbours[i];
+                float score = index.score(candidate, query);
+                if (score > best) {
+                    best = score;
+                    current = candidate;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one layer. Returns up to {@code ef} rows ordered best-first,
+     * never including {@code excludeRow} and, when {@code allowed} is set, only
+     * rows in it (other rows are still traversed).
+     */
+    private int[] searchLayer(VectorIndex index, float[] query,
+                              int entry, int ef, int level, int excludeRow, BitSet allowed) {
+        BitSet visited = new BitSet(index.rowCount());
+        CandidateQueue candidates = new CandidateQueue(ef * 2);
+        TopKHeap results = new TopKHeap(ef);
+
+        float entryScore = index.score(entry, query);
+        visited.set(entry);
+        candidates.push(entry, entryScore);
+        if (entry != excludeRow && (allowed == null || allowed.get(entry))) {
+            results.offer(entry, entryScore);
+        }
+
+        while (!candidates.isEmpty()) {
+            float candidateScore = candidates.peekScore();
+            int candidate = candidates.pop();
+            if (results.isFull() && candidateScore < results.minScore()) {
+                break;
+            }
+
+            int[] neighbours = neighbours(candidate, level);
+            if (neighbours == null) {
+                continue;
+            }
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+
+                float score = index.score(neighbour, query);
+                if (!results.isFull() || score > results.minScore()) {
+                    candidates.push(neighbour, score);
+                    if (neighbour != excludeRow && (allowed == null || allowed.get(neighbour))) {
+                        results.offer(neighbour, score);
+                    }
+                }
+            }
+        }
+
+        int[] rows = new int[results.size()];
+        float[] scores = new float[results.size()];
+        results.drainDescending(rows, scores);
+        return rows;
+    }
+
+    private void addLink(VectorIndex index, int from, int to, int level) {
+        int[] list = links[from][level];
+        int count = list[0];
+        for (int i = 1; i <= count; i++) {
+            if (list[i] == to) {
+                return;
+            }
+        }
+
+        int capacity = list.length - 1;
+        if (count < capacity) {
+            list[count + 1] = to;
+            list[0] = count + 1;
+            return;
+        }
+
+        // Full: re-select among the existing links plus the new one
+        TopKHeap keep = new TopKHeap(capacity + 1);
+        for (int i = 1; i <= count; i++) {
+            keep.offer(list[i], index.score(from, list[i]));
+        }
+        keep.offer(to, index.score(from, to));
+
+        int[] rows = new int[keep.size()];
+        float[] scores = new float[keep.size()];
+        int candidates = keep.drainDescending(rows, scores);
+        selectNeighbours(index, from, rows, candidates, capacity, list);
+    }
+
+    /**
+     * Neighbour selection heuristic (Malkov and Yashunin, algorithm 4): walks
+     * the best-first {@code candidates} and keeps one only if it is closer to
+     * {@code row} than to every neighbour already kept. Plain closest-m
+     * selection spends all links inside dense clusters and leaves the graph
+     * without the long links between them, so parts of it become unreachable.
+     * Writes {count, neighbour...} into {@code out} and returns the count.
+     */
+    private int selectNeighbours(VectorIndex index, int row, int[] candidates, int candidateCount,
+                                 int max, int[] out) {
+        int count = 0;
+        for (int i = 0; i < candidateCount && count < max; i++) {
+            int candidate = candidates[i];
+            float score = index.score(row, candidate);
+            boolean diverse = true;
+            for (int j = 1; j <= count; j++) {
+                if (index.score(candidate, out[j]) > score) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                out[++count] = candidate;
+            }
+        }
+        out[0] = count;
+        return count;
+    }
+
+    private int[] neighbours(int row, int level) {
+        int[][] rowLinks = row < links.length ? links[row] : null;
+        return rowLinks != null && level < rowLinks.length ? rowLinks[level] : null;
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows > links.length) {
+            links = Arrays.copyOf(links, Math.max(rows, links.length * 2));
+        }
+    }
+
+    /**
+     * Growable max-heap of (row, score) used as the beam search frontier.
+     */
+    private static final class CandidateQueue {
+        private int[] rows;
+        private float[] scores;
+        private int size;
+
+        CandidateQueue(int initialCapacity) {
+            this.rows = new int[Math.max(initialCapacity, 4)];
+            this.scores = new float[rows.length];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        float peekScore() {
+            return scores[0];
+        }
+
+        void push(int row, float score) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] >= score) {
+                    break;
+                }
+                rows[i] = rows[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            rows[i] = row;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = rows[0];
+            size--;
+            if (size > 0) {
+                int row = rows[size];
+                float score = scores[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && scores[child + 1] > scores[child]) {
+                        child++;
+                    }
+                    if (score >= scores[child]) {
+                        break;
+                    }
+                    rows[i] = rows[child];
+                    scores[i] = scores[child];
+                    i = child;
+                }
+                rows[i] = row;
+                scores[i] = score;
+            }
+            return top;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+// LexicalIndex.java
+package com.billbuddy.index;
+
+import com.billbuddy.model.Plan;
+import com.billbuddy.model.SearchFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index over plan text, scored with Okapi BM25. Terms are
+ * lower-cased alphanumeric tokens plus adjacent-token bigrams, so exact cues
+ * like "NBN 100", "5G" or a provider name rank the plans that contain them
+ * without an embedding round trip.
+ */
+public class LexicalIndex {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "for", "i", "in", "is", "it", "me", "my", "of",
+            "on", "or", "the", "to", "what", "which", "with", "best", "plan", "plans");
+
+    private final double k1;
+    private final double b;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> rowsByPlanId = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    private int size;
+    private long totalLength;
+    private Plan[] plans = new Plan[0];
+    private int[] lengths = new int[0];
+    // Distinct terms per row, so an update can drop the row's old postings
+    private String[][] rowTerms = new String[0][];
+
+    public LexicalIndex() {
+        this(1.2, 0.75);
+    }
+
+    public LexicalIndex(double k1, double b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    public void upsert(Plan plan, String text) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        List<String> tokens = tokenize(text);
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = plan.getId() != null ? rowsByPlanId.get(plan.getId()) : null;
+            int row;
+            if (existing != null) {
+                row = existing;
+                for (String term : rowTerms[row]) {
+                    Postings list = postings.get(term);
+                    list.remove(row);
+                    if (list.size == 0) {
+                        postings.remove(term);
+                    }
+                }
+                totalLength -= lengths[row];
+            } else {
+                ensureCapacity(size + 1);
+                row = size++;
+                if (plan.getId() != null) {
+                    rowsByPlanId.put(plan.getId(), row);
+                }
+            }
+
+            frequencies.forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, t -> new Postings()).add(row, frequency));
+            plans[row] = plan;
+            lengths[row] = tokens.size();
+            rowTerms[row] = frequencies.keySet().toArray(new String[0]);
+            totalLength += tokens.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Top-K plans by BM25 among those matching {@code filter} (null for all).
+     * Plans sharing no term with the query are never returned.
+     */
+    public List<SearchHit> search(String query, int topK, SearchFilter filter) {
+        List<String> terms = tokenize(query).stream().distinct().toList();
+        boolean filtered = filter != null && filter.hasConstraints();
+
+        lock.readLock().lock();
+        try {
+            if (size == 0 || topK <= 0 || terms.isEmpty()) {
+                return List.of();
+            }
+
+            double averageLength = Math.max((double) totalLength / size, 1.0);
+            float[] scores = new float[size];
+            BitSet touched = new BitSet(size);
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+                double idf = Math.log(1.0 + (size - list.size + 0.5) / (list.size + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int row = list.rows[i];
+                    int tf = list.frequencies[i];
+                    double norm = k1 * (1.0 - b + b * lengths[row] / averageLength);
+                    scores[row] += (float) (idf * tf * (k1 + 1.0) / (tf + norm));
+                    touched.set(row);
+                }
+            }
+
+            TopKHeap heap = new TopKHeap(Math.min(topK, touched.cardinality()));
+            for (int row = touched.nextSetBit(0); row >= 0; row = touched.nextSetBit(row + 1)) {
+                if (!filtered || filter.matches(plans[row])) {
+                    heap.offer(row, scores[row]);
+                }
+            }
+
+            int[] rows = new int[heap.size()];
+            float[] best = new float[heap.size()];
+            int n = heap.drainDescending(rows, best);
+            List<SearchHit> results = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                results.add(new SearchHit(plans[rows[i]], best[i], null));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Distinct provider names currently indexed.
+     */
+    public Set<String> providers() {
+        lock.readLock().lock();
+        try {
+            Set<String> providers = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            for (int row = 0; row < size; row++) {
+                if (plans[row].getProvider() != null) {
+                    providers.add(plans[row].getProvider());
+                }
+            }
+            return providers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            rowsByPlanId.clear();
+            postings.clear();
+            size = 0;
+            totalLength = 0;
+            plans = new Plan[0];
+            lengths = new int[0];
+            rowTerms = new String[0][];
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lower-cased alphanumeric tokens without stop words, followed by
+     * underscore-joined bigrams of adjacent tokens ("nbn_100").
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^a-z0-9]+")) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        int unigrams = tokens.size();
+        for (int i = 1; i < unigrams; i++) {
+            tokens.add(tokens.get(i - 1) + "_" + tokens.get(i));
+        }
+        return tokens;
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows <= plans.length) {
+            return;
+        }
+        int capacity = Math.max(64, plans.length * 2);
+        while (capacity < rows) {
+            capacity *= 2;
+        }
+        plans = Arrays.copyOf(plans, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        rowTerms = Arrays.copyOf(rowTerms, capacity);
+    }
+
+    /**
+     * Growable (row, term frequency) posting list.
+     */
+    private static final class Postings {
+        private int[] rows = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        void add(int row, int frequency) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            rows[size] = row;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        void remove(int row) {
+            for (int i = 0; i < size; i++) {
+                if (rows[i] == row) {
+                    size--;
+                    rows[i] = rows[size];
+                    frequencies[i] = frequencies[size];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+// PlanCatalog.java
+package com.billbuddy.index;
+
+import com.billbuddy.model.Plan;
+import com.billbuddy.util.TokenEstimator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Read-side copy of the plan table. Readers take the current {@link Snapshot}
+ * with one volatile read and it never changes under them; indexing publishes
+ * plans by copying the map, adding its entries and swapping the reference
+ * (bumping the version). Catalog plans are detached copies without the stored
+ * vector columns, and each entry carries its pre-rendered context row, feature
+ * list and searchable text, so serving a query needs no persistence context
+ * and no per-request formatting. The indexes hold the same plan instances.
+ */
+public class PlanCatalog {
+
+    private volatile Snapshot snapshot = new Snapshot(0, Map.of());
+
+    /**
+     * @param version incremented by every publish
+     */
+    public record Snapshot(long version, Map<Long, Entry> entries) {
+
+        public Entry get(Long planId) {
+            return planId != null ? entries.get(planId) : null;
+        }
+
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    /**
+     * One plan with everything the request path renders from it.
+     *
+     * @param row               context table row after the "#" column
+     * @param features          the plan's features in listed order
+     * @param featureKeys       lower-cased {@code features}, for de-duplication
+     * @param descriptionTokens estimated tokens of the description
+     * @param detailTail        " Limitations: ... Best for: ..." (may be empty)
+     * @param searchableText    the text the lexical index tokenizes
+     */
+    public record Entry(Plan plan, String row, List<String> features, List<String> featureKeys,
+                        String description, int descriptionTokens, String detailTail, String searchableText) {
+
+        public static Entry of(Plan plan) {
+            List<String> features = new ArrayList<>();
+            List<String> keys = new ArrayList<>();
+            if (plan.getFeatures() != null) {
+                for (String feature : plan.getFeatures().split("[,;\\n]")) {
+                    if (!feature.isBlank()) {
+                        features.add(feature.trim());
+                        keys.add(feature.trim().toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+
+            String row = " | " + String.join(" | ",
+                    value(plan.getProvider()),
+                    value(plan.getName()),
+                    plan.getType() != null ? plan.getType().name() : "-",
+                    plan.getMonthlyPrice() != null ? String.format("%.2f", plan.getMonthlyPrice()) : "-",
+                    value(plan.getDataLimit()),
+                    value(plan.getSpeed()),
+                    value(plan.getContractLength()));
+
+            StringBuilder tail = new StringBuilder();
+            if (plan.getLimitations() != null && !plan.getLimitations().isBlank()) {
+                tail.append(" Limitations: ").append(plan.getLimitations().trim()).append('.');
+            }
+            if (plan.getBestFor() != null && !plan.getBestFor().isBlank()) {
+                tail.append(" Best for: ").append(plan.getBestFor().trim()).append('.');
+            }
+
+            String description = value(plan.getDescription());
+            return new Entry(plan, row, List.copyOf(features), List.copyOf(keys), description,
+                    TokenEstimator.estimate(description), tail.toString(), PlanCatalog.searchableText(plan));
+        }
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * The catalog entry for this exact plan instance, or one rendered on the
+     * spot for plans the catalog does not hold (or holds a newer copy of).
+     */
+    public Entry entry(Plan plan) {
+        Entry entry = snapshot.get(plan.getId());
+        return entry != null && entry.plan() == plan ? entry : Entry.of(plan);
+    }
+
+    /**
+     * Adds or replaces {@code plans} (which must have ids) in a new snapshot
+     * and returns their catalog copies in the same order.
+     */
+    public synchronized List<Plan> publish(Collection<Plan> plans) {
+        return swap(new HashMap<>(snapshot.entries()), plans);
+    }
+
+    /**
+     * Replaces the whole catalog with {@code plans}.
+     */
+    public synchronized List<Plan> replaceAll(Collection<Plan> plans) {
+        return swap(new HashMap<>(), plans);
+    }
+
+    public Map<String, Object> stats() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("version", current.version());
+        stats.put("plans", current.size());
+        return stats;
+    }
+
+    /**
+     * Copy of {@code plan} without the vector columns, so the catalog and the
+     * indexes never pin the stored embeddings.
+     */
+    public static Plan detach(Plan plan) {
+        Plan copy = new Plan();
+        copy.setId(plan.getId());
+        copy.setType(plan.getType());
+        copy.setProvider(plan.getProvider());
+        copy.setName(plan.getName());
+        copy.setDescription(plan.getDescription());
+        copy.setMonthlyPrice(plan.getMonthlyPrice());
+        copy.setDataLimit(plan.getDataLimit());
+        copy.setSpeed(plan.getSpeed());
+        copy.setContractLength(plan.getContractLength());
+        copy.setFeatures(plan.getFeatures());
+        copy.setLimitations(plan.getLimitations());
+        copy.setBestFor(plan.getBestFor());
+        copy.setContentHash(plan.getContentHash());
+        return copy;
+    }
+
+    public static String searchableText(Plan plan) {
+        return String.format(
+                "Provider: %s. Plan: %s. Type: %s. Price: $%.2f/month. %s Features: %s. Best for: %s",
+                plan.getProvider(),
+                plan.getName(),
+                plan.getType(),
+                plan.getMonthlyPrice(),
+                plan.getDescription(),
+                plan.getFeatures(),
+                plan.getBestFor()
+        );
+    }
+
+    private List<Plan> swap(Map<Long, Entry> entries, Collection<Plan> plans) {
+        List<Plan> copies = new ArrayList<>(plans.size());
+        for (Plan plan : plans) {
+            if (plan.getId() == null) {
+                throw new IllegalArgumentException("Only saved plans can be published");
+            }
+            Entry entry = Entry.of(detach(plan));
+            entries.put(plan.getId(), entry);
+            copies.add(entry.plan());
+        }
+        snapshot = new Snapshot(snapshot.version() + 1, Collections.unmodifiableMap(entries));
+        return copies;
+    }
+
+    private static String value(String text) {
+        return text == null || text.isBlank() ? "-" : text.trim();
+    }
+}
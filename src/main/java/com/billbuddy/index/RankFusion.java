@@ -0,0 +1,45 @@
+// RankFusion.java
+package com.billbuddy.index;
+
+import com.billbuddy.model.Plan;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reciprocal-rank fusion of several ranked hit lists. Only ranks matter, so
+ * cosine similarities and BM25 scores combine without calibration.
+ */
+public final class RankFusion {
+
+    private RankFusion() {
+    }
+
+    /**
+     * Fuses rankings with {@code score(plan) = sum 1 / (k + rank)}, rank starting
+     * at 1. Returned scores are scaled so a plan ranked first in every list
+     * scores 1.0; a plan keeps the first non-null passage among its hits.
+     */
+    public static List<SearchHit> reciprocalRank(int k, int topK, List<List<SearchHit>> rankings) {
+        Map<Object, SearchHit> hitsByKey = new LinkedHashMap<>();
+        Map<Object, Double> fused = new LinkedHashMap<>();
+        for (List<SearchHit> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                SearchHit hit = ranking.get(rank);
+                Plan plan = hit.plan();
+                Object key = plan.getId() != null ? plan.getId() : plan;
+                hitsByKey.merge(key, hit, (first, next) -> first.passage() != null ? first : next);
+                fused.merge(key, 1.0 / (k + rank + 1), Double::sum);
+            }
+        }
+
+        double best = rankings.size() / (k + 1.0);
+        List<SearchHit> results = new ArrayList<>(fused.size());
+        fused.forEach((key, score) -> results.add(hitsByKey.get(key).withScore(score / best)));
+        results.sort(Comparator.comparingDouble(SearchHit::score).reversed());
+        return results.size() > topK ? new ArrayList<>(results.subList(0, topK)) : results;
+    }
+}
@@ -0,0 +1,15 @@
+// SearchHit.java
+package com.billbuddy.index;
+
+import com.billbuddy.model.Plan;
+
+/**
+ * One retrieved plan with its relevance score and, for chunk-level matches,
+ * the text of the best-matching chunk (null when the whole plan matched).
+ */
+public record SearchHit(Plan plan, double score, String passage) {
+
+    public SearchHit withScore(double newScore) {
+        return new SearchHit(plan, newScore, passage);
+    }
+}
@@ -0,0 +1,104 @@
+// TopKHeap.java
+package com.billbuddy.index;
+
+/**
+ * Fixed-capacity min-heap of (row, score) pairs that keeps the K best scores seen.
+ * Backed by primitive arrays so a full scan allocates nothing per candidate.
+ */
+public class TopKHeap {
+
+    private final int capacity;
+    private final int[] rows;
+    private final float[] scores;
+    private int size;
+
+    public TopKHeap(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        this.rows = new int[this.capacity];
+        this.scores = new float[this.capacity];
+    }
+
+    public void offer(int row, float score) {
+        if (capacity == 0) {
+            return;
+        }
+        if (size < capacity) {
+            rows[size] = row;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (score > scores[0]) {
+            rows[0] = row;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public float minScore() {
+        return size == 0 ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    /**
+     * Drains the heap into rows/scores ordered best-first. The heap is empty afterwards.
+     */
+    public int drainDescending(int[] outRows, float[] outScores) {
+        int n = size;
+        for (int i = n - 1; i >= 0; i--) {
+            outRows[i] = rows[0];
+            outScores[i] = scores[0];
+            size--;
+            if (size > 0) {
+                rows[0] = rows[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+        }
+        return n;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[i] >= scores[parent]) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && scores[right] < scores[left]) {
+                smallest = right;
+            }
+            if (scores[i] <= scores[smallest]) {
+                break;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int row = rows[a];
+        rows[a] = rows[b];
+        rows[b] = row;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
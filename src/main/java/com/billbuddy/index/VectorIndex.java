@@ -0,0 +1,647 @@
+// VectorIndex.java
+package com.billbuddy.index;
+
+import com.billbuddy.model.Plan;
+import com.billbuddy.model.PlanType;
+import com.billbuddy.model.SearchFilter;
+import com.billbuddy.util.SimilarityKernel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Resident vector index over indexed plan chunks. Each row is one chunk of a
+ * plan; embeddings are L2-normalized on insert and live in one contiguous
+ * row-major float[] matrix, so cosine similarity is a single
+ * {@link SimilarityKernel} dot product and search never goes back to JPA or
+ * JSON. How rows are visited (exact scan or an ANN graph) is delegated to a
+ * {@link VectorSearchStrategy}; search aggregates row scores to plans by
+ * taking each plan's best chunk.
+ *
+ * <p>Rows are also partitioned by plan type and provider, with a sorted price
+ * index, so a {@link SearchFilter} narrows the candidate rows before any
+ * vector is scored.
+ */
+public class VectorIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, int[]> rowsByPlanId = new HashMap<>();
+    private final Map<Long, Long> versionsByPlanId = new HashMap<>();
+    private final VectorSearchStrategy strategy;
+
+    private int dimension = -1;
+    private int size;
+    private int liveRows;
+    private int livePlans;
+    // Upper bound on chunks per plan; lets search fetch enough rows for K distinct plans
+    private int maxChunksPerPlan = 1;
+    private float[] vectors = new float[0];
+    private float[] norms = new float[0];
+    private Plan[] plans = new Plan[0];
+    private String[] passages = new String[0];
+    private int[] freeRows = new int[0];
+    private int freeCount;
+    private long versionCounter;
+
+    private final Map<PlanType, BitSet> rowsByType = new EnumMap<>(PlanType.class);
+    private final Map<String, BitSet> rowsByProvider = new HashMap<>();
+    // Rows with a price, ordered by price; rebuilt lazily after upserts
+    private int[] rowsByPrice = new int[0];
+    private double[] sortedPrices = new double[0];
+    private volatile boolean priceIndexStale;
+
+    public VectorIndex() {
+        this(new ExactSearchStrategy());
+    }
+
+    public VectorIndex(VectorSearchStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Indexes a plan as a single row with no chunk text.
+     */
+    public void upsert(Plan plan, float[] vector) {
+        upsert(plan, List.of(vector), null);
+    }
+
+    /**
+     * Replaces all rows of {@code plan} with one row per chunk vector. Rows are
+     * tracked by plan id, so only saved plans can be indexed.
+     *
+     * @param chunkTexts text of each chunk, returned as the hit passage; may be null
+     */
+    public void upsert(Plan plan, List<float[]> chunkVectors, List<String> chunkTexts) {
+        if (plan.getId() == null) {
+            throw new IllegalArgumentException("Only saved plans can be indexed");
+        }
+        if (chunkVectors.isEmpty()) {
+            throw new IllegalArgumentException("A plan needs at least one vector");
+        }
+        lock.writeLock().lock();
+        try {
+            // Check every vector before the first one fixes an empty index's dimension
+            int expected = dimension < 0 ? chunkVectors.get(0).length : dimension;
+            for (float[] vector : chunkVectors) {
+                if (vector.length != expected) {
+                    throw new IllegalArgumentException("Vectors must have same dimension");
+                }
+            }
+            dimension = expected;
+
+            // Reuse the plan's previous rows in place, release any left over
+            int[] previous = rowsByPlanId.get(plan.getId());
+            int[] rows = new int[chunkVectors.size()];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = previous != null && i < previous.length ? previous[i] : allocateRow();
+            }
+            if (previous != null) {
+                for (int i = rows.length; i < previous.length; i++) {
+                    releaseRow(previous[i]);
+                }
+            } else {
+                livePlans++;
+            }
+
+            for (int i = 0; i < rows.length; i++) {
+                int row = rows[i];
+                if (plans[row] != null) {
+                    partition(plans[row], row, false);
+                } else {
+                    liveRows++;
+                }
+                System.arraycopy(chunkVectors.get(i), 0, vectors, row * dimension, dimension);
+                norms[row] = SimilarityKernel.normalizeInPlace(vectors, row * dimension, dimension);
+                plans[row] = plan;
+                passages[row] = chunkTexts != null ? chunkTexts.get(i) : null;
+                partition(plan, row, true);
+                strategy.onUpsert(this, row);
+            }
+
+            rowsByPlanId.put(plan.getId(), rows);
+            versionsByPlanId.put(plan.getId(), ++versionCounter);
+            maxChunksPerPlan = Math.max(maxChunksPerPlan, rows.length);
+            priceIndexStale = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Outcome of {@link #restore}.
+     *
+     * @param remaining    plans the snapshot holds no vectors for; index them as usual
+     * @param graphRebuilt the strategy keeps a graph and had to rebuild it because
+     *                     the snapshot carried none it could use
+     */
+    public record Restore(List<Plan> remaining, boolean graphRebuilt) {
+    }
+
+    /**
+     * Fills an empty index from a snapshot: the mapped matrix is copied in one
+     * bulk read (index row = snapshot row), each plan whose fingerprint the
+     * snapshot holds takes its rows, and the strategy adopts the stored graph.
+     * Snapshot rows no plan claims are released, keeping their graph links.
+     */
+    public Restore restore(VectorSnapshot snapshot, List<Plan> candidates) {
+        lock.writeLock().lock();
+        try {
+            if (size > 0) {
+                throw new IllegalStateException("Snapshots are restored into an empty index");
+            }
+            int rowCount = snapshot.rowCount();
+            if (rowCount == 0) {
+                return new Restore(candidates, false);
+            }
+            dimension = snapshot.dimension();
+            ensureCapacity(rowCount);
+            snapshot.copyMatrix(vectors);
+            size = rowCount;
+
+            List<Plan> remaining = new ArrayList<>();
+            for (Plan plan : candidates) {
+                int[] range = snapshot.rows(plan.getContentHash());
+                // Plans sharing a fingerprint cannot share rows; later ones are indexed as usual
+                if (range == null || plan.getId() == null || rowsByPlanId.containsKey(plan.getId())
+                        || plans[range[0]] != null) {
+                    remaining.add(plan);
+                    continue;
+                }
+                List<String> texts = snapshot.passages(plan.getContentHash());
+                int[] rows = new int[range[1]];
+                for (int i = 0; i < rows.length; i++) {
+                    int row = range[0] + i;
+                    rows[i] = row;
+                    norms[row] = SimilarityKernel.normalizeInPlace(vectors, row * dimension, dimension);
+                    plans[row] = plan;
+                    passages[row] = texts.get(i);
+                    partition(plan, row, true);
+                    liveRows++;
+                }
+                rowsByPlanId.put(plan.getId(), rows);
+                versionsByPlanId.put(plan.getId(), ++versionCounter);
+                livePlans++;
+                maxChunksPerPlan = Math.max(maxChunksPerPlan, rows.length);
+            }
+            for (int row = rowCount - 1; row >= 0; row--) {
+                if (plans[row] == null) {
+                    Arrays.fill(vectors, row * dimension, (row + 1) * dimension, 0f);
+                    if (freeCount == freeRows.length) {
+                        freeRows = Arrays.copyOf(freeRows, Math.max(16, freeCount * 2));
+                    }
+                    freeRows[freeCount++] = row;
+                }
+            }
+
+            boolean graphRebuilt = false;
+            if (!strategy.restore(this, snapshot)) {
+                strategy.clear();
+                for (int row = 0; row < rowCount; row++) {
+                    if (plans[row] != null) {
+                        strategy.onUpsert(this, row);
+                    }
+                }
+                graphRebuilt = strategy.entryPoint() >= 0;
+            }
+            priceIndexStale = true;
+            return new Restore(remaining, graphRebuilt);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Swaps in updated metadata (price, type, contract...) for an indexed plan
+     * whose vectors are still current, and bumps its version. Returns false
+     * when the plan has no rows.
+     */
+    public boolean refresh(Plan plan) {
+        if (plan.getId() == null) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            int[] rows = rowsByPlanId.get(plan.getId());
+            if (rows == null) {
+                return false;
+            }
+            for (int row : rows) {
+                partition(plans[row], row, false);
+                plans[row] = plan;
+                partition(plan, row, true);
+            }
+            versionsByPlanId.put(plan.getId(), ++versionCounter);
+            priceIndexStale = true;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<SearchHit> search(float[] query, int topK) {
+        return search(query, topK, null);
+    }
+
+    /**
+     * Top-K plans by their best-matching chunk, restricted to plans matching
+     * {@code filter}; a null or empty filter searches everything.
+     */
+    public List<SearchHit> search(float[] query, int topK, SearchFilter filter) {
+        boolean filtered = filter != null && filter.hasConstraints();
+        if (filtered) {
+            refreshPriceIndex();
+        }
+        lock.readLock().lock();
+        try {
+            if (liveRows == 0 || topK <= 0) {
+                return List.of();
+            }
+            if (query.length != dimension) {
+                throw new IllegalArgumentException("Vectors must have same dimension");
+            }
+
+            float[] unitQuery = query.clone();
+            if (SimilarityKernel.normalizeInPlace(unitQuery, 0, dimension) == 0f) {
+                return List.of();
+            }
+
+            // The K-th distinct plan first appears within the top K * maxChunksPerPlan rows
+            int rowK = (int) Math.min((long) topK * maxChunksPerPlan, liveRows);
+            TopKHeap heap;
+            if (filtered) {
+                BitSet candidates = candidates(filter);
+                if (candidates.isEmpty()) {
+                    return List.of();
+                }
+                heap = strategy.search(this, unitQuery, rowK, candidates);
+            } else {
+                heap = strategy.search(this, unitQuery, rowK);
+            }
+            return hits(heap, topK);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Unfiltered top-K for several queries at once, in query order. The
+     * strategy scores the whole batch in one pass over the matrix; a null or
+     * zero query gets an empty result.
+     */
+    public List<List<SearchHit>> searchBatch(List<float[]> queries, int topK) {
+        lock.readLock().lock();
+        try {
+            List<List<SearchHit>> results = new ArrayList<>(queries.size());
+            if (liveRows == 0 || topK <= 0) {
+                queries.forEach(query -> results.add(List.of()));
+                return results;
+            }
+
+            List<float[]> unitQueries = new ArrayList<>(queries.size());
+            int[] slots = new int[queries.size()];
+            for (int q = 0; q < queries.size(); q++) {
+                float[] query = queries.get(q);
+                slots[q] = -1;
+                if (query == null) {
+                    continue;
+                }
+                if (query.length != dimension) {
+                    throw new IllegalArgumentException("Vectors must have same dimension");
+                }
+                float[] unitQuery = query.clone();
+                if (SimilarityKernel.normalizeInPlace(unitQuery, 0, dimension) > 0f) {
+                    slots[q] = unitQueries.size();
+                    unitQueries.add(unitQuery);
+                }
+            }
+
+            int rowK = (int) Math.min((long) topK * maxChunksPerPlan, liveRows);
+            TopKHeap[] heaps = unitQueries.isEmpty()
+                    ? new TopKHeap[0]
+                    : strategy.search(this, unitQueries.toArray(new float[0][]), rowK);
+            for (int slot : slots) {
+                results.add(slot >= 0 ? hits(heaps[slot], topK) : List.of());
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of indexed plans.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return livePlans;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of indexed chunk rows.
+     */
+    public int chunkCount() {
+        lock.readLock().lock();
+        try {
+            return liveRows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Monotonic version of the plan's indexed vectors, bumped on every upsert;
+     * -1 when the plan is not indexed.
+     */
+    public long version(Long planId) {
+        lock.readLock().lock();
+        try {
+            Long version = versionsByPlanId.get(planId);
+            return version != null ? version : -1L;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            rowsByPlanId.clear();
+            versionsByPlanId.clear();
+            dimension = -1;
+            size = 0;
+            liveRows = 0;
+            livePlans = 0;
+            maxChunksPerPlan = 1;
+            vectors = new float[0];
+            norms = new float[0];
+            plans = new Plan[0];
+            passages = new String[0];
+            freeRows = new int[0];
+            freeCount = 0;
+            rowsByType.clear();
+            rowsByProvider.clear();
+            rowsByPrice = new int[0];
+            sortedPrices = new double[0];
+            priceIndexStale = false;
+            strategy.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Accessors for strategies; callers already hold the index lock
+
+    int rowCount() {
+        return size;
+    }
+
+    boolean hasVector(int row) {
+        return norms[row] != 0f;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    float[] matrix() {
+        return vectors;
+    }
+
+    VectorSearchStrategy strategy() {
+        return strategy;
+    }
+
+    Plan plan(int row) {
+        return plans[row];
+    }
+
+    String passage(int row) {
+        return passages[row];
+    }
+
+    /**
+     * Rows of each indexed plan, in chunk order.
+     */
+    Collection<int[]> planRows() {
+        return rowsByPlanId.values();
+    }
+
+    /**
+     * Runs {@code action} under the read lock, so {@link VectorSnapshot} sees one
+     * consistent state across several passes over the rows.
+     */
+    <T> T readLocked(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Unit-length copy of a row.
+     */
+    float[] rowVector(int row) {
+        return Arrays.copyOfRange(vectors, row * dimension, (row + 1) * dimension);
+    }
+
+    float score(int row, float[] unitQuery) {
+        if (norms[row] == 0f) {
+            return -1f;
+        }
+        return SimilarityKernel.dot(unitQuery, 0, vectors, row * dimension, dimension);
+    }
+
+    float score(int rowA, int rowB) {
+        if (norms[rowA] == 0f || norms[rowB] == 0f) {
+            return -1f;
+        }
+        return SimilarityKernel.dot(vectors, rowA * dimension, vectors, rowB * dimension, dimension);
+    }
+
+    /**
+     * Drains row scores into at most {@code topK} plans, each by its best row.
+     */
+    private List<SearchHit> hits(TopKHeap heap, int topK) {
+        int[] rows = new int[heap.size()];
+        float[] scores = new float[heap.size()];
+        int n = heap.drainDescending(rows, scores);
+
+        List<SearchHit> results = new ArrayList<>(Math.min(n, topK));
+        // A plan's rows share one Plan instance
+        Set<Plan> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < n && results.size() < topK; i++) {
+            Plan plan = plans[rows[i]];
+            if (hasVector(rows[i]) && seen.add(plan)) {
+                results.add(new SearchHit(plan, scores[i], passages[rows[i]]));
+            }
+        }
+        return results;
+    }
+
+    private int allocateRow() {
+        if (freeCount > 0) {
+            return freeRows[--freeCount];
+        }
+        ensureCapacity(size + 1);
+        return size++;
+    }
+
+    /**
+     * Empties a row and queues it for reuse. Its ANN links stay until the row is
+     * reused, so the graph remains connected; empty rows are never returned.
+     */
+    private void releaseRow(int row) {
+        partition(plans[row], row, false);
+        Arrays.fill(vectors, row * dimension, (row + 1) * dimension, 0f);
+        norms[row] = 0f;
+        plans[row] = null;
+        passages[row] = null;
+        liveRows--;
+        if (freeCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, Math.max(16, freeCount * 2));
+        }
+        freeRows[freeCount++] = row;
+    }
+
+    /**
+     * Rows passing every constraint of the filter, intersecting partitions first
+     * and only checking price and contract terms on the rows that survive. The
+     * sorted price index is rebuilt outside the read lock, so a write landing in
+     * between can leave it stale; it is then skipped and the per-row price
+     * check, which always runs, does the filtering.
+     */
+    private BitSet candidates(SearchFilter filter) {
+        BitSet candidates = new BitSet(size);
+        if (filter.getTypes() != null && !filter.getTypes().isEmpty()) {
+            for (PlanType type : filter.getTypes()) {
+                BitSet partition = rowsByType.get(type);
+                if (partition != null) {
+                    candidates.or(partition);
+                }
+            }
+        } else {
+            candidates.set(0, size);
+        }
+
+        if (filter.getProviders() != null && !filter.getProviders().isEmpty()) {
+            BitSet byProvider = new BitSet(size);
+            for (String provider : filter.getProviders()) {
+                BitSet partition = rowsByProvider.get(providerKey(provider));
+                if (partition != null) {
+                    byProvider.or(partition);
+                }
+            }
+            candidates.and(byProvider);
+        }
+
+        if ((filter.getMinPrice() != null || filter.getMaxPrice() != null) && !priceIndexStale) {
+            double min = filter.getMinPrice() != null ? filter.getMinPrice() : Double.NEGATIVE_INFINITY;
+            double max = filter.getMaxPrice() != null ? filter.getMaxPrice() : Double.POSITIVE_INFINITY;
+            BitSet byPrice = new BitSet(size);
+            for (int i = lowerBound(sortedPrices, min); i < sortedPrices.length && sortedPrices[i] <= max; i++) {
+                byPrice.set(rowsByPrice[i]);
+            }
+            candidates.and(byPrice);
+        }
+
+        for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+            Plan plan = plans[row];
+            if (!hasVector(row)
+                    || !filter.acceptsPrice(plan.getMonthlyPrice())
+                    || !filter.acceptsContract(plan.getContractLength())) {
+                candidates.clear(row);
+            }
+        }
+        return candidates;
+    }
+
+    private void refreshPriceIndex() {
+        if (!priceIndexStale) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!priceIndexStale) {
+                return;
+            }
+            Integer[] priced = new Integer[size];
+            int count = 0;
+            for (int row = 0; row < size; row++) {
+                if (plans[row] != null && plans[row].getMonthlyPrice() != null) {
+                    priced[count++] = row;
+                }
+            }
+            Arrays.sort(priced, 0, count, (a, b) -> Double.compare(
+                    plans[a].getMonthlyPrice(), plans[b].getMonthlyPrice()));
+
+            rowsByPrice = new int[count];
+            sortedPrices = new double[count];
+            for (int i = 0; i < count; i++) {
+                rowsByPrice[i] = priced[i];
+                sortedPrices[i] = plans[priced[i]].getMonthlyPrice();
+            }
+            priceIndexStale = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static int lowerBound(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void partition(Plan plan, int row, boolean member) {
+        if (plan.getType() != null) {
+            rowsByType.computeIfAbsent(plan.getType(), type -> new BitSet()).set(row, member);
+        }
+        rowsByProvider.computeIfAbsent(providerKey(plan.getProvider()), provider -> new BitSet()).set(row, member);
+    }
+
+    private static String providerKey(String provider) {
+        return provider == null ? "" : provider.toLowerCase(Locale.ROOT);
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows <= plans.length) {
+            return;
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, plans.length * 2);
+        while (capacity < rows) {
+            capacity *= 2;
+        }
+        vectors = Arrays.copyOf(vectors, capacity * dimension);
+        norms = Arrays.copyOf(norms, capacity);
+        plans = Arrays.copyOf(plans, capacity);
+        passages = Arrays.copyOf(passages, capacity);
+    }
+}
@@ -0,0 +1,71 @@
+// VectorSearchStrategy.java
+package com.billbuddy.index;
+
+import java.util.BitSet;
+
+/**
+ * How {@link VectorIndex} finds nearest rows. Implementations are always called
+ * while the index holds its lock: {@code onUpsert} and {@code clear} under the
+ * write lock, {@code search} under the read lock (so concurrently with other searches).
+ */
+public interface VectorSearchStrategy {
+
+    void onUpsert(VectorIndex index, int row);
+
+    void clear();
+
+    /**
+     * Adopts the graph stored in {@code snapshot} after {@link VectorIndex#restore}
+     * filled the index from it (index row = snapshot row), instead of linking
+     * every row again with {@code onUpsert}. Returns false when there is no
+     * usable graph; the index then calls {@code onUpsert} for each live row.
+     */
+    default boolean restore(VectorIndex index, VectorSnapshot snapshot) {
+        return false;
+    }
+
+    /**
+     * Links of {@code row} per level, each {count, neighbour...}, for writing
+     * to a snapshot; null when the strategy keeps no graph.
+     */
+    default int[][] links(int row) {
+        return null;
+    }
+
+    /**
+     * Row the graph search starts from, -1 when the strategy keeps no graph.
+     */
+    default int entryPoint() {
+        return -1;
+    }
+
+    /**
+     * @param unitQuery L2-normalized query; row scores are plain dot products
+     */
+    TopKHeap search(VectorIndex index, float[] unitQuery, int topK);
+
+    /**
+     * One heap per query, in query order. The default searches each query in
+     * turn; strategies that scan the matrix can score all queries per pass.
+     */
+    default TopKHeap[] search(VectorIndex index, float[][] unitQueries, int topK) {
+        TopKHeap[] heaps = new TopKHeap[unitQueries.length];
+        for (int q = 0; q < unitQueries.length; q++) {
+            heaps[q] = search(index, unitQueries[q], topK);
+        }
+        return heaps;
+    }
+
+    /**
+     * Search restricted to the rows set in {@code candidates}. The default scores
+     * each candidate directly, which is exact and cheap once filters have
+     * narrowed the catalog.
+     */
+    default TopKHeap search(VectorIndex index, float[] unitQuery, int topK, BitSet candidates) {
+        TopKHeap heap = new TopKHeap(Math.min(topK, candidates.cardinality()));
+        for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+            heap.offer(row, index.score(row, unitQuery));
+        }
+        return heap;
+    }
+}
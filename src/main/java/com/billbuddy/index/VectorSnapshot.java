@@ -0,0 +1,498 @@
+// VectorSnapshot.java
+package com.billbuddy.index;
+
+import com.billbuddy.model.Plan;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped snapshot of the vector index. Chunk vectors are keyed by each
+ * plan's content fingerprint rather than its database id, so a new instance
+ * (even on an empty in-memory database) restores every unchanged plan without
+ * calling the embedding API.
+ *
+ * <p>Layout, little-endian: a 32-byte header (magic, format version, dimension,
+ * entry count, row count, flags, CRC32 of the rest of the file), the entry
+ * table (SHA-256, first row and row count per plan), length-prefixed UTF-8
+ * passages per row, the row-major float32 matrix aligned to 64 bytes and,
+ * when the index keeps an ANN graph, the graph: its entry row, then per row
+ * the level count and per level the link count and linked rows. Snapshots are
+ * written to a temp file and atomically moved into place; a file with the
+ * wrong magic, version or checksum, or with counts that do not fit its size,
+ * is rejected. The file is mapped as a single buffer, so a snapshot is at most
+ * {@link #MAX_BYTES} (about 350k chunk rows at 1536 dimensions); a larger
+ * index is not written.
+ *
+ * <p>{@link VectorIndex#restore} copies the matrix in one bulk read and the
+ * search strategy adopts the graph, so boot does not rebuild it.
+ */
+public final class VectorSnapshot {
+
+    private static final int MAGIC = 0x53564242; // "BBVS"
+    private static final int FORMAT_VERSION = 2;
+    private static final int FLAG_GRAPH = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int HASH_BYTES = 32;
+    private static final int ENTRY_BYTES = HASH_BYTES + 8;
+    private static final int MATRIX_ALIGNMENT = 64;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    static final long MAX_BYTES = Integer.MAX_VALUE;
+
+    private final MappedByteBuffer buffer;
+    private final int dimension;
+    private final int rowCount;
+    private final Map<String, int[]> rowsByHash;
+    private final int[] passageOffsets;
+    private final FloatBuffer matrix;
+    private final int entryPoint;
+    // Offset of each row's links, null without a graph
+    private final int[] linkOffsets;
+
+    private VectorSnapshot(MappedByteBuffer buffer, int dimension, int rowCount, Map<String, int[]> rowsByHash,
+                           int[] passageOffsets, FloatBuffer matrix, int entryPoint, int[] linkOffsets) {
+        this.buffer = buffer;
+        this.dimension = dimension;
+        this.rowCount = rowCount;
+        this.rowsByHash = rowsByHash;
+        this.passageOffsets = passageOffsets;
+        this.matrix = matrix;
+        this.entryPoint = entryPoint;
+        this.linkOffsets = linkOffsets;
+    }
+
+    /**
+     * Maps and validates a snapshot; returns null when the file does not exist.
+     *
+     * @throws IOException when the file is unreadable, too large to map,
+     *                     truncated, inconsistent or fails its checksum
+     */
+    public static VectorSnapshot open(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > MAX_BYTES) {
+                throw new IOException("Snapshot larger than " + MAX_BYTES + " bytes: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int size = buffer.capacity();
+        if (size < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a vector snapshot: " + path);
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot version " + buffer.getInt(4) + ": " + path);
+        }
+        int dimension = buffer.getInt(8);
+        int entries = buffer.getInt(12);
+        int rows = buffer.getInt(16);
+        int flags = buffer.getInt(20);
+        long checksum = buffer.getLong(24);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(HEADER_BYTES, size - HEADER_BYTES));
+        if (crc.getValue() != checksum) {
+            throw new IOException("Snapshot checksum mismatch: " + path);
+        }
+        // Every entry and row takes at least 4 bytes, so counts beyond the file size are corrupt
+        if (dimension < 0 || (dimension == 0 && rows > 0) || entries < 0 || rows < 0
+                || (long) entries * ENTRY_BYTES > size || (long) rows * 4 > size) {
+            throw new IOException("Snapshot header out of range (dimension " + dimension + ", "
+                    + entries + " plans, " + rows + " rows): " + path);
+        }
+
+        try {
+            Map<String, int[]> rowsByHash = new HashMap<>(entries * 2);
+            HexFormat hex = HexFormat.of();
+            byte[] hash = new byte[HASH_BYTES];
+            int position = HEADER_BYTES;
+            for (int i = 0; i < entries; i++) {
+                buffer.get(position, hash);
+                int firstRow = buffer.getInt(position + HASH_BYTES);
+                int rowCount = buffer.getInt(position + HASH_BYTES + 4);
+                if (firstRow < 0 || rowCount < 0 || (long) firstRow + rowCount > rows) {
+                    throw new IOException("Snapshot entry rows outside the matrix: " + path);
+                }
+                rowsByHash.put(hex.formatHex(hash), new int[]{firstRow, rowCount});
+                position += ENTRY_BYTES;
+            }
+
+            int[] passageOffsets = new int[rows];
+            for (int row = 0; row < rows; row++) {
+                passageOffsets[row] = position;
+                int length = buffer.getInt(position);
+                if (length > size - position - 4) {
+                    throw new IOException("Snapshot passage runs past the end: " + path);
+                }
+                position += 4 + Math.max(length, 0);
+            }
+
+            int matrixOffset = align(position);
+            long matrixBytes = (long) rows * dimension * Float.BYTES;
+            long matrixEnd = matrixOffset + matrixBytes;
+            if (matrixEnd > size) {
+                throw new IOException("Snapshot matrix runs past the end: " + path);
+            }
+            if ((flags & FLAG_GRAPH) == 0 ? matrixEnd != size : matrixEnd >= size) {
+                throw new IOException("Snapshot matrix size mismatch: " + path);
+            }
+            FloatBuffer matrix = buffer.slice(matrixOffset, (int) matrixBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer();
+
+            int entryPoint = -1;
+            int[] linkOffsets = null;
+            if ((flags & FLAG_GRAPH) != 0) {
+                position = (int) matrixEnd;
+                entryPoint = buffer.getInt(position);
+                position += 4;
+                linkOffsets = new int[rows];
+                for (int row = 0; row < rows; row++) {
+                    linkOffsets[row] = position;
+                    int levels = buffer.getInt(position);
+                    position += 4;
+                    for (int l = 0; l < levels; l++) {
+                        int count = buffer.getInt(position);
+                        if (count < 0 || count > (size - position - 4) / 4) {
+                            throw new IOException("Snapshot graph runs past the end: " + path);
+                        }
+                        for (int i = 1; i <= count; i++) {
+                            int linked = buffer.getInt(position + 4 * i);
+                            if (linked < 0 || linked >= rows) {
+                                throw new IOException("Snapshot graph links outside the matrix: " + path);
+                            }
+                        }
+                        position += 4 + 4 * count;
+                    }
+                }
+                if (position != size || entryPoint < -1 || entryPoint >= rows) {
+                    throw new IOException("Snapshot graph size mismatch: " + path);
+                }
+            }
+            return new VectorSnapshot(buffer, dimension, rows, rowsByHash, passageOffsets, matrix,
+                    entryPoint, linkOffsets);
+        } catch (RuntimeException e) {
+            // Whatever slipped past the checks above, a bad file must not escape as an unchecked error
+            throw new IOException("Corrupt snapshot: " + path, e);
+        }
+    }
+
+    /**
+     * Writes every indexed plan that has a content fingerprint and atomically
+     * replaces {@code path}. Returns the number of plans written.
+     */
+    public static int write(VectorIndex index, Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        int written;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            written = index.readLocked(() -> {
+                try {
+                    return writeLocked(index, channel);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            channel.force(true);
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temp);
+            throw e.getCause();
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return written;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int size() {
+        return rowsByHash.size();
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public boolean contains(String contentHash) {
+        return contentHash != null && rowsByHash.containsKey(contentHash);
+    }
+
+    public boolean hasGraph() {
+        return linkOffsets != null;
+    }
+
+    /**
+     * {first row, row count} stored for the fingerprint, or null when absent.
+     */
+    int[] rows(String contentHash) {
+        return contentHash != null ? rowsByHash.get(contentHash) : null;
+    }
+
+    /**
+     * Copies the whole matrix into the start of {@code target} in one bulk read.
+     */
+    void copyMatrix(float[] target) {
+        matrix.get(0, target, 0, rowCount * dimension);
+    }
+
+    /**
+     * Graph entry row, -1 without a graph.
+     */
+    int entryPoint() {
+        return entryPoint;
+    }
+
+    /**
+     * Links of {@code row} per level, each {count, linked row...}.
+     */
+    int[][] links(int row) {
+        int position = linkOffsets[row];
+        int[][] levels = new int[buffer.getInt(position)][];
+        position += 4;
+        for (int l = 0; l < levels.length; l++) {
+            int count = buffer.getInt(position);
+            int[] list = new int[1 + count];
+            list[0] = count;
+            for (int i = 1; i <= count; i++) {
+                list[i] = buffer.getInt(position + 4 * i);
+            }
+            levels[l] = list;
+            position += 4 + 4 * count;
+        }
+        return levels;
+    }
+
+    /**
+     * Chunk vectors stored for the fingerprint, or null when absent.
+     */
+    public List<float[]> vectors(String contentHash) {
+        int[] rows = contentHash != null ? rowsByHash.get(contentHash) : null;
+        if (rows == null) {
+            return null;
+        }
+        List<float[]> vectors = new ArrayList<>(rows[1]);
+        for (int row = rows[0]; row < rows[0] + rows[1]; row++) {
+            float[] vector = new float[dimension];
+            matrix.get(row * dimension, vector);
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    /**
+     * Chunk passages stored for the fingerprint, or null when absent.
+     */
+    public List<String> passages(String contentHash) {
+        int[] rows = contentHash != null ? rowsByHash.get(contentHash) : null;
+        if (rows == null) {
+            return null;
+        }
+        List<String> passages = new ArrayList<>(rows[1]);
+        for (int row = rows[0]; row < rows[0] + rows[1]; row++) {
+            int offset = passageOffsets[row];
+            int length = buffer.getInt(offset);
+            if (length < 0) {
+                passages.add(null);
+            } else {
+                byte[] bytes = new byte[length];
+                buffer.get(offset + 4, bytes);
+                passages.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+        return passages;
+    }
+
+    private static int writeLocked(VectorIndex index, FileChannel channel) throws IOException {
+        int dimension = index.dimension();
+        List<String> hashes = new ArrayList<>();
+        List<int[]> planRows = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        int rows = 0;
+        for (int[] indexRows : index.planRows()) {
+            Plan plan = index.plan(indexRows[0]);
+            String hash = plan != null ? plan.getContentHash() : null;
+            if (hash == null || hash.length() != HASH_BYTES * 2 || !seen.add(hash)) {
+                continue;
+            }
+            hashes.add(hash);
+            planRows.add(indexRows);
+            rows += indexRows.length;
+        }
+        long matrixBytes = (long) rows * dimension * Float.BYTES;
+        if (HEADER_BYTES + matrixBytes > MAX_BYTES) {
+            throw new IOException("Index of " + rows + " rows x " + dimension
+                    + " dimensions exceeds the " + MAX_BYTES + "-byte snapshot limit");
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        channel.position(HEADER_BYTES);
+        long position = HEADER_BYTES;
+
+        HexFormat hex = HexFormat.of();
+        int firstRow = 0;
+        for (int i = 0; i < hashes.size(); i++) {
+            out = ensure(out, ENTRY_BYTES, channel, crc);
+            out.put(hex.parseHex(hashes.get(i)));
+            out.putInt(firstRow);
+            out.putInt(planRows.get(i).length);
+            firstRow += planRows.get(i).length;
+            position += ENTRY_BYTES;
+        }
+
+        for (int[] indexRows : planRows) {
+            for (int row : indexRows) {
+                String passage = index.passage(row);
+                byte[] bytes = passage != null ? passage.getBytes(StandardCharsets.UTF_8) : new byte[0];
+                out = ensure(out, 4 + bytes.length, channel, crc);
+                out.putInt(passage != null ? bytes.length : -1);
+                out.put(bytes);
+                position += 4 + bytes.length;
+            }
+        }
+
+        int padding = (int) (align(position) - position);
+        out = ensure(out, padding, channel, crc);
+        out.put(new byte[padding]);
+
+        float[] matrix = index.matrix();
+        for (int[] indexRows : planRows) {
+            for (int row : indexRows) {
+                out = ensure(out, dimension * Float.BYTES, channel, crc);
+                out.asFloatBuffer().put(matrix, row * dimension, dimension);
+                out.position(out.position() + dimension * Float.BYTES);
+            }
+        }
+
+        VectorSearchStrategy strategy = index.strategy();
+        int flags = 0;
+        if (strategy.entryPoint() >= 0 && rows > 0) {
+            out = writeGraph(index, strategy, planRows, rows, out, channel, crc);
+            flags |= FLAG_GRAPH;
+        }
+        flush(out, channel, crc);
+        if (channel.size() > MAX_BYTES) {
+            throw new IOException("Snapshot of " + channel.size() + " bytes exceeds the "
+                    + MAX_BYTES + "-byte limit");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(dimension)
+                .putInt(hashes.size()).putInt(rows).putInt(flags).putLong(crc.getValue());
+        header.flip();
+        channel.write(header, 0);
+        return hashes.size();
+    }
+
+    /**
+     * Writes the graph renumbered to snapshot rows. Links to rows left out of
+     * the snapshot are dropped; if the entry row is one of them, the written
+     * row with the most levels takes its place.
+     */
+    private static ByteBuffer writeGraph(VectorIndex index, VectorSearchStrategy strategy, List<int[]> planRows,
+                                         int rows, ByteBuffer out, FileChannel channel, CRC32 crc) throws IOException {
+        int[] snapshotRow = new int[index.rowCount()];
+        Arrays.fill(snapshotRow, -1);
+        int next = 0;
+        for (int[] indexRows : planRows) {
+            for (int row : indexRows) {
+                snapshotRow[row] = next++;
+            }
+        }
+
+        int entryPoint = snapshotRow[strategy.entryPoint()];
+        if (entryPoint < 0) {
+            int levels = -1;
+            for (int[] indexRows : planRows) {
+                for (int row : indexRows) {
+                    int[][] links = strategy.links(row);
+                    if (links != null && links.length > levels) {
+                        levels = links.length;
+                        entryPoint = snapshotRow[row];
+                    }
+                }
+            }
+        }
+        out = ensure(out, 4, channel, crc);
+        out.putInt(entryPoint);
+
+        for (int[] indexRows : planRows) {
+            for (int row : indexRows) {
+                int[][] links = strategy.links(row);
+                int levels = links != null ? links.length : 0;
+                out = ensure(out, 4, channel, crc);
+                out.putInt(levels);
+                for (int l = 0; l < levels; l++) {
+                    int[] list = links[l];
+                    out = ensure(out, 4 * (1 + list[0]), channel, crc);
+                    int countAt = out.position();
+                    out.putInt(0);
+                    int count = 0;
+                    for (int i = 1; i <= list[0]; i++) {
+                        int linked = list[i] < snapshotRow.length ? snapshotRow[list[i]] : -1;
+                        if (linked >= 0) {
+                            out.putInt(linked);
+                            count++;
+                        }
+                    }
+                    out.putInt(countAt, count);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Makes room for {@code bytes} more bytes, flushing or growing the buffer.
+     */
+    private static ByteBuffer ensure(ByteBuffer out, int bytes, FileChannel channel, CRC32 crc) throws IOException {
+        if (out.remaining() >= bytes) {
+            return out;
+        }
+        flush(out, channel, crc);
+        if (out.capacity() < bytes) {
+            return ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return out;
+    }
+
+    private static void flush(ByteBuffer out, FileChannel channel, CRC32 crc) throws IOException {
+        out.flip();
+        crc.update(out.duplicate());
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    private static int align(long position) {
+        return (int) ((position + MATRIX_ALIGNMENT - 1) / MATRIX_ALIGNMENT * MATRIX_ALIGNMENT);
+    }
+}
@@ -13,7 +13,9 @@ import lombok.AllArgsConstructor;
 @AllArgsConstructor
 public class Plan {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Sequence ids (pooled) keep Hibernate JDBC insert batching enabled; IDENTITY disables it
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "plan_seq")
+    @SequenceGenerator(name = "plan_seq", sequenceName = "plan_seq", allocationSize = 50)
     private Long id;
 
     @Enumerated(EnumType.STRING)
@@ -39,8 +41,16 @@ public class Plan {
     @Column(length = 2000)
     private String bestFor;
 
-    // Vector embedding stored as JSON string
+    // SHA-256 of the chunk text and model the stored chunk vectors came from; null until embedded
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // Vector embedding packed by EmbeddingCodec (versioned header + float32/fp16/int8 payload)
+    @Column(name = "embedding_vector", length = 16384)
+    private byte[] embeddingVector;
+
+    // Legacy JSON embedding; only read by EmbeddingStorageMigrator and cleared once migrated
     @Lob
-    @Column(columnDefinition = "CLOB")
+    @Column(name = "embedding", columnDefinition = "CLOB")
     private String embedding;
 }
@@ -0,0 +1,34 @@
+// PlanChunk.java
+package com.billbuddy.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Entity
+@Table(name = "plan_chunks", indexes = @Index(name = "idx_plan_chunks_plan_id", columnList = "plan_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlanChunk {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "plan_chunk_seq")
+    @SequenceGenerator(name = "plan_chunk_seq", sequenceName = "plan_chunk_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "plan_id", nullable = false)
+    private Long planId;
+
+    // Position of the chunk within the plan's text, from 0
+    private Integer chunkIndex;
+
+    @Column(length = 4000)
+    private String text;
+
+    private Integer tokenCount;
+
+    // Packed by EmbeddingCodec, like Plan.embeddingVector
+    @Column(name = "embedding_vector", length = 16384)
+    private byte[] embeddingVector;
+}
@@ -8,4 +8,8 @@ public class QueryRequest {
     private String query;
     private String sessionId;
     private Integer maxResults = 5;
+    // Optional; when absent, filters are inferred from the query text
+    private SearchFilter filters;
+    // Include a per-stage timing breakdown in the response
+    private boolean debug;
 }
@@ -1,12 +1,14 @@
 // QueryResponse.java
 package com.billbuddy.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.Builder;
 import java.util.List;
+import java.util.Map;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class QueryResponse {
     private String recommendation;
     private String explanation;
@@ -15,4 +17,12 @@ public class QueryResponse {
     private List<Citation> citations;
     private String sessionId;
     private Long processingTimeMs;
+    // Upstream token usage for this request; 0 when the answer came from the cache
+    private Long promptTokens;
+    private Long completionTokens;
+    // True when completions were unavailable and this is a retrieval-only ranking
+    private Boolean degraded;
+    // Milliseconds per pipeline stage; only for requests with debug set
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, Double> stages;
 }
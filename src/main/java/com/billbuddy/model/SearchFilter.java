@@ -0,0 +1,96 @@
+// SearchFilter.java
+package com.billbuddy.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Structured constraints applied before vector scoring. Unset fields do not
+ * constrain; set fields are ANDed, values within a set are ORed.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchFilter {
+
+    private static final Pattern CONTRACT_TERM =
+            Pattern.compile("(\\d+)\\s*-?\\s*(month|mth|year|yr)", Pattern.CASE_INSENSITIVE);
+
+    private Set<PlanType> types;
+    private Double minPrice;
+    private Double maxPrice;
+    // 0 means no lock-in contract
+    private Integer maxContractMonths;
+    private Set<String> providers;
+
+    public boolean hasConstraints() {
+        return (types != null && !types.isEmpty())
+                || minPrice != null
+                || maxPrice != null
+                || maxContractMonths != null
+                || (providers != null && !providers.isEmpty());
+    }
+
+    /**
+     * Whether a single plan satisfies every set constraint.
+     */
+    public boolean matches(Plan plan) {
+        if (types != null && !types.isEmpty() && !types.contains(plan.getType())) {
+            return false;
+        }
+        if (!acceptsPrice(plan.getMonthlyPrice())) {
+            return false;
+        }
+        if (providers != null && !providers.isEmpty()
+                && providers.stream().noneMatch(provider -> provider.equalsIgnoreCase(plan.getProvider()))) {
+            return false;
+        }
+        return acceptsContract(plan.getContractLength());
+    }
+
+    public boolean acceptsPrice(Double monthlyPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return true;
+        }
+        return monthlyPrice != null
+                && (minPrice == null || monthlyPrice >= minPrice)
+                && (maxPrice == null || monthlyPrice <= maxPrice);
+    }
+
+    public boolean acceptsContract(String contractLength) {
+        if (maxContractMonths == null) {
+            return true;
+        }
+        Integer months = contractMonths(contractLength);
+        return months != null && months <= maxContractMonths;
+    }
+
+    /**
+     * Contract length in months from free text such as "12 months" or
+     * "No lock-in" (0); null when it cannot be read.
+     */
+    public static Integer contractMonths(String contractLength) {
+        if (contractLength == null) {
+            return null;
+        }
+        String text = contractLength.toLowerCase(Locale.ROOT);
+        if (text.contains("no contract") || text.contains("no lock")
+                || text.contains("month-to-month") || text.contains("month to month")) {
+            return 0;
+        }
+        Matcher matcher = CONTRACT_TERM.matcher(text);
+        if (!matcher.find()) {
+            return null;
+        }
+        int value = Integer.parseInt(matcher.group(1));
+        return matcher.group(2).startsWith("y") ? value * 12 : value;
+    }
+}
@@ -0,0 +1,9 @@
+// Completion.java
+package com.billbuddy.provider;
+
+/**
+ * Completion text with its token usage; estimated when the provider reports
+ * none (streamed responses, local providers).
+ */
+public record Completion(String text, long promptTokens, long completionTokens) {
+}
@@ -0,0 +1,22 @@
+// CompletionProvider.java
+package com.billbuddy.provider;
+
+import java.util.function.Consumer;
+
+/**
+ * Answers a prompt built by RAGService. The request also carries the
+ * retrieved plans, so providers that do not run a language model can answer
+ * from them directly.
+ */
+public interface CompletionProvider {
+
+    String name();
+
+    Completion complete(CompletionRequest request);
+
+    /**
+     * Hands text deltas to {@code onToken} as they are produced and returns the
+     * whole completion. Always in the section format.
+     */
+    Completion stream(CompletionRequest request, Consumer<String> onToken);
+}
@@ -0,0 +1,27 @@
+// CompletionRequest.java
+package com.billbuddy.provider;
+
+import com.billbuddy.index.SearchHit;
+import com.billbuddy.util.TokenEstimator;
+
+import java.util.List;
+
+/**
+ * @param query      the user's question
+ * @param hits       retrieved plans, best first
+ * @param structured answer as a JSON object instead of labelled sections
+ */
+public record CompletionRequest(String systemPrompt, String prompt, String query,
+                                List<SearchHit> hits, boolean structured) {
+
+    // Chat format overhead per message, on top of the content tokens
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    /**
+     * Prompt tokens as the chat API would count them, for providers that do
+     * not report usage.
+     */
+    public long estimatedPromptTokens() {
+        return TokenEstimator.estimate(systemPrompt) + TokenEstimator.estimate(prompt) + 2L * MESSAGE_OVERHEAD_TOKENS;
+    }
+}
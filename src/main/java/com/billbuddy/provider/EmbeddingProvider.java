@@ -0,0 +1,23 @@
+// EmbeddingProvider.java
+package com.billbuddy.provider;
+
+import java.util.List;
+
+/**
+ * Turns texts into embedding vectors. EmbeddingService adds caching, batching
+ * and the upstream guard around it; implementations make one call per
+ * {@link #embed} and may throw on failure.
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * Identifies the vector space; part of cache keys and plan fingerprints,
+     * so switching providers re-embeds rather than mixing spaces.
+     */
+    String model();
+
+    /**
+     * @return one vector per text, in input order
+     */
+    List<float[]> embed(List<String> texts);
+}
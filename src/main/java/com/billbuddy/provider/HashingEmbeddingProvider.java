@@ -0,0 +1,121 @@
+// HashingEmbeddingProvider.java
+package com.billbuddy.provider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * In-process embeddings by feature hashing: lower-cased words, adjacent word
+ * pairs and character trigrams (with word boundaries) are hashed into signed
+ * buckets and the vector is L2-normalized. Deterministic across runs and
+ * machines, with no model to load; texts sharing words and word pieces land
+ * close together, which is enough to exercise retrieval end to end. An
+ * optional latency per call stands in for the network.
+ */
+public class HashingEmbeddingProvider implements EmbeddingProvider {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float PAIR_WEIGHT = 0.5f;
+    private static final float TRIGRAM_WEIGHT = 0.35f;
+
+    private final int dimensions;
+    private final Duration latency;
+
+    public HashingEmbeddingProvider(int dimensions, Duration latency) {
+        this.dimensions = Math.max(dimensions, 8);
+        this.latency = latency;
+    }
+
+    @Override
+    public String model() {
+        return "local-hashing-" + dimensions;
+    }
+
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        Latency.pause(latency);
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embed(text));
+        }
+        return vectors;
+    }
+
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        String lower = text.toLowerCase(Locale.ROOT);
+        int n = lower.length();
+        long previousWord = 0;
+        int i = 0;
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(lower.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(lower.charAt(i))) {
+                i++;
+            }
+            if (start == i) {
+                break;
+            }
+
+            long word = hash(FNV_OFFSET, lower, start, i);
+            add(vector, word, WORD_WEIGHT);
+            if (previousWord != 0) {
+                add(vector, mix(previousWord * 31 + word), PAIR_WEIGHT);
+            }
+            previousWord = word;
+
+            // Trigrams of "^word$", so short words still contribute one
+            for (int p = start - 1; p + 2 <= i; p++) {
+                long trigram = FNV_OFFSET;
+                for (int k = p; k < p + 3; k++) {
+                    char c = k < start ? '^' : k >= i ? '$' : lower.charAt(k);
+                    trigram = (trigram ^ c) * FNV_PRIME;
+                }
+                add(vector, trigram, TRIGRAM_WEIGHT);
+            }
+        }
+
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int d = 0; d < vector.length; d++) {
+                vector[d] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Adds {@code weight} to the feature's bucket; the sign comes from a
+     * different part of the hash so collisions tend to cancel.
+     */
+    private void add(float[] vector, long feature, float weight) {
+        long h = mix(feature);
+        int bucket = (int) Long.remainderUnsigned(h, dimensions);
+        vector[bucket] += (h >>> 63) == 0 ? weight : -weight;
+    }
+
+    private static long hash(long seed, String text, int from, int to) {
+        long h = seed;
+        for (int k = from; k < to; k++) {
+            h = (h ^ text.charAt(k)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,25 @@
+// Latency.java
+package com.billbuddy.provider;
+
+import java.time.Duration;
+
+/**
+ * Simulated upstream latency for the local providers in stub mode.
+ */
+final class Latency {
+
+    private Latency() {
+    }
+
+    static void pause(Duration latency) {
+        if (latency.isZero() || latency.isNegative()) {
+            return;
+        }
+        try {
+            Thread.sleep(latency.toMillis(), latency.toNanosPart() % 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during simulated latency", e);
+        }
+    }
+}
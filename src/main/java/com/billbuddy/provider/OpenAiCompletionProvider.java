@@ -0,0 +1,103 @@
+// OpenAiCompletionProvider.java
+package com.billbuddy.provider;
+
+import com.billbuddy.util.TokenEstimator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatFunctionDynamic;
+import com.theokanning.openai.completion.chat.ChatFunctionProperty;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import com.theokanning.openai.service.OpenAiService;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Chat completions from OpenAI. Structured requests force a call to
+ * {@code submit_answer}, whose arguments are the JSON answer.
+ */
+public class OpenAiCompletionProvider implements CompletionProvider {
+
+    // Structured output: the model answers by calling this with QueryResponse's fields
+    private static final ChatFunctionDynamic ANSWER_FUNCTION = ChatFunctionDynamic.builder()
+            .name("submit_answer")
+            .description("Submit the plan recommendation")
+            .addProperty(ChatFunctionProperty.builder().name("recommendation").type("string")
+                    .description("Name of the best plan").required(true).build())
+            .addProperty(ChatFunctionProperty.builder().name("explanation").type("string")
+                    .description("Why it is the best choice").required(true).build())
+            .addProperty(ChatFunctionProperty.builder().name("estimatedMonthlyCost").type("number")
+                    .description("Estimated monthly cost in dollars").build())
+            .addProperty(ChatFunctionProperty.builder().name("tradeoffs").type("array")
+                    .items(ChatFunctionProperty.builder().name("tradeoff").type("string").build())
+                    .description("Key considerations and alternatives").required(true).build())
+            .build();
+
+    private final OpenAiService openAiService;
+    private final String model;
+
+    public OpenAiCompletionProvider(OpenAiService openAiService, String model) {
+        this.openAiService = openAiService;
+        this.model = model;
+    }
+
+    @Override
+    public String name() {
+        return "openai";
+    }
+
+    @Override
+    public Completion complete(CompletionRequest request) {
+        var response = openAiService.createChatCompletion(chatRequest(request, false));
+        ChatMessage message = response.getChoices().get(0).getMessage();
+        // The function call's arguments are the JSON answer; ResponseParser reads either format
+        String text = message.getFunctionCall() != null && message.getFunctionCall().getArguments() != null
+                ? arguments(message.getFunctionCall().getArguments())
+                : message.getContent();
+        if (response.getUsage() != null) {
+            return new Completion(text, response.getUsage().getPromptTokens(),
+                    response.getUsage().getCompletionTokens());
+        }
+        return new Completion(text, request.estimatedPromptTokens(), TokenEstimator.estimate(text));
+    }
+
+    @Override
+    public Completion stream(CompletionRequest request, Consumer<String> onToken) {
+        StringBuilder answer = new StringBuilder();
+        openAiService.streamChatCompletion(chatRequest(request, true))
+                .blockingForEach(chunk -> {
+                    for (var choice : chunk.getChoices()) {
+                        String delta = choice.getMessage() != null ? choice.getMessage().getContent() : null;
+                        if (delta != null && !delta.isEmpty()) {
+                            answer.append(delta);
+                            onToken.accept(delta);
+                        }
+                    }
+                });
+        return new Completion(answer.toString(), request.estimatedPromptTokens(), TokenEstimator.estimate(answer));
+    }
+
+    private ChatCompletionRequest chatRequest(CompletionRequest request, boolean stream) {
+        var chat = ChatCompletionRequest.builder()
+                .model(model)
+                .messages(List.of(
+                        new ChatMessage("system", request.systemPrompt()),
+                        new ChatMessage("user", request.prompt())
+                ))
+                .temperature(0.7)
+                .maxTokens(800)
+                .stream(stream);
+        if (request.structured() && !stream) {
+            chat.functions(List.of(ANSWER_FUNCTION))
+                    .functionCall(ChatCompletionRequest.ChatCompletionRequestFunctionCall.of(ANSWER_FUNCTION.getName()));
+        }
+        return chat.build();
+    }
+
+    /**
+     * Arguments arrive parsed, or as the raw string when they are not valid JSON.
+     */
+    private static String arguments(JsonNode arguments) {
+        return arguments.isTextual() ? arguments.asText() : arguments.toString();
+    }
+}
@@ -0,0 +1,47 @@
+// OpenAiEmbeddingProvider.java
+package com.billbuddy.provider;
+
+import com.theokanning.openai.embedding.EmbeddingRequest;
+import com.theokanning.openai.service.OpenAiService;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Embeddings from the OpenAI embeddings endpoint.
+ */
+public class OpenAiEmbeddingProvider implements EmbeddingProvider {
+
+    private final OpenAiService openAiService;
+    private final String model;
+
+    public OpenAiEmbeddingProvider(OpenAiService openAiService, String model) {
+        this.openAiService = openAiService;
+        this.model = model;
+    }
+
+    @Override
+    public String model() {
+        return model;
+    }
+
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        EmbeddingRequest request = EmbeddingRequest.builder()
+                .model(model)
+                .input(texts)
+                .build();
+
+        var result = openAiService.createEmbeddings(request);
+        float[][] vectors = new float[texts.size()][];
+        for (var embedding : result.getData()) {
+            List<Double> values = embedding.getEmbedding();
+            float[] vector = new float[values.size()];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = values.get(i).floatValue();
+            }
+            vectors[embedding.getIndex()] = vector;
+        }
+        return Arrays.asList(vectors);
+    }
+}
@@ -0,0 +1,194 @@
+// TemplateCompletionProvider.java
+package com.billbuddy.provider;
+
+import com.billbuddy.index.SearchHit;
+import com.billbuddy.model.Plan;
+import com.billbuddy.util.TokenEstimator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * In-process answerer that fills the answer sections from the retrieved plans
+ * instead of running a model: the best-ranked plan is recommended (the
+ * cheapest one when the question asks for cheap), with its description and
+ * the alternatives' price differences as tradeoffs. Deterministic, so
+ * answers are stable across runs. An optional latency, spread across the
+ * streamed chunks, stands in for generation time.
+ */
+public class TemplateCompletionProvider implements CompletionProvider {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] PRICE_WORDS = {"cheap", "budget", "lowest", "affordable", "save", "saving"};
+    private static final int WORDS_PER_CHUNK = 4;
+
+    private final Duration latency;
+
+    public TemplateCompletionProvider(Duration latency) {
+        this.latency = latency;
+    }
+
+    @Override
+    public String name() {
+        return "template";
+    }
+
+    @Override
+    public Completion complete(CompletionRequest request) {
+        Latency.pause(latency);
+        String text = request.structured() ? json(answer(request)) : sections(answer(request));
+        return new Completion(text, request.estimatedPromptTokens(), TokenEstimator.estimate(text));
+    }
+
+    @Override
+    public Completion stream(CompletionRequest request, Consumer<String> onToken) {
+        String text = sections(answer(request));
+        List<String> chunks = chunks(text);
+        Duration interval = chunks.isEmpty() ? Duration.ZERO : latency.dividedBy(chunks.size());
+        for (String chunk : chunks) {
+            Latency.pause(interval);
+            onToken.accept(chunk);
+        }
+        return new Completion(text, request.estimatedPromptTokens(), TokenEstimator.estimate(text));
+    }
+
+    private record Answer(String recommendation, String explanation, Double monthlyCost, List<String> tradeoffs) {
+    }
+
+    private static Answer answer(CompletionRequest request) {
+        List<SearchHit> hits = request.hits();
+        if (hits.isEmpty()) {
+            return new Answer("No matching plans found",
+                    "None of the available plans match your question.", null,
+                    List.of("Try rephrasing or relaxing your constraints."));
+        }
+
+        boolean priceFirst = mentionsPrice(request.query());
+        Plan best = hits.get(0).plan();
+        if (priceFirst) {
+            for (SearchHit hit : hits) {
+                Double price = hit.plan().getMonthlyPrice();
+                if (price != null && (best.getMonthlyPrice() == null || price < best.getMonthlyPrice())) {
+                    best = hit.plan();
+                }
+            }
+        }
+
+        StringBuilder explanation = new StringBuilder(label(best))
+                .append(priceFirst ? " is the lowest-priced plan that matches your question."
+                        : " is the closest match to your question.");
+        appendSentence(explanation, best.getDescription());
+        if (best.getBestFor() != null && !best.getBestFor().isBlank()) {
+            appendSentence(explanation, "Best for: " + best.getBestFor().trim());
+        }
+
+        List<String> tradeoffs = new ArrayList<>();
+        if (best.getLimitations() != null && !best.getLimitations().isBlank()) {
+            tradeoffs.add("Limitations: " + best.getLimitations().trim());
+        }
+        for (SearchHit hit : hits) {
+            Plan plan = hit.plan();
+            if (plan != best) {
+                tradeoffs.add(label(plan) + ": " + price(plan.getMonthlyPrice())
+                        + difference(plan.getMonthlyPrice(), best.getMonthlyPrice()));
+            }
+        }
+        return new Answer(label(best), explanation.toString(), best.getMonthlyPrice(), tradeoffs);
+    }
+
+    private static String sections(Answer answer) {
+        StringBuilder text = new StringBuilder()
+                .append("RECOMMENDATION: ").append(answer.recommendation()).append('\n')
+                .append("EXPLANATION: ").append(answer.explanation()).append('\n')
+                .append("MONTHLY COST: ").append(answer.monthlyCost() != null ? price(answer.monthlyCost()) : "Not available")
+                .append('\n')
+                .append("TRADEOFFS:");
+        for (String tradeoff : answer.tradeoffs()) {
+            text.append("\n- ").append(tradeoff);
+        }
+        return text.append('\n').toString();
+    }
+
+    private static String json(Answer answer) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("recommendation", answer.recommendation());
+        fields.put("explanation", answer.explanation());
+        fields.put("estimatedMonthlyCost", answer.monthlyCost());
+        fields.put("tradeoffs", answer.tradeoffs());
+        try {
+            return MAPPER.writeValueAsString(fields);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to render answer", e);
+        }
+    }
+
+    /**
+     * The text in chunks of a few words, whitespace included, as a model
+     * would stream it.
+     */
+    private static List<String> chunks(String text) {
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        int words = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isWhitespace(text.charAt(i)) && ++words % WORDS_PER_CHUNK == 0) {
+                chunks.add(text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            chunks.add(text.substring(start));
+        }
+        return chunks;
+    }
+
+    private static boolean mentionsPrice(String query) {
+        if (query == null) {
+            return false;
+        }
+        String lower = query.toLowerCase(Locale.ROOT);
+        for (String word : PRICE_WORDS) {
+            if (lower.contains(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void appendSentence(StringBuilder text, String sentence) {
+        if (sentence == null || sentence.isBlank()) {
+            return;
+        }
+        String trimmed = sentence.trim();
+        text.append(' ').append(trimmed);
+        if (!trimmed.endsWith(".")) {
+            text.append('.');
+        }
+    }
+
+    private static String label(Plan plan) {
+        return plan.getProvider() != null ? plan.getProvider() + " " + plan.getName() : plan.getName();
+    }
+
+    private static String price(Double monthlyPrice) {
+        return monthlyPrice != null ? String.format("$%.2f/month", monthlyPrice) : "price not listed";
+    }
+
+    private static String difference(Double price, Double bestPrice) {
+        if (price == null || bestPrice == null) {
+            return "";
+        }
+        double delta = price - bestPrice;
+        if (Math.abs(delta) < 0.005) {
+            return ", same price";
+        }
+        return String.format(", $%.2f %s", Math.abs(delta), delta > 0 ? "more" : "less");
+    }
+}
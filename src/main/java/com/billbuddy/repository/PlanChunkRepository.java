@@ -0,0 +1,21 @@
+// PlanChunkRepository.java
+package com.billbuddy.repository;
+
+import com.billbuddy.model.PlanChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PlanChunkRepository extends JpaRepository<PlanChunk, Long> {
+    List<PlanChunk> findByPlanIdOrderByChunkIndex(Long planId);
+
+    List<PlanChunk> findAllByOrderByPlanIdAscChunkIndexAsc();
+
+    @Modifying
+    @Query("DELETE FROM PlanChunk c WHERE c.planId IN :planIds")
+    int deleteByPlanIdIn(Collection<Long> planIds);
+}
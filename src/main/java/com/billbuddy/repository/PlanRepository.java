@@ -3,9 +3,11 @@ package com.billbuddy.repository;
 
 import com.billbuddy.model.Plan;
 import com.billbuddy.model.PlanType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,4 +16,8 @@ public interface PlanRepository extends JpaRepository<Plan, Long> {
 
     @Query("SELECT p FROM Plan p WHERE p.monthlyPrice BETWEEN :minPrice AND :maxPrice")
     List<Plan> findByPriceRange(Double minPrice, Double maxPrice);
+
+    List<Plan> findByNameIn(Collection<String> names);
+
+    List<Plan> findByEmbeddingIsNotNull(Pageable pageable);
 }
@@ -0,0 +1,324 @@
+// AdmissionController.java
+package com.billbuddy.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Load shedding for questions, in two steps:
+ * <ul>
+ * <li>{@link #admit} on arrival: token buckets per session id and per client
+ * address; an empty bucket rejects the question before any work is done.</li>
+ * <li>{@link #acquireCompletion} before a completion call: a concurrency
+ * limit adapted to completion latency (AIMD). It grows by about one per
+ * limit's worth of completions finishing within {@code latency-target} and
+ * shrinks by {@code backoff-ratio}, at most once per round trip, when a
+ * completion is slower or the upstream reports overload. Interactive calls
+ * over the limit are rejected at once; batch calls wait up to
+ * {@code queue-timeout}.</li>
+ * </ul>
+ * Answers served from the answer cache never take a completion slot, so they
+ * keep flowing while completions are saturated. Waiting uses a
+ * {@link ReentrantLock} rather than a monitor so a virtual thread parked for a
+ * slot does not pin its carrier.
+ */
+@Component
+@Slf4j
+public class AdmissionController {
+
+    private final boolean enabled;
+    private final int maxKeys;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final double backoffRatio;
+    private final long queueTimeoutMs;
+
+    private final Buckets sessionBuckets;
+    private final Buckets clientBuckets;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+
+    // Guarded by lock
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+    private double latencyEwmaNanos;
+
+    private final AtomicLong completions = new AtomicLong();
+    private final AtomicLong decreases = new AtomicLong();
+    private final AtomicLong rejectedSession = new AtomicLong();
+    private final AtomicLong rejectedClient = new AtomicLong();
+    private final AtomicLong rejectedOverloaded = new AtomicLong();
+
+    public AdmissionController(@Value("${billbuddy.admission.enabled:true}") boolean enabled,
+                               @Value("${billbuddy.admission.session.rate:1}") double sessionRate,
+                               @Value("${billbuddy.admission.session.burst:5}") double sessionBurst,
+                               @Value("${billbuddy.admission.client.rate:5}") double clientRate,
+                               @Value("${billbuddy.admission.client.burst:20}") double clientBurst,
+                               @Value("${billbuddy.admission.max-keys:10000}") int maxKeys,
+                               @Value("${billbuddy.admission.limit.initial:4}") int initialLimit,
+                               @Value("${billbuddy.admission.limit.min:1}") int minLimit,
+                               @Value("${billbuddy.admission.limit.max:${billbuddy.upstream.completion.max-concurrency:8}}") int maxLimit,
+                               @Value("${billbuddy.admission.latency-target:PT10S}") Duration latencyTarget,
+                               @Value("${billbuddy.admission.backoff-ratio:0.9}") double backoffRatio,
+                               @Value("${billbuddy.admission.queue-timeout:PT30S}") Duration queueTimeout) {
+        this.enabled = enabled;
+        this.maxKeys = Math.max(maxKeys, 1);
+        this.sessionBuckets = new Buckets(sessionRate, sessionBurst);
+        this.clientBuckets = new Buckets(clientRate, clientBurst);
+        this.minLimit = Math.max(minLimit, 1);
+        this.maxLimit = Math.max(maxLimit, this.minLimit);
+        this.limit = Math.min(Math.max(initialLimit, this.minLimit), this.maxLimit);
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.backoffRatio = Math.min(Math.max(backoffRatio, 0.1), 1.0);
+        this.queueTimeoutMs = queueTimeout.toMillis();
+        log.info("Admission control {}: completion limit {} ({}-{}), latency target {}ms",
+                enabled ? "on" : "off", this.limit, this.minLimit, this.maxLimit, latencyTarget.toMillis());
+    }
+
+    /**
+     * Takes one token from the client's and, when given, the session's
+     * bucket, or throws {@link AdmissionRejectedException}. A rejected
+     * question costs nothing: when the session bucket rejects, the client's
+     * token is given back. A rate of zero disables that bucket.
+     */
+    public void admit(String sessionId, String client) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        TokenBucket clientBucket = null;
+        if (client != null && clientBuckets.enabled()) {
+            clientBucket = clientBuckets.get(client, now);
+            long waitNanos = clientBucket.take(now);
+            if (waitNanos > 0) {
+                rejectedClient.incrementAndGet();
+                throw new AdmissionRejectedException(AdmissionRejectedException.Reason.CLIENT_RATE,
+                        "Too many requests from this client", TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+            }
+        }
+        if (sessionId != null && sessionBuckets.enabled()) {
+            long waitNanos = sessionBuckets.get(sessionId, now).take(now);
+            if (waitNanos > 0) {
+                if (clientBucket != null) {
+                    clientBucket.refund();
+                }
+                rejectedSession.incrementAndGet();
+                throw new AdmissionRejectedException(AdmissionRejectedException.Reason.SESSION_RATE,
+                        "Too many requests in this session", TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+            }
+        }
+    }
+
+    /**
+     * A slot for one completion call; release it exactly once when the call
+     * ends.
+     *
+     * @param wait false to reject at once when the limit is reached, true to
+     *             wait up to {@code queue-timeout} for a slot
+     */
+    public Slot acquireCompletion(boolean wait) {
+        if (!enabled) {
+            return new Slot(-1);
+        }
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit && wait) {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+                while (inFlight >= (int) limit && remaining > 0) {
+                    try {
+                        remaining = slotFreed.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            if (inFlight >= (int) limit) {
+                rejectedOverloaded.incrementAndGet();
+                throw new AdmissionRejectedException(AdmissionRejectedException.Reason.OVERLOADED,
+                        "Completions are at their concurrency limit (" + (int) limit + ")", retryAfterMs());
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+        completions.incrementAndGet();
+        return new Slot(System.nanoTime());
+    }
+
+    public final class Slot {
+
+        private final long startNanos;
+        private boolean released;
+
+        private Slot(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * @param overloaded the upstream was unavailable (saturated, throttled,
+         *                   timed out or circuit open); shrinks the limit like
+         *                   a slow call
+         */
+        public void release(boolean overloaded) {
+            if (released || startNanos < 0) {
+                return;
+            }
+            released = true;
+            onRelease(startNanos, overloaded);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        lock.lock();
+        try {
+            stats.put("limit", (int) limit);
+            stats.put("inFlight", inFlight);
+            stats.put("latencyMs", TimeUnit.NANOSECONDS.toMillis((long) latencyEwmaNanos));
+        } finally {
+            lock.unlock();
+        }
+        stats.put("completions", completions.get());
+        stats.put("decreases", decreases.get());
+        stats.put("rejectedSession", rejectedSession.get());
+        stats.put("rejectedClient", rejectedClient.get());
+        stats.put("rejectedOverloaded", rejectedOverloaded.get());
+        stats.put("sessions", sessionBuckets.size());
+        stats.put("clients", clientBuckets.size());
+        return stats;
+    }
+
+    private void onRelease(long startNanos, boolean overloaded) {
+        lock.lock();
+        try {
+            inFlight--;
+            long now = System.nanoTime();
+            long latency = now - startNanos;
+            latencyEwmaNanos = latencyEwmaNanos == 0 ? latency : latencyEwmaNanos + 0.2 * (latency - latencyEwmaNanos);
+
+            if (overloaded || latency > latencyTargetNanos) {
+                // Calls started before the last decrease already saw the old limit
+                if (startNanos > lastDecreaseNanos) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                    decreases.incrementAndGet();
+                    log.info("Completion limit lowered to {} ({}ms{})", (int) limit,
+                            TimeUnit.NANOSECONDS.toMillis(latency), overloaded ? ", upstream overloaded" : "");
+                }
+            } else if ((inFlight + 1) * 2 >= limit) {
+                // Only grow while the limit is actually in use
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * About when a slot frees up: the typical completion latency spread over
+     * the calls in flight, and at least a second. Called holding the lock.
+     */
+    private long retryAfterMs() {
+        long latencyMs = TimeUnit.NANOSECONDS.toMillis((long) latencyEwmaNanos);
+        return Math.max(latencyMs / Math.max(inFlight, 1), 1000);
+    }
+
+    /**
+     * Token buckets by key. Buckets that have refilled hold no state a new
+     * bucket would not, so once there are more than {@code max-keys} they are
+     * swept out. The sweep scans the whole map, so it runs only when a key is
+     * added and then once per {@code max-keys / 4} additions, keeping its cost
+     * constant per admitted question.
+     */
+    private final class Buckets {
+
+        private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        private final AtomicInteger added = new AtomicInteger();
+        private final double rate;
+        private final double burst;
+        private final int sweepInterval;
+
+        Buckets(double rate, double burst) {
+            this.rate = rate;
+            this.burst = Math.max(burst, 1);
+            this.sweepInterval = Math.max(maxKeys / 4, 1);
+        }
+
+        boolean enabled() {
+            return rate > 0;
+        }
+
+        TokenBucket get(String key, long now) {
+            TokenBucket bucket = buckets.get(key);
+            if (bucket != null) {
+                return bucket;
+            }
+            TokenBucket created = buckets.computeIfAbsent(key, k -> new TokenBucket(rate, burst, now));
+            if (added.incrementAndGet() % sweepInterval == 0 && buckets.size() > maxKeys) {
+                buckets.values().removeIf(b -> b != created && b.isFull(now));
+            }
+            return created;
+        }
+
+        int size() {
+            return buckets.size();
+        }
+    }
+
+    private static final class TokenBucket {
+
+        private final double tokensPerNano;
+        private final double burst;
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(double ratePerSecond, double burst, long now) {
+            this.tokensPerNano = ratePerSecond / 1e9;
+            this.burst = burst;
+            this.tokens = burst;
+            this.refilledAt = now;
+        }
+
+        synchronized long take(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+
+        synchronized void refund() {
+            tokens = Math.min(burst, tokens + 1);
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= burst;
+        }
+
+        private void refill(long now) {
+            if (now > refilledAt) {
+                tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+                refilledAt = now;
+            }
+        }
+    }
+}
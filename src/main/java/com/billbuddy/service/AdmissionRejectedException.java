@@ -0,0 +1,31 @@
+// AdmissionRejectedException.java
+package com.billbuddy.service;
+
+/**
+ * A question was shed by the {@link AdmissionController}: its session or
+ * client is over its request rate, or completions are at their concurrency
+ * limit. Not an upstream failure, so it is never answered by the fallback.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    public enum Reason {
+        SESSION_RATE, CLIENT_RATE, OVERLOADED
+    }
+
+    private final Reason reason;
+    private final long retryAfterMs;
+
+    public AdmissionRejectedException(Reason reason, String detail, long retryAfterMs) {
+        super(detail);
+        this.reason = reason;
+        this.retryAfterMs = Math.max(retryAfterMs, 0);
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
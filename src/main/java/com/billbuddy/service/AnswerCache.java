@@ -0,0 +1,233 @@
+// AnswerCache.java
+package com.billbuddy.service;
+
+import com.billbuddy.util.SimilarityKernel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Semantic cache of generated answers. An entry is reused when a new query's
+ * embedding is within {@code similarity-threshold} (cosine) of a cached query
+ * AND retrieval returned the same plans in the same rank order at the same
+ * index versions. The context is ordered and truncated by that rank, so the
+ * prompt the model would see is effectively identical. Entries citing a plan
+ * are dropped as soon as that plan is re-indexed.
+ *
+ * <p>Entries are grouped by their plan key, so a lookup only scores the
+ * queries cached for the same retrieval result, without taking a lock. The
+ * LRU order, TTL expiry and eviction are kept under a separate lock that a
+ * lookup only takes briefly on a hit or after seeing an expired entry.
+ */
+@Component
+@Slf4j
+public class AnswerCache {
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private final boolean enabled;
+    private final float similarityThreshold;
+    private final int maxEntries;
+    private final long ttlMillis;
+    // Copy-on-write buckets, replaced only while holding lru
+    private final Map<PlanKey, Entry[]> byPlans = new ConcurrentHashMap<>();
+    private final LinkedHashMap<Long, Entry> lru = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private long nextId;
+
+    public AnswerCache(@Value("${billbuddy.answer-cache.enabled:true}") boolean enabled,
+                       @Value("${billbuddy.answer-cache.similarity-threshold:0.97}") float similarityThreshold,
+                       @Value("${billbuddy.answer-cache.max-entries:1000}") int maxEntries,
+                       @Value("${billbuddy.answer-cache.ttl:PT1H}") Duration ttl) {
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    /**
+     * @param planIds retrieved plan ids in rank order
+     */
+    public String lookup(float[] queryEmbedding, long[] planIds, long[] planVersions) {
+        if (!enabled) {
+            return null;
+        }
+        PlanKey key = new PlanKey(planIds, planVersions);
+        Entry[] bucket = byPlans.get(key);
+        if (bucket == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        float[] query = SimilarityKernel.normalize(queryEmbedding);
+        long now = System.currentTimeMillis();
+        Entry best = null;
+        float bestScore = similarityThreshold;
+        boolean expired = false;
+        for (Entry entry : bucket) {
+            if (entry.expiresAt <= now) {
+                expired = true;
+                continue;
+            }
+            if (entry.query.length != query.length) {
+                continue;
+            }
+            float score = SimilarityKernel.dot(entry.query, query);
+            if (score >= bestScore) {
+                best = entry;
+                bestScore = score;
+            }
+        }
+
+        if (expired || best != null) {
+            synchronized (lru) {
+                if (expired) {
+                    for (Entry entry : bucket) {
+                        if (entry.expiresAt <= now && remove(entry)) {
+                            evictions.incrementAndGet();
+                        }
+                    }
+                }
+                if (best != null) {
+                    lru.get(best.id); // refresh LRU position
+                }
+            }
+        }
+        if (best != null) {
+            hits.incrementAndGet();
+            log.debug("Answer cache hit (similarity {})", bestScore);
+            return best.answer;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * @param planIds retrieved plan ids in rank order
+     */
+    public void put(float[] queryEmbedding, long[] planIds, long[] planVersions, String answer) {
+        if (!enabled || maxEntries <= 0) {
+            return;
+        }
+        PlanKey key = new PlanKey(planIds.clone(), planVersions.clone());
+        float[] query = SimilarityKernel.normalize(queryEmbedding);
+        synchronized (lru) {
+            Entry entry = new Entry(nextId++, query, key, answer, System.currentTimeMillis() + ttlMillis);
+            lru.put(entry.id, entry);
+            Entry[] bucket = byPlans.getOrDefault(key, EMPTY);
+            Entry[] grown = Arrays.copyOf(bucket, bucket.length + 1);
+            grown[bucket.length] = entry;
+            byPlans.put(key, grown);
+            while (lru.size() > maxEntries) {
+                remove(lru.values().iterator().next());
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    @EventListener
+    public void onPlanIndexed(PlanIndexedEvent event) {
+        synchronized (lru) {
+            if (lru.isEmpty()) {
+                return;
+            }
+            Iterator<Map.Entry<PlanKey, Entry[]>> it = byPlans.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<PlanKey, Entry[]> bucket = it.next();
+                for (Long planId : event.planIds()) {
+                    if (bucket.getKey().contains(planId)) {
+                        for (Entry entry : bucket.getValue()) {
+                            lru.remove(entry.id);
+                            invalidations.incrementAndGet();
+                        }
+                        it.remove();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        int size;
+        synchronized (lru) {
+            size = lru.size();
+        }
+        long lookups = hits.get() + misses.get();
+        return Map.of(
+                "size", size,
+                "hits", hits.get(),
+                "misses", misses.get(),
+                "evictions", evictions.get(),
+                "invalidations", invalidations.get(),
+                "hitRate", lookups == 0 ? 0.0 : (double) hits.get() / lookups
+        );
+    }
+
+    /**
+     * Drops an entry from the LRU order and its bucket. Called holding lru;
+     * false when it was already gone.
+     */
+    private boolean remove(Entry entry) {
+        if (lru.remove(entry.id) == null) {
+            return false;
+        }
+        Entry[] bucket = byPlans.get(entry.plans);
+        if (bucket != null) {
+            Entry[] remaining = Arrays.stream(bucket).filter(e -> e != entry).toArray(Entry[]::new);
+            if (remaining.length == 0) {
+                byPlans.remove(entry.plans);
+            } else {
+                byPlans.put(entry.plans, remaining);
+            }
+        }
+        return true;
+    }
+
+    private record Entry(long id, float[] query, PlanKey plans, String answer, long expiresAt) {
+    }
+
+    /**
+     * Retrieved plan ids with their index versions, in rank order: the same
+     * plans ranked differently build a different prompt.
+     */
+    private record PlanKey(long[] ids, long[] versions) {
+
+        boolean contains(Long planId) {
+            if (planId == null) {
+                return false;
+            }
+            for (long id : ids) {
+                if (id == planId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PlanKey other
+                    && Arrays.equals(ids, other.ids)
+                    && Arrays.equals(versions, other.versions);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(ids) + Arrays.hashCode(versions);
+        }
+    }
+}
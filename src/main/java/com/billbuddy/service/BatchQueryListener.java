@@ -0,0 +1,18 @@
+// BatchQueryListener.java
+package com.billbuddy.service;
+
+import com.billbuddy.model.QueryResponse;
+
+/**
+ * Receives each question of a batch as it finishes, identified by its position
+ * in the request and in completion order, then exactly one {@code onComplete}.
+ * Called from several threads at once.
+ */
+public interface BatchQueryListener {
+
+    void onResult(int index, QueryResponse response);
+
+    void onError(int index, String message);
+
+    void onComplete(int succeeded, int failed, long processingTimeMs);
+}
@@ -0,0 +1,169 @@
+// CircuitBreaker.java
+package com.billbuddy.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Count-based circuit breaker over the last {@code window} calls to one
+ * upstream. It opens once at least {@code minimumCalls} are recorded and the
+ * failure rate reaches {@code failureRate}; while open, calls are rejected
+ * without touching the network. After {@code openDuration} a single trial call
+ * is let through (half-open) and its outcome closes or re-opens the circuit.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRate;
+    private final long openDurationMs;
+    // Ring buffer of recent outcomes, true = failure
+    private final boolean[] outcomes;
+    private int recorded;
+    private int failures;
+    private int next;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long rejected;
+    private long opened;
+
+    public CircuitBreaker(String name, int window, int minimumCalls, double failureRate, Duration openDuration) {
+        this.name = name;
+        this.outcomes = new boolean[Math.max(window, 1)];
+        this.minimumCalls = Math.max(Math.min(minimumCalls, outcomes.length), 1);
+        this.failureRate = failureRate;
+        this.openDurationMs = openDuration.toMillis();
+    }
+
+    /**
+     * Admits a call or throws {@link CircuitOpenException}. Every admitted call
+     * must report exactly one of {@link #onSuccess}, {@link #onFailure} or
+     * {@link #onIgnored}.
+     */
+    public synchronized void acquire() {
+        if (state == State.OPEN) {
+            long remaining = openedAt + openDurationMs - System.currentTimeMillis();
+            if (remaining > 0) {
+                rejected++;
+                throw new CircuitOpenException(name, remaining);
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                rejected++;
+                throw new CircuitOpenException(name, 0);
+            }
+            trialInFlight = true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+            reset();
+            transition(State.CLOSED);
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+            open();
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failures >= failureRate * recorded) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * The call ended in a way that says nothing about upstream health (a client
+     * error, or no local permit).
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state);
+        stats.put("recentCalls", recorded);
+        stats.put("recentFailures", failures);
+        stats.put("opened", opened);
+        stats.put("rejected", rejected);
+        return stats;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void open() {
+        openedAt = System.currentTimeMillis();
+        opened++;
+        log.warn("Circuit '{}' opened ({} of last {} calls failed), rejecting calls for {}ms",
+                name, failures, recorded, openDurationMs);
+        reset();
+        state = State.OPEN;
+    }
+
+    private void reset() {
+        recorded = 0;
+        failures = 0;
+        next = 0;
+    }
+
+    private void transition(State to) {
+        if (state != to) {
+            log.info("Circuit '{}' {} -> {}", name, state, to);
+            state = to;
+        }
+    }
+
+    public static class CircuitOpenException extends UpstreamUnavailableException {
+
+        private final long retryAfterMs;
+
+        public CircuitOpenException(String upstream, long retryAfterMs) {
+            super(upstream, "circuit open");
+            this.retryAfterMs = Math.max(retryAfterMs, 0);
+        }
+
+        public long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+    }
+}
@@ -3,16 +3,28 @@ package com.billbuddy.service;
 
 import com.billbuddy.model.QueryRequest;
 import com.billbuddy.model.QueryResponse;
+import com.billbuddy.model.SearchFilter;
 import com.billbuddy.util.ObservabilityLogger;
+import com.billbuddy.util.PipelineMetrics;
+import com.billbuddy.util.ResponseParser;
+import com.billbuddy.util.SingleFlight;
+import com.billbuddy.util.StageTimings;
+import com.billbuddy.util.StreamingSectionParser;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @Slf4j
@@ -20,74 +32,356 @@ public class ComparisonService {
 
     private final RAGService ragService;
     private final ObservabilityLogger observabilityLogger;
+    private final PipelineMetrics metrics;
+    private final ExecutorService requestExecutor;
+    private final boolean coalesceQueries;
+    private final int batchConcurrency;
+    private final SingleFlight<QueryKey, QueryResponse> inFlightQueries = new SingleFlight<>();
 
-    public ComparisonService(RAGService ragService, ObservabilityLogger observabilityLogger) {
+    public ComparisonService(RAGService ragService,
+                             ObservabilityLogger observabilityLogger,
+                             PipelineMetrics metrics,
+                             ExecutorService requestExecutor,
+                             @Value("${billbuddy.coalescing.enabled:true}") boolean coalesceQueries,
+                             @Value("${billbuddy.batch.concurrency:4}") int batchConcurrency) {
         this.ragService = ragService;
         this.observabilityLogger = observabilityLogger;
+        this.metrics = metrics;
+        this.requestExecutor = requestExecutor;
+        this.coalesceQueries = coalesceQueries;
+        this.batchConcurrency = Math.max(batchConcurrency, 1);
+    }
+
+    /**
+     * Identity of a query for in-flight deduplication: whitespace- and
+     * case-normalized text plus the parameters that change the answer.
+     */
+    private record QueryKey(String query, Integer maxResults, SearchFilter filters) {
+        static QueryKey of(QueryRequest request) {
+            String query = request.getQuery() == null ? ""
+                    : request.getQuery().trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+            return new QueryKey(query, request.getMaxResults(), request.getFilters());
+        }
     }
 
     public QueryResponse processQuery(QueryRequest request) {
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
         String sessionId = request.getSessionId() != null ?
                 request.getSessionId() : UUID.randomUUID().toString();
 
         log.info("Processing query for session: {}", sessionId);
         observabilityLogger.logQuery(sessionId, request.getQuery());
 
+        metrics.requestStarted();
         try {
-            // Use RAG to generate answer
-            Map<String, Object> ragResult = ragService.generateAnswer(
-                    request.getQuery(),
-                    request.getMaxResults()
-            );
+            // Concurrent identical queries attach to one pending RAG computation
+            boolean[] computed = {false};
+            QueryResponse shared = !coalesceQueries ? answerQuery(request)
+                    : inFlightQueries.execute(QueryKey.of(request), () -> {
+                        computed[0] = true;
+                        return answerQuery(request);
+                    });
 
-            // Parse structured response
-            String answer = (String) ragResult.get("answer");
-            QueryResponse response = parseResponse(answer, ragResult, sessionId);
+            QueryResponse.QueryResponseBuilder builder = shared.toBuilder().sessionId(sessionId);
+            if (coalesceQueries && !computed[0]) {
+                // Joined another request's computation; no upstream tokens spent here
+                log.info("Coalesced query for session {} with an in-flight duplicate", sessionId);
+                builder.promptTokens(0L).completionTokens(0L);
+            }
+            QueryResponse response = builder.build();
 
-            long processingTime = System.currentTimeMillis() - startTime;
-            response.setProcessingTimeMs(processingTime);
+            response.setProcessingTimeMs(millisSince(startTime));
 
-            observabilityLogger.logResponse(sessionId, response);
+            logResponse(sessionId, response, request.isDebug());
 
             return response;
 
+        } catch (AdmissionRejectedException e) {
+            // Shed under load: expected, cheap to report and not an error
+            log.info("Rejected query for session {}: {}", sessionId, e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Error processing query", e);
+            metrics.requestFailed();
             observabilityLogger.logError(sessionId, e);
             throw new RuntimeException("Failed to process query", e);
+        } finally {
+            metrics.requestFinished();
         }
     }
 
-    private QueryResponse parseResponse(String answer, Map<String, Object> ragResult, String sessionId) {
-        // Extract structured information using regex
-        String recommendation = extractSection(answer, "RECOMMENDATION:");
-        String explanation = extractSection(answer, "EXPLANATION:");
-        String monthlyCostStr = extractSection(answer, "MONTHLY COST:");
-        String tradeoffsStr = extractSection(answer, "TRADEOFFS:");
+    private QueryResponse answerQuery(QueryRequest request) {
+        // Use RAG to generate answer
+        Map<String, Object> ragResult = ragService.generateAnswer(
+                request.getQuery(),
+                request.getMaxResults(),
+                request.getFilters()
+        );
 
-        Double monthlyCost = extractCost(monthlyCostStr);
-        List<String> tradeoffs = Arrays.asList(tradeoffsStr.split("\n"));
+        return parseTimed(ragResult, null);
+    }
 
-        return QueryResponse.builder()
-                .recommendation(recommendation)
-                .explanation(explanation)
-                .estimatedMonthlyCost(monthlyCost)
-                .tradeoffs(tradeoffs)
-                .citations((List) ragResult.get("citations"))
-                .sessionId(sessionId)
-                .build();
+    /**
+     * Parses the answer as the parsing stage of its request's timings; the
+     * response carries the breakdown so far.
+     */
+    private QueryResponse parseTimed(Map<String, Object> ragResult, String sessionId) {
+        StageTimings timings = (StageTimings) ragResult.get("stages");
+        String answer = (String) ragResult.get("answer");
+        QueryResponse response = timings.time(PipelineMetrics.PARSING,
+                () -> parseResponse(answer, ragResult, sessionId));
+        response.setStages(timings.toMillis());
+        return response;
+    }
+
+    /**
+     * Writes the response to the query log, timed as the logging stage. The
+     * stage breakdown is attached afterwards, so it never reaches the log, and
+     * only kept when the request asked for it.
+     */
+    private void logResponse(String sessionId, QueryResponse response, boolean debug) {
+        Map<String, Double> stages = response.getStages();
+        response.setStages(null);
+        long start = System.nanoTime();
+        observabilityLogger.logResponse(sessionId, response);
+        long elapsed = System.nanoTime() - start;
+        metrics.recordStage(PipelineMetrics.LOGGING, elapsed);
+
+        if (debug && stages != null) {
+            Map<String, Double> withLogging = new LinkedHashMap<>(stages);
+            withLogging.merge(PipelineMetrics.LOGGING, StageTimings.toMillis(elapsed), Double::sum);
+            response.setStages(withLogging);
+        }
     }
 
-    private String extractSection(String text, String marker) {
-        Pattern pattern = Pattern.compile(marker + "\\s*(.+?)(?=\\n[A-Z]+:|$)", Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(text);
-        return matcher.find() ? matcher.group(1).trim() : "";
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
     }
 
-    private Double extractCost(String text) {
-        Pattern pattern = Pattern.compile("\\$?([0-9]+\\.?[0-9]*)");
-        Matcher matcher = pattern.matcher(text);
-        return matcher.find() ? Double.parseDouble(matcher.group(1)) : null;
+    /**
+     * Answers a batch of questions, reporting each to {@code listener} as soon
+     * as it completes. Query embedding and unfiltered retrieval run once for
+     * the whole batch; completions then run at most {@code billbuddy.batch.concurrency}
+     * at a time. Identical questions are answered once. A question that fails
+     * is reported on its own and never fails the rest of the batch.
+     */
+    public void processBatch(List<QueryRequest> requests, BatchQueryListener listener) {
+        long startTime = System.nanoTime();
+        metrics.requestStarted();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        String[] sessionIds = new String[requests.size()];
+
+        Map<QueryKey, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            QueryRequest request = requests.get(i);
+            if (request == null || request.getQuery() == null || request.getQuery().isBlank()) {
+                failed.incrementAndGet();
+                metrics.requestFailed();
+                listener.onError(i, "Query is required");
+                continue;
+            }
+            if (request.getMaxResults() == null || request.getMaxResults() < 1) {
+                failed.incrementAndGet();
+                metrics.requestFailed();
+                listener.onError(i, "maxResults must be positive");
+                continue;
+            }
+            sessionIds[i] = request.getSessionId() != null ?
+                    request.getSessionId() : UUID.randomUUID().toString();
+            observabilityLogger.logQuery(sessionIds[i], request.getQuery());
+            groups.computeIfAbsent(QueryKey.of(request), key -> new ArrayList<>()).add(i);
+        }
+        List<List<Integer>> items = new ArrayList<>(groups.values());
+        log.info("Processing batch of {} queries ({} distinct)", requests.size(), items.size());
+
+        List<RAGService.Retrieval> retrievals = List.of();
+        if (!items.isEmpty()) {
+            List<String> queries = new ArrayList<>(items.size());
+            List<SearchFilter> filters = new ArrayList<>(items.size());
+            int[] topK = new int[items.size()];
+            for (int u = 0; u < items.size(); u++) {
+                QueryRequest request = requests.get(items.get(u).get(0));
+                queries.add(request.getQuery());
+                filters.add(request.getFilters());
+                topK[u] = request.getMaxResults();
+            }
+            try {
+                retrievals = ragService.retrieveBatch(queries, topK, filters);
+            } catch (Exception e) {
+                log.error("Batch retrieval failed", e);
+                for (List<Integer> indexes : items) {
+                    reportBatchError(indexes, sessionIds, e, listener, failed);
+                }
+                items = List.of();
+            }
+        }
+
+        // This thread and up to concurrency - 1 pooled helpers take distinct questions
+        // off a shared queue; the batch waits for the questions, not the helpers, so a
+        // saturated pool only slows it down
+        ConcurrentLinkedQueue<Integer> work = new ConcurrentLinkedQueue<>();
+        for (int u = 0; u < items.size(); u++) {
+            work.add(u);
+        }
+        CountDownLatch done = new CountDownLatch(items.size());
+        List<List<Integer>> distinct = items;
+        List<RAGService.Retrieval> retrieved = retrievals;
+        Runnable drain = () -> {
+            Integer u;
+            while ((u = work.poll()) != null) {
+                try {
+                    answerBatchItem(requests, distinct.get(u), retrieved.get(u), sessionIds,
+                            listener, succeeded, failed);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        for (int helper = 1; helper < Math.min(batchConcurrency, items.size()); helper++) {
+            try {
+                requestExecutor.execute(drain);
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        drain.run();
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long processingTime = millisSince(startTime);
+        metrics.requestFinished();
+        log.info("Batch of {} queries done in {}ms: {} succeeded, {} failed",
+                requests.size(), processingTime, succeeded.get(), failed.get());
+        listener.onComplete(succeeded.get(), failed.get(), processingTime);
+    }
+
+    private void answerBatchItem(List<QueryRequest> requests, List<Integer> indexes,
+                                 RAGService.Retrieval retrieval, String[] sessionIds,
+                                 BatchQueryListener listener,
+                                 AtomicInteger succeeded, AtomicInteger failed) {
+        long startTime = System.nanoTime();
+        QueryResponse shared;
+        try {
+            Map<String, Object> ragResult = ragService.answerRetrieved(
+                    requests.get(indexes.get(0)).getQuery(), retrieval);
+            shared = parseTimed(ragResult, null);
+        } catch (Exception e) {
+            log.error("Error processing batch query", e);
+            reportBatchError(indexes, sessionIds, e, listener, failed);
+            return;
+        }
+
+        long processingTime = millisSince(startTime);
+        for (int n = 0; n < indexes.size(); n++) {
+            int index = indexes.get(n);
+            QueryResponse.QueryResponseBuilder builder = shared.toBuilder()
+                    .sessionId(sessionIds[index])
+                    .processingTimeMs(processingTime);
+            if (n > 0) {
+                // Duplicate within the batch; the tokens were spent on the first
+                builder.promptTokens(0L).completionTokens(0L);
+            }
+            QueryResponse response = builder.build();
+            logResponse(sessionIds[index], response, requests.get(index).isDebug());
+            succeeded.incrementAndGet();
+            listener.onResult(index, response);
+        }
+    }
+
+    private void reportBatchError(List<Integer> indexes, String[] sessionIds, Exception e,
+                                  BatchQueryListener listener, AtomicInteger failed) {
+        for (int index : indexes) {
+            observabilityLogger.logError(sessionIds[index], e);
+            metrics.requestFailed();
+            failed.incrementAndGet();
+            listener.onError(index, "Failed to process query");
+        }
+    }
+
+    public void streamQuery(QueryRequest request, QueryStreamListener listener) {
+        long startTime = System.nanoTime();
+        String sessionId = request.getSessionId() != null ?
+                request.getSessionId() : UUID.randomUUID().toString();
+
+        log.info("Streaming query for session: {}", sessionId);
+        observabilityLogger.logQuery(sessionId, request.getQuery());
+
+        metrics.requestStarted();
+        try {
+            StreamingSectionParser sectionParser = new StreamingSectionParser(
+                    (label, text) -> listener.onSection(sectionName(label), sectionValue(label, text)));
+
+            Map<String, Object> ragResult = ragService.streamAnswer(
+                    request.getQuery(),
+                    request.getMaxResults(),
+                    request.getFilters(),
+                    citations -> listener.onCitations(sessionId, citations),
+                    token -> {
+                        listener.onToken(token);
+                        sectionParser.feed(token);
+                    }
+            );
+            sectionParser.finish();
+
+            QueryResponse response = parseTimed(ragResult, sessionId);
+            response.setProcessingTimeMs(millisSince(startTime));
+
+            logResponse(sessionId, response, request.isDebug());
+            listener.onComplete(response);
+
+        } catch (AdmissionRejectedException e) {
+            log.info("Rejected streaming query for session {}: {}", sessionId, e.getMessage());
+            listener.onError(e);
+        } catch (Exception e) {
+            log.error("Error streaming query", e);
+            metrics.requestFailed();
+            observabilityLogger.logError(sessionId, e);
+            listener.onError(e);
+        } finally {
+            metrics.requestFinished();
+        }
+    }
+
+    private String sectionName(String label) {
+        return switch (label) {
+            case StreamingSectionParser.RECOMMENDATION -> "recommendation";
+            case StreamingSectionParser.EXPLANATION -> "explanation";
+            case StreamingSectionParser.MONTHLY_COST -> "monthlyCost";
+            case StreamingSectionParser.TRADEOFFS -> "tradeoffs";
+            default -> label.toLowerCase(Locale.ROOT);
+        };
+    }
+
+    private Object sectionValue(String label, String text) {
+        return switch (label) {
+            case StreamingSectionParser.MONTHLY_COST -> ResponseParser.parseCost(text);
+            case StreamingSectionParser.TRADEOFFS -> ResponseParser.tradeoffs(text);
+            default -> text;
+        };
+    }
+
+    private QueryResponse parseResponse(String answer, Map<String, Object> ragResult, String sessionId) {
+        ResponseParser.Parsed parsed = ResponseParser.parse(answer);
+        if (!parsed.complete()) {
+            log.warn("Could not parse a {} answer{}", parsed.format(),
+                    sessionId != null ? " for session " + sessionId : "");
+            metrics.parseFailed(parsed.format().name().toLowerCase(Locale.ROOT));
+        }
+
+        return QueryResponse.builder()
+                .recommendation(parsed.recommendation())
+                .explanation(parsed.explanation())
+                .estimatedMonthlyCost(parsed.estimatedMonthlyCost())
+                .tradeoffs(parsed.tradeoffs())
+                .citations((List) ragResult.get("citations"))
+                .sessionId(sessionId)
+                .promptTokens((Long) ragResult.get("promptTokens"))
+                .completionTokens((Long) ragResult.get("completionTokens"))
+                .degraded((Boolean) ragResult.get("degraded"))
+                .build();
     }
 }
@@ -0,0 +1,295 @@
+// EmbeddingCache.java
+package com.billbuddy.service;
+
+import com.billbuddy.util.EmbeddingCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Bounded LRU cache of embeddings keyed by model name and a SHA-256 of the
+ * normalized input text. Entries expire after a TTL. When a directory is
+ * configured, embeddings are also written to disk so a restart does not
+ * re-embed (and re-bill) unchanged text. A file's modification time is its
+ * write time: files older than the TTL are dropped when read, and once the
+ * directory holds more than {@code disk-max-entries} files the expired and
+ * then the oldest are pruned down to three quarters of that.
+ */
+@Component
+@Slf4j
+public class EmbeddingCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Path directory;
+    private final int diskMaxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+    private final AtomicInteger diskEntries = new AtomicInteger();
+    private final AtomicBoolean pruning = new AtomicBoolean();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    public EmbeddingCache(@Value("${billbuddy.embedding.cache.max-entries:10000}") int maxEntries,
+                          @Value("${billbuddy.embedding.cache.ttl:PT24H}") Duration ttl,
+                          @Value("${billbuddy.embedding.cache.directory:}") String directory,
+                          @Value("${billbuddy.embedding.cache.disk-max-entries:100000}") int diskMaxEntries) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.directory = directory == null || directory.isBlank() ? null : Path.of(directory);
+        this.diskMaxEntries = Math.max(diskMaxEntries, 1);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > EmbeddingCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        if (this.directory != null) {
+            diskEntries.set(cachedFiles().size());
+            log.info("Embedding cache persisting to {} ({} entries)", this.directory.toAbsolutePath(), diskEntries.get());
+        }
+    }
+
+    public float[] get(String model, String text) {
+        if (maxEntries <= 0 && directory == null) {
+            return null;
+        }
+        String key = key(model, text);
+        long now = System.currentTimeMillis();
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    hits.incrementAndGet();
+                    return entry.vector;
+                }
+                entries.remove(key);
+            }
+        }
+
+        Entry stored = readFromDisk(key, now);
+        if (stored != null) {
+            diskHits.incrementAndGet();
+            if (maxEntries > 0) {
+                synchronized (entries) {
+                    entries.put(key, stored);
+                }
+            }
+            return stored.vector;
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * The in-memory entry for {@code text} if present and live, without
+     * touching the disk tier or the hit/miss counters. For re-checks after a
+     * {@link #get} that already counted the miss.
+     */
+    public float[] peek(String model, String text) {
+        if (maxEntries <= 0) {
+            return null;
+        }
+        String key = key(model, text);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            return entry != null && entry.expiresAt > System.currentTimeMillis() ? entry.vector : null;
+        }
+    }
+
+    public void put(String model, String text, float[] vector) {
+        String key = key(model, text);
+        putInMemory(key, vector, System.currentTimeMillis());
+        writeToDisk(key, vector);
+    }
+
+    public Map<String, Object> stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        long hitCount = hits.get() + diskHits.get();
+        long lookups = hitCount + misses.get();
+        return Map.of(
+                "size", size,
+                "hits", hits.get(),
+                "diskHits", diskHits.get(),
+                "misses", misses.get(),
+                "evictions", evictions.get(),
+                "diskSize", diskEntries.get(),
+                "diskEvictions", diskEvictions.get(),
+                "hitRate", lookups == 0 ? 0.0 : (double) hitCount / lookups
+        );
+    }
+
+    private void putInMemory(String key, float[] vector, long now) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry(vector, now + ttlMillis));
+        }
+    }
+
+    /**
+     * The stored embedding, expiring a TTL after the file was written; an
+     * expired file is deleted and reads as absent.
+     */
+    private Entry readFromDisk(String key, long now) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = fileFor(key);
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            long expiresAt = Files.getLastModifiedTime(file).toMillis() + ttlMillis;
+            if (expiresAt <= now) {
+                if (Files.deleteIfExists(file)) {
+                    diskEntries.decrementAndGet();
+                    diskEvictions.incrementAndGet();
+                }
+                return null;
+            }
+            return new Entry(EmbeddingCodec.decode(Files.readAllBytes(file)), expiresAt);
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable cached embedding {}", file, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, float[] vector) {
+        if (directory == null) {
+            return;
+        }
+        Path file = fileFor(key);
+        try {
+            Files.createDirectories(file.getParent());
+            boolean added = !Files.exists(file);
+            Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(temp, EmbeddingCodec.encode(vector, EmbeddingCodec.Encoding.FLOAT32));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (added && diskEntries.incrementAndGet() > diskMaxEntries) {
+                pruneDisk();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to persist cached embedding {}", file, e);
+        }
+    }
+
+    /**
+     * Deletes expired files, then the oldest, until three quarters of
+     * {@code disk-max-entries} remain, so the directory scan runs once per
+     * quarter of the cap in new files rather than on every write. One writer
+     * prunes at a time; the others carry on.
+     */
+    private void pruneDisk() {
+        if (!pruning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Path> files = cachedFiles();
+            long expiredBefore = System.currentTimeMillis() - ttlMillis;
+            List<CachedFile> live = new ArrayList<>(files.size());
+            int deleted = 0;
+            for (Path file : files) {
+                try {
+                    FileTime modified = Files.getLastModifiedTime(file);
+                    if (modified.toMillis() <= expiredBefore) {
+                        deleted += Files.deleteIfExists(file) ? 1 : 0;
+                    } else {
+                        live.add(new CachedFile(file, modified.toMillis()));
+                    }
+                } catch (IOException e) {
+                    // Deleted by a concurrent reader
+                }
+            }
+            int target = diskMaxEntries - diskMaxEntries / 4;
+            if (live.size() > target) {
+                live.sort(Comparator.comparingLong(CachedFile::modifiedAt));
+                for (CachedFile oldest : live.subList(0, live.size() - target)) {
+                    try {
+                        deleted += Files.deleteIfExists(oldest.path()) ? 1 : 0;
+                    } catch (IOException e) {
+                        log.warn("Failed to prune cached embedding {}", oldest.path(), e);
+                    }
+                }
+            }
+            diskEntries.set(files.size() - deleted);
+            diskEvictions.addAndGet(deleted);
+            log.debug("Pruned {} cached embeddings from disk, {} left", deleted, files.size() - deleted);
+        } finally {
+            pruning.set(false);
+        }
+    }
+
+    private List<Path> cachedFiles() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".emb")).toList();
+        } catch (IOException e) {
+            log.warn("Failed to list cached embeddings in {}", directory, e);
+            return List.of();
+        }
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".emb");
+    }
+
+    static String key(String model, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(normalize(text).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static String normalize(String text) {
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private record Entry(float[] vector, long expiresAt) {
+    }
+
+    private record CachedFile(Path path, long modifiedAt) {
+    }
+}
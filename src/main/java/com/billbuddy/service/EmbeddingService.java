@@ -1,68 +1,116 @@
 // EmbeddingService.java
 package com.billbuddy.service;
 
-import com.theokanning.openai.embedding.EmbeddingRequest;
-import com.theokanning.openai.service.OpenAiService;
+import com.billbuddy.provider.EmbeddingProvider;
+import com.billbuddy.util.SimilarityKernel;
+import com.billbuddy.util.SingleFlight;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 @Service
 @Slf4j
 public class EmbeddingService {
 
-    private final OpenAiService openAiService;
-
-    public EmbeddingService(@Value("${openai.api.key}") String apiKey) {
+    private final EmbeddingProvider embeddingProvider;
+    private final EmbeddingCache embeddingCache;
+    private final String model;
+    private final int batchSize;
+    private final UpstreamGuard embeddingUpstream;
+    // Concurrent embeds of the same normalized text share one API call
+    private final SingleFlight<String, float[]> inFlight = new SingleFlight<>();
+
+    public EmbeddingService(EmbeddingProvider embeddingProvider,
+                            @Value("${openai.embedding.batch-size:100}") int batchSize,
+                            EmbeddingCache embeddingCache,
+                            @Qualifier("embeddingUpstream") UpstreamGuard embeddingUpstream) {
+        this.embeddingProvider = embeddingProvider;
+        this.embeddingCache = embeddingCache;
+        this.model = embeddingProvider.model();
+        this.batchSize = Math.max(batchSize, 1);
+        this.embeddingUpstream = embeddingUpstream;
+    }
 
-        if (apiKey == null || apiKey.isBlank()) {
-            throw new IllegalStateException("openai.api.key is empty - check config sources");
+    public float[] embed(String text) {
+        float[] cached = embeddingCache.get(model, text);
+        if (cached != null) {
+            return cached;
         }
 
-        String trimmed = apiKey.trim();
-        String suffix = trimmed.length() >= 4 ? trimmed.substring(trimmed.length() - 4) : trimmed;
-        log.info("OpenAI key loaded (len={}, suffix=****{})", trimmed.length(), suffix);
-
-        this.openAiService = new OpenAiService(trimmed);
-
-//        this.openAiService = new OpenAiService(apiKey);
+        return inFlight.execute(EmbeddingCache.key(model, text), () -> {
+            // A call that finished just before this one joined may have filled the cache;
+            // peek, since the lookup above already counted this miss
+            float[] filled = embeddingCache.peek(model, text);
+            if (filled != null) {
+                return filled;
+            }
+            float[] embedding = call(List.of(text)).get(0);
+            embeddingCache.put(model, text, embedding);
+            return embedding;
+        });
     }
 
-    public List<Double> generateEmbedding(String text) {
-        log.debug("Generating embedding for text of length: {}", text.length());
-
-        try {
-            EmbeddingRequest request = EmbeddingRequest.builder()
-                    .model("text-embedding-ada-002")
-                    .input(List.of(text))
-                    .build();
+    /**
+     * Embeds many texts, answering what it can from the cache and packing the
+     * rest into provider calls of up to {@code openai.embedding.batch-size} inputs.
+     * Results are returned in input order.
+     */
+    public List<float[]> generateEmbeddings(List<String> texts) {
+        float[][] results = new float[texts.size()][];
+        List<Integer> missing = new ArrayList<>();
+
+        for (int i = 0; i < texts.size(); i++) {
+            results[i] = embeddingCache.get(model, texts.get(i));
+            if (results[i] == null) {
+                missing.add(i);
+            }
+        }
 
-            var result = openAiService.createEmbeddings(request);
-            return result.getData().get(0).getEmbedding();
+        for (int from = 0; from < missing.size(); from += batchSize) {
+            List<Integer> batch = missing.subList(from, Math.min(from + batchSize, missing.size()));
+            List<String> inputs = new ArrayList<>(batch.size());
+            for (int index : batch) {
+                inputs.add(texts.get(index));
+            }
+
+            log.debug("Generating {} embeddings in one request", inputs.size());
+            List<float[]> embeddings = call(inputs);
+            for (int i = 0; i < batch.size(); i++) {
+                int index = batch.get(i);
+                results[index] = embeddings.get(i);
+                if (results[index] != null) {
+                    embeddingCache.put(model, texts.get(index), results[index]);
+                }
+            }
+        }
 
-        } catch (Exception e) {
-            log.error("Error generating embedding", e);
-            throw new RuntimeException("Failed to generate embedding", e);
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                throw new RuntimeException("No embedding returned for input " + i);
+            }
         }
+        return Arrays.asList(results);
     }
 
-    public double cosineSimilarity(List<Double> vec1, List<Double> vec2) {
-        if (vec1.size() != vec2.size()) {
-            throw new IllegalArgumentException("Vectors must have same dimension");
+    private List<float[]> call(List<String> texts) {
+        try {
+            return embeddingUpstream.call(() -> embeddingProvider.embed(texts));
+        } catch (Exception e) {
+            log.error("Error generating embeddings", e);
+            throw new RuntimeException("Failed to generate embeddings", e);
         }
+    }
 
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-
-        for (int i = 0; i < vec1.size(); i++) {
-            dotProduct += vec1.get(i) * vec2.get(i);
-            norm1 += Math.pow(vec1.get(i), 2);
-            norm2 += Math.pow(vec2.get(i), 2);
-        }
+    public String getModel() {
+        return model;
+    }
 
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    public float cosineSimilarity(float[] vec1, float[] vec2) {
+        return SimilarityKernel.cosine(vec1, vec2);
     }
 }
@@ -0,0 +1,178 @@
+// IndexingQueue.java
+package com.billbuddy.service;
+
+import com.billbuddy.model.Plan;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background indexing. {@link #submit} stages plans synchronously (saved and
+ * searchable lexically, stored vectors kept) and queues only the plans whose
+ * content fingerprint changed; worker threads drain the queue in batches and
+ * embed them, so startup and catalog updates never wait on the embedding API.
+ * Queued work is not persisted: after a restart the fingerprints still differ
+ * and the plans are queued again. Each time the queue drains, the vector index
+ * snapshot is rewritten for the next cold start.
+ */
+@Component
+@Slf4j
+public class IndexingQueue {
+
+    public enum State {
+        /** Nothing searchable yet; plans are still being staged. */
+        STARTING,
+        /** Serving lexically and from stored vectors while changed plans are embedded. */
+        CATCHING_UP,
+        /** No indexing work pending. */
+        READY
+    }
+
+    private final VectorStoreService vectorStoreService;
+    private final int batchSize;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    // Oldest enqueue time of each worker's in-flight batch, for lag
+    private final Map<Thread, Long> inFlightSince = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger staging = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong embedded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public IndexingQueue(VectorStoreService vectorStoreService,
+                         @Value("${billbuddy.indexing.workers:2}") int workers,
+                         @Value("${billbuddy.indexing.batch-size:50}") int batchSize) {
+        this.vectorStoreService = vectorStoreService;
+        this.batchSize = Math.max(batchSize, 1);
+        for (int i = 0; i < Math.max(workers, 1); i++) {
+            Thread worker = new Thread(this::runWorker, "billbuddy-indexer-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            this.workers.add(worker);
+        }
+    }
+
+    /**
+     * Stages the plans and queues the changed ones for embedding. Returns the
+     * number queued.
+     */
+    public int submit(List<Plan> plans) {
+        staging.incrementAndGet();
+        try {
+            List<VectorStoreService.StagedPlan> changed = vectorStoreService.stagePlans(plans);
+            submitted.addAndGet(plans.size());
+            unchanged.addAndGet(plans.size() - changed.size());
+            long now = System.currentTimeMillis();
+            for (VectorStoreService.StagedPlan plan : changed) {
+                queue.add(new Pending(plan, now));
+            }
+            log.info("Queued {} of {} plans for embedding ({} unchanged)",
+                    changed.size(), plans.size(), plans.size() - changed.size());
+            if (changed.isEmpty() && queue.isEmpty() && inFlight.get() == 0) {
+                vectorStoreService.writeSnapshot();
+            }
+            return changed.size();
+        } finally {
+            staging.decrementAndGet();
+        }
+    }
+
+    public State state() {
+        if (queue.isEmpty() && inFlight.get() == 0 && staging.get() == 0) {
+            return State.READY;
+        }
+        return vectorStoreService.lexicalPlanCount() > 0 ? State.CATCHING_UP : State.STARTING;
+    }
+
+    /**
+     * Milliseconds the oldest queued or in-flight plan has been waiting; 0 when idle.
+     */
+    public long lagMillis() {
+        long oldest = Long.MAX_VALUE;
+        Pending head = queue.peek();
+        if (head != null) {
+            oldest = head.enqueuedAt();
+        }
+        for (long since : inFlightSince.values()) {
+            oldest = Math.min(oldest, since);
+        }
+        return oldest == Long.MAX_VALUE ? 0 : Math.max(System.currentTimeMillis() - oldest, 0);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state());
+        stats.put("queued", queue.size());
+        stats.put("inFlight", inFlight.get());
+        stats.put("lagMs", lagMillis());
+        stats.put("submitted", submitted.get());
+        stats.put("unchanged", unchanged.get());
+        stats.put("embedded", embedded.get());
+        stats.put("failed", failed.get());
+        stats.put("lexicalPlans", vectorStoreService.lexicalPlanCount());
+        stats.put("vectorPlans", vectorStoreService.vectorPlanCount());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        if (!queue.isEmpty()) {
+            log.info("Indexing stopped with {} plans still queued", queue.size());
+        }
+    }
+
+    private void runWorker() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                inFlight.addAndGet(batch.size());
+                inFlightSince.put(Thread.currentThread(), first.enqueuedAt());
+
+                List<VectorStoreService.StagedPlan> plans = new ArrayList<>(batch.size());
+                batch.forEach(pending -> plans.add(pending.plan()));
+                int done = vectorStoreService.embedPlans(plans);
+                embedded.addAndGet(done);
+                failed.addAndGet(plans.size() - done);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                failed.addAndGet(batch.size());
+                log.error("Indexing batch of {} plans failed", batch.size(), e);
+            } finally {
+                inFlightSince.remove(Thread.currentThread());
+                int remaining = inFlight.addAndGet(-batch.size());
+                if (!batch.isEmpty() && remaining == 0 && queue.isEmpty()) {
+                    // Caught up: persist the index for the next cold start
+                    vectorStoreService.writeSnapshot();
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private record Pending(VectorStoreService.StagedPlan plan, long enqueuedAt) {
+    }
+}
@@ -0,0 +1,11 @@
+// PlanIndexedEvent.java
+package com.billbuddy.service;
+
+import java.util.List;
+
+/**
+ * Published after plans have been (re-)embedded or had their metadata refreshed
+ * in the vector index.
+ */
+public record PlanIndexedEvent(List<Long> planIds) {
+}
@@ -0,0 +1,24 @@
+// QueryStreamListener.java
+package com.billbuddy.service;
+
+import com.billbuddy.model.Citation;
+import com.billbuddy.model.QueryResponse;
+
+import java.util.List;
+
+/**
+ * Receives the stages of a streamed query in order: citations, then tokens
+ * interleaved with parsed sections, then exactly one of complete or error.
+ */
+public interface QueryStreamListener {
+
+    void onCitations(String sessionId, List<Citation> citations);
+
+    void onToken(String text);
+
+    void onSection(String section, Object value);
+
+    void onComplete(QueryResponse response);
+
+    void onError(Exception e);
+}
@@ -1,79 +1,347 @@
 // RAGService.java
 package com.billbuddy.service;
 
+import com.billbuddy.index.SearchHit;
 import com.billbuddy.model.Citation;
-import com.billbuddy.model.Plan;
-import com.theokanning.openai.completion.chat.ChatCompletionRequest;
-import com.theokanning.openai.completion.chat.ChatMessage;
-import com.theokanning.openai.service.OpenAiService;
+import com.billbuddy.model.SearchFilter;
+import com.billbuddy.provider.Completion;
+import com.billbuddy.provider.CompletionProvider;
+import com.billbuddy.provider.CompletionRequest;
+import com.billbuddy.util.ContextBuilder;
+import com.billbuddy.util.PipelineMetrics;
+import com.billbuddy.util.ResponseParser;
+import com.billbuddy.util.StageTimings;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class RAGService {
 
+    private static final String SYSTEM_PROMPT = "You are a helpful utility plan comparison assistant.";
+
     private final VectorStoreService vectorStoreService;
-    private final OpenAiService openAiService;
+    private final EmbeddingService embeddingService;
+    private final AnswerCache answerCache;
+    private final ContextBuilder contextBuilder;
+    private final CompletionProvider completionProvider;
+    private final UpstreamGuard completionUpstream;
+    private final AdmissionController admissionController;
+    private final boolean extractFilters;
+    private final RetrievalMode retrievalMode;
+    private final boolean fallbackEnabled;
+    private final boolean structuredOutput;
+    private final PipelineMetrics metrics;
 
     public RAGService(VectorStoreService vectorStoreService,
-                      @Value("${openai.api.key}") String apiKey) {
+                      EmbeddingService embeddingService,
+                      AnswerCache answerCache,
+                      ContextBuilder contextBuilder,
+                      PipelineMetrics metrics,
+                      CompletionProvider completionProvider,
+                      @Qualifier("completionUpstream") UpstreamGuard completionUpstream,
+                      AdmissionController admissionController,
+                      @Value("${billbuddy.retrieval.extract-filters:true}") boolean extractFilters,
+                      @Value("${billbuddy.retrieval.mode:hybrid}") String retrievalMode,
+                      @Value("${billbuddy.upstream.fallback.enabled:true}") boolean fallbackEnabled,
+                      @Value("${billbuddy.completion.format:sections}") String completionFormat) {
         this.vectorStoreService = vectorStoreService;
-        this.openAiService = new OpenAiService(apiKey);
+        this.embeddingService = embeddingService;
+        this.answerCache = answerCache;
+        this.contextBuilder = contextBuilder;
+        this.metrics = metrics;
+        this.completionProvider = completionProvider;
+        this.completionUpstream = completionUpstream;
+        this.admissionController = admissionController;
+        this.extractFilters = extractFilters;
+        this.retrievalMode = RetrievalMode.fromName(retrievalMode);
+        this.fallbackEnabled = fallbackEnabled;
+        this.structuredOutput = "json".equalsIgnoreCase(completionFormat);
+        log.info("Retrieval mode: {}, completion provider: {}, format: {}", this.retrievalMode,
+                completionProvider.name(), structuredOutput ? "json" : "sections");
     }
 
     public Map<String, Object> generateAnswer(String query, int topK) {
+        return generateAnswer(query, topK, null);
+    }
+
+    /**
+     * @param filter explicit constraints; when null they are extracted from the query text
+     */
+    public Map<String, Object> generateAnswer(String query, int topK, SearchFilter filter) {
+        return answer(query, topK, filter, null, null);
+    }
+
+    /**
+     * Streaming variant of {@link #generateAnswer}: citations are handed to
+     * {@code onCitations} as soon as retrieval finishes, then completion text to
+     * {@code onToken} as it arrives. Returns the same result map once complete.
+     */
+    public Map<String, Object> streamAnswer(String query, int topK, SearchFilter filter,
+                                            Consumer<List<Citation>> onCitations,
+                                            Consumer<String> onToken) {
+        return answer(query, topK, filter, onCitations, onToken);
+    }
+
+    private Map<String, Object> answer(String query, int topK, SearchFilter explicitFilter,
+                                       Consumer<List<Citation>> onCitations,
+                                       Consumer<String> onToken) {
         log.info("Generating RAG answer for query: {}", query);
-        long startTime = System.currentTimeMillis();
+        StageTimings timings = metrics.start();
+
+        // Retrieve relevant documents, pre-filtered by type/price/contract/provider
+        float[] queryEmbedding = timings.time(PipelineMetrics.EMBEDDING, () -> embedQuery(query));
+        List<SearchHit> relevantPlans = timings.time(PipelineMetrics.RETRIEVAL, () -> retrieveFiltered(query,
+                queryEmbedding, topK, resolveFilter(query, explicitFilter), explicitFilter));
+        return complete(query, queryEmbedding, relevantPlans, timings, false, onCitations, onToken);
+    }
 
-        // Retrieve relevant documents
-        List<Map.Entry<Plan, Double>> relevantPlans =
-                vectorStoreService.searchSimilar(query, topK);
+    /**
+     * Plans retrieved for one question of a batch, with its query embedding
+     * (null when retrieval was lexical).
+     */
+    public record Retrieval(float[] queryEmbedding, List<SearchHit> hits) {
+    }
+
+    /**
+     * Retrieval for many questions at once: query embeddings are fetched in
+     * batched calls and unfiltered questions are scored against the index in a
+     * single pass. Questions with a filter (explicit or extracted) are
+     * retrieved one by one as in {@link #generateAnswer}. Results are in
+     * question order; answer each with {@link #answerRetrieved}.
+     */
+    public List<Retrieval> retrieveBatch(List<String> queries, int[] topK, List<SearchFilter> explicitFilters) {
+        StageTimings timings = metrics.start();
+        List<float[]> embeddings = timings.time(PipelineMetrics.EMBEDDING, () -> embedQueries(queries));
+        return timings.time(PipelineMetrics.RETRIEVAL, () -> retrieveBatch(queries, embeddings, topK, explicitFilters));
+    }
 
-        // Build context from retrieved plans
-        String context = buildContext(relevantPlans);
+    private List<Retrieval> retrieveBatch(List<String> queries, List<float[]> embeddings,
+                                          int[] topK, List<SearchFilter> explicitFilters) {
+        Retrieval[] results = new Retrieval[queries.size()];
+
+        List<Integer> unfiltered = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            SearchFilter filter = resolveFilter(queries.get(i), explicitFilters.get(i));
+            if (filter == null && embeddings.get(i) != null) {
+                unfiltered.add(i);
+            } else {
+                results[i] = new Retrieval(embeddings.get(i), retrieveFiltered(queries.get(i),
+                        embeddings.get(i), topK[i], filter, explicitFilters.get(i)));
+            }
+        }
 
-        // Generate answer using GPT
-        String prompt = buildPrompt(query, context);
-        String answer = callOpenAI(prompt);
+        if (!unfiltered.isEmpty()) {
+            List<String> batchQueries = new ArrayList<>(unfiltered.size());
+            List<float[]> batchEmbeddings = new ArrayList<>(unfiltered.size());
+            int[] batchTopK = new int[unfiltered.size()];
+            for (int j = 0; j < unfiltered.size(); j++) {
+                int i = unfiltered.get(j);
+                batchQueries.add(queries.get(i));
+                batchEmbeddings.add(embeddings.get(i));
+                batchTopK[j] = topK[i];
+            }
+            List<List<SearchHit>> hits = vectorStoreService.searchBatch(batchQueries, batchEmbeddings,
+                    batchTopK, retrievalMode == RetrievalMode.HYBRID);
+            for (int j = 0; j < unfiltered.size(); j++) {
+                int i = unfiltered.get(j);
+                results[i] = new Retrieval(embeddings.get(i), hits.get(j));
+            }
+        }
+        log.info("Retrieved {} questions ({} in one batched vector pass)", queries.size(), unfiltered.size());
+        return List.of(results);
+    }
+
+    /**
+     * Completes an answer from plans already retrieved by {@link #retrieveBatch}.
+     * Returns the same result map as {@link #generateAnswer}. Unlike a single
+     * question, it waits for a completion slot rather than being shed.
+     */
+    public Map<String, Object> answerRetrieved(String query, Retrieval retrieval) {
+        return complete(query, retrieval.queryEmbedding(), retrieval.hits(),
+                metrics.start(), true, null, null);
+    }
+
+    /**
+     * @param waitForSlot queue for a completion slot instead of failing with
+     *                    {@link AdmissionRejectedException} when none is free
+     */
+    private Map<String, Object> complete(String query, float[] queryEmbedding, List<SearchHit> relevantPlans,
+                                         StageTimings timings, boolean waitForSlot,
+                                         Consumer<List<Citation>> onCitations,
+                                         Consumer<String> onToken) {
+        // Reuse a cached answer for a near-identical query over the same plan versions
+        long[] planIds = new long[relevantPlans.size()];
+        long[] planVersions = new long[relevantPlans.size()];
+        for (int i = 0; i < planIds.length; i++) {
+            planIds[i] = relevantPlans.get(i).plan().getId();
+            planVersions[i] = vectorStoreService.planVersion(planIds[i]);
+        }
+        String answer = queryEmbedding != null
+                ? answerCache.lookup(queryEmbedding, planIds, planVersions)
+                : null;
+        boolean cacheHit = answer != null;
 
         // Extract citations
         List<Citation> citations = buildCitations(relevantPlans);
+        if (onCitations != null) {
+            onCitations.accept(citations);
+        }
 
-        long processingTime = System.currentTimeMillis() - startTime;
+        long promptTokens = 0;
+        long completionTokens = 0;
+        boolean degraded = false;
+        if (!cacheHit) {
+            // Build context from retrieved plans within the token budget
+            ContextBuilder.Context context = timings.time(PipelineMetrics.CONTEXT,
+                    () -> contextBuilder.build(relevantPlans));
+            log.info("Context: {} plans ({} dropped over budget), ~{} tokens",
+                    context.plans(), context.dropped(), context.tokens());
+
+            // Generate answer using GPT
+            boolean structured = structuredOutput && onToken == null;
+            CompletionRequest request = new CompletionRequest(SYSTEM_PROMPT,
+                    buildPrompt(query, context.text(), structured), query, relevantPlans, structured);
+
+            // Cache hits never get here, so they are served even while completions are shed
+            AdmissionController.Slot slot = admissionController.acquireCompletion(waitForSlot);
+            boolean overloaded = false;
+            try {
+                Completion completion = timings.time(PipelineMetrics.COMPLETION,
+                        () -> onToken != null ? callCompletionStreaming(request, onToken) : callCompletion(request));
+                answer = completion.text();
+                promptTokens = completion.promptTokens();
+                completionTokens = completion.completionTokens();
+                if (queryEmbedding != null) {
+                    answerCache.put(queryEmbedding, planIds, planVersions, answer);
+                }
+            } catch (UpstreamUnavailableException e) {
+                // An open circuit says nothing about load; it already sheds on its own
+                overloaded = !(e instanceof CircuitBreaker.CircuitOpenException);
+                if (!fallbackEnabled) {
+                    throw new RuntimeException("Failed to generate response", e);
+                }
+                // Completions are down: answer with the ranked retrieval instead of failing
+                log.warn("Completion unavailable ({}), returning retrieval-only answer", e.getMessage());
+                answer = fallbackAnswer(relevantPlans, citations);
+                degraded = true;
+                if (onToken != null) {
+                    onToken.accept(answer);
+                }
+            } finally {
+                slot.release(overloaded);
+            }
+        } else if (onToken != null) {
+            // The cached answer may be JSON from a structured completion; streams carry sections
+            onToken.accept(ResponseParser.asSections(answer));
+        }
+
+        metrics.answered(cacheHit ? "cache" : degraded ? "fallback" : "completion");
+        long processingTime = timings.elapsedMillis();
 
         return Map.of(
                 "answer", answer,
                 "citations", citations,
                 "processingTimeMs", processingTime,
-                "retrievedDocs", relevantPlans.size()
+                "retrievedDocs", relevantPlans.size(),
+                "cacheHit", cacheHit,
+                "promptTokens", promptTokens,
+                "completionTokens", completionTokens,
+                "degraded", degraded,
+                "stages", timings
         );
     }
 
-    private String buildContext(List<Map.Entry<Plan, Double>> plans) {
-        return plans.stream()
-                .map(entry -> {
-                    Plan plan = entry.getKey();
-                    return String.format(
-                            "[%s - %s]\nPrice: $%.2f/month\n%s\nFeatures: %s\nBest for: %s",
-                            plan.getProvider(),
-                            plan.getName(),
-                            plan.getMonthlyPrice(),
-                            plan.getDescription(),
-                            plan.getFeatures(),
-                            plan.getBestFor()
-                    );
-                })
-                .collect(Collectors.joining("\n\n---\n\n"));
-    }
-
-    private String buildPrompt(String query, String context) {
+    /**
+     * Query embedding, or null when retrieval is lexical-only or the embedding
+     * call fails (timeout, saturated limiter, API error); retrieval then falls
+     * back to BM25 so the question is still answered.
+     */
+    private float[] embedQuery(String query) {
+        if (retrievalMode == RetrievalMode.LEXICAL) {
+            return null;
+        }
+        try {
+            return embeddingService.embed(query);
+        } catch (RuntimeException e) {
+            log.warn("Query embedding failed, falling back to lexical retrieval: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Embeddings for a batch of questions, in batched API calls; all null when
+     * retrieval is lexical-only or the calls fail, as in {@link #embedQuery}.
+     */
+    private List<float[]> embedQueries(List<String> queries) {
+        if (retrievalMode != RetrievalMode.LEXICAL) {
+            try {
+                return embeddingService.generateEmbeddings(queries);
+            } catch (RuntimeException e) {
+                log.warn("Batch query embedding failed, falling back to lexical retrieval: {}", e.getMessage());
+            }
+        }
+        return Arrays.asList(new float[queries.size()][]);
+    }
+
+    private List<SearchHit> retrieveFiltered(String query, float[] queryEmbedding, int topK,
+                                             SearchFilter filter, SearchFilter explicitFilter) {
+        List<SearchHit> hits = retrieve(query, queryEmbedding, topK, filter);
+        if (hits.isEmpty() && filter != null && filter != explicitFilter) {
+            // A filter guessed from the wording that matches nothing is dropped
+            log.info("Extracted filter {} matched no plans, searching unfiltered", filter);
+            hits = retrieve(query, queryEmbedding, topK, null);
+        }
+        return hits;
+    }
+
+    private List<SearchHit> retrieve(String query, float[] queryEmbedding,
+                                     int topK, SearchFilter filter) {
+        if (queryEmbedding == null) {
+            return vectorStoreService.searchLexical(query, topK, filter);
+        }
+        return retrievalMode == RetrievalMode.HYBRID
+                ? vectorStoreService.searchHybrid(query, queryEmbedding, topK, filter)
+                : vectorStoreService.searchSimilar(queryEmbedding, topK, filter);
+    }
+
+    private SearchFilter resolveFilter(String query, SearchFilter explicitFilter) {
+        if (explicitFilter != null && explicitFilter.hasConstraints()) {
+            return explicitFilter;
+        }
+        if (!extractFilters) {
+            return null;
+        }
+        SearchFilter extracted = vectorStoreService.extractFilter(query);
+        if (extracted != null) {
+            log.info("Extracted search filter from query: {}", extracted);
+        }
+        return extracted;
+    }
+
+    /**
+     * @param structured ask for a {@code submit_answer} call instead of
+     *                   labelled sections
+     */
+    private String buildPrompt(String query, String context, boolean structured) {
+        String format = structured ? """
+            Respond by calling submit_answer.
+            """ : """
+            Format your response as:
+            RECOMMENDATION: [Plan name]
+            EXPLANATION: [Why it's best]
+            MONTHLY COST: [Estimate]
+            TRADEOFFS: [Key considerations]
+            """;
         return String.format("""
             You are BillBuddy, an expert assistant helping customers choose the best utility plans.
             
@@ -90,42 +358,88 @@ public class RAGService {
             5. Be specific and cite plan names
             6. If information is unclear, ask clarifying questions
             
-            Format your response as:
-            RECOMMENDATION: [Plan name]
-            EXPLANATION: [Why it's best]
-            MONTHLY COST: [Estimate]
-            TRADEOFFS: [Key considerations]
-            """, query, context);
+            %s""", query, context, format);
+    }
+
+    private Completion callCompletion(CompletionRequest request) {
+        try {
+            return completionUpstream.call(() -> completionProvider.complete(request));
+
+        } catch (UpstreamUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error calling {} completions", completionProvider.name(), e);
+            throw new RuntimeException("Failed to generate response", e);
+        }
     }
 
-    private String callOpenAI(String prompt) {
+    private Completion callCompletionStreaming(CompletionRequest request, Consumer<String> onToken) {
+        boolean[] started = {false};
         try {
-            ChatCompletionRequest request = ChatCompletionRequest.builder()
-                    .model("gpt-4")
-                    .messages(List.of(
-                            new ChatMessage("system", "You are a helpful utility plan comparison assistant."),
-                            new ChatMessage("user", prompt)
-                    ))
-                    .temperature(0.7)
-                    .maxTokens(800)
-                    .build();
-
-            var response = openAiService.createChatCompletion(request);
-            return response.getChoices().get(0).getMessage().getContent();
+            // Not retried: tokens already handed to the caller cannot be taken back
+            return completionUpstream.call(() -> completionProvider.stream(request, delta -> {
+                started[0] = true;
+                onToken.accept(delta);
+            }), false);
 
+        } catch (UpstreamUnavailableException e) {
+            if (started[0]) {
+                // Part of the answer is already out; a fallback would be appended to it
+                throw new RuntimeException("Failed to generate response", e);
+            }
+            throw e;
         } catch (Exception e) {
-            log.error("Error calling OpenAI", e);
+            log.error("Error streaming {} completions", completionProvider.name(), e);
             throw new RuntimeException("Failed to generate response", e);
         }
     }
 
-    private List<Citation> buildCitations(List<Map.Entry<Plan, Double>> plans) {
+    /**
+     * Retrieval-only answer in the usual sections, for when completions are
+     * unavailable: the best-ranked plan as the recommendation and the rest,
+     * with prices, as alternatives.
+     */
+    private String fallbackAnswer(List<SearchHit> plans, List<Citation> citations) {
+        if (citations.isEmpty()) {
+            return """
+                RECOMMENDATION: No matching plans found
+                EXPLANATION: Personalised recommendations are temporarily unavailable and no plans matched your question.
+                MONTHLY COST: Not available
+                TRADEOFFS: Try rephrasing or relaxing your constraints.
+                """;
+        }
+
+        Citation best = citations.get(0);
+        StringBuilder alternatives = new StringBuilder();
+        for (int i = 1; i < citations.size(); i++) {
+            Citation citation = citations.get(i);
+            alternatives.append(String.format("%n%d. %s %s (%s, relevance %.2f)", i + 1,
+                    citation.getProvider(), citation.getPlanName(),
+                    price(plans.get(i).plan().getMonthlyPrice()), citation.getRelevanceScore()));
+        }
+        return String.format("""
+                RECOMMENDATION: %s %s
+                EXPLANATION: Personalised recommendations are temporarily unavailable, so this is the plan that best matches your question by relevance (%.2f). %s
+                MONTHLY COST: %s
+                TRADEOFFS: Ranked by relevance only, not by your full needs. Other matching plans:%s
+                """, best.getProvider(), best.getPlanName(), best.getRelevanceScore(),
+                best.getRelevantText() != null ? best.getRelevantText() : "",
+                price(plans.get(0).plan().getMonthlyPrice()),
+                alternatives.length() > 0 ? alternatives : " none");
+    }
+
+    private static String price(Double monthlyPrice) {
+        return monthlyPrice != null ? String.format("$%.2f/month", monthlyPrice) : "price not listed";
+    }
+
+    private List<Citation> buildCitations(List<SearchHit> plans) {
         return plans.stream()
-                .map(entry -> Citation.builder()
-                        .provider(entry.getKey().getProvider())
-                        .planName(entry.getKey().getName())
-                        .relevantText(entry.getKey().getDescription())
-                        .relevanceScore(entry.getValue())
+                .map(hit -> Citation.builder()
+                        .provider(hit.plan().getProvider())
+                        .planName(hit.plan().getName())
+                        // The best-matching chunk when retrieval was chunk-level
+                        .relevantText(hit.passage() != null ? hit.passage() : hit.plan().getDescription())
+                        .relevanceScore(hit.score())
                         .build())
                 .collect(Collectors.toList());
     }
@@ -0,0 +1,23 @@
+// RetrievalMode.java
+package com.billbuddy.service;
+
+import java.util.Locale;
+
+/**
+ * How RAG retrieval ranks plans: by embedding similarity, by BM25 over plan
+ * text, or both fused by reciprocal rank. Lexical needs no embedding call.
+ */
+public enum RetrievalMode {
+    VECTOR,
+    LEXICAL,
+    HYBRID;
+
+    public static RetrievalMode fromName(String name) {
+        return switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "vector" -> VECTOR;
+            case "lexical", "bm25" -> LEXICAL;
+            case "hybrid" -> HYBRID;
+            default -> throw new IllegalArgumentException("Unknown billbuddy.retrieval.mode: " + name);
+        };
+    }
+}
@@ -0,0 +1,293 @@
+// UpstreamGuard.java
+package com.billbuddy.service;
+
+import com.theokanning.openai.OpenAiHttpException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Every call to one upstream goes through here: the {@link UpstreamLimiter},
+ * a {@link CircuitBreaker}, bounded retries with jittered exponential backoff
+ * inside an overall deadline, and optionally a hedged second attempt when the
+ * first is slower than {@code hedgeDelay}. Each attempt, hedge included, holds
+ * its own limiter permit for as long as it runs, so hedging never takes more
+ * than {@code max-concurrency} calls in flight. Only transient failures (I/O errors,
+ * timeouts, HTTP 429 and 5xx) are retried and count against the breaker; the
+ * per-attempt timeout is the HTTP client's call timeout.
+ */
+@Slf4j
+public class UpstreamGuard {
+
+    private final UpstreamLimiter limiter;
+    private final CircuitBreaker breaker;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long deadlineMs;
+    private final long hedgeDelayMs;
+    private final ExecutorService hedgeExecutor;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong hedgesSkipped = new AtomicLong();
+
+    /**
+     * Limiter only: one attempt, no breaker, no hedging.
+     */
+    public UpstreamGuard(UpstreamLimiter limiter) {
+        this(limiter, null, 1, Duration.ZERO, Duration.ZERO, Duration.ZERO);
+    }
+
+    /**
+     * @param breaker    may be null to never open
+     * @param deadline   overall budget across attempts; zero for none
+     * @param hedgeDelay start a second attempt when the first takes longer; zero disables hedging
+     */
+    public UpstreamGuard(UpstreamLimiter limiter, CircuitBreaker breaker, int maxAttempts,
+                         Duration initialBackoff, Duration deadline, Duration hedgeDelay) {
+        this.limiter = limiter;
+        this.breaker = breaker;
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.initialBackoffMs = Math.max(initialBackoff.toMillis(), 0);
+        this.deadlineMs = deadline.toMillis();
+        this.hedgeDelayMs = hedgeDelay.toMillis();
+        if (hedgeDelayMs > 0) {
+            // Enough threads for every permit's primary and hedge; past that, primaries run on the caller
+            AtomicInteger threadCount = new AtomicInteger();
+            this.hedgeExecutor = new ThreadPoolExecutor(0, Math.max(2 * limiter.getMaxConcurrent(), 2),
+                    60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable,
+                                "billbuddy-" + limiter.getName() + "-hedge-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+        } else {
+            this.hedgeExecutor = null;
+        }
+    }
+
+    public <T> T call(Supplier<T> call) {
+        return call(call, true);
+    }
+
+    /**
+     * @param idempotent false for calls that must not be repeated, such as a
+     *                   stream whose tokens may already have been delivered;
+     *                   they get one attempt and no hedge
+     */
+    public <T> T call(Supplier<T> call, boolean idempotent) {
+        calls.incrementAndGet();
+        long deadline = deadlineMs > 0 ? System.currentTimeMillis() + deadlineMs : Long.MAX_VALUE;
+        long backoff = initialBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            if (breaker != null) {
+                breaker.acquire();
+            }
+            try {
+                T result = idempotent && hedgeExecutor != null ? hedged(call) : limiter.call(call);
+                if (breaker != null) {
+                    breaker.onSuccess();
+                }
+                return result;
+            } catch (RuntimeException e) {
+                if (!isTransient(e)) {
+                    if (breaker != null) {
+                        breaker.onIgnored();
+                    }
+                    throw e;
+                }
+                if (breaker != null) {
+                    breaker.onFailure();
+                }
+
+                // Exponential backoff with full jitter, never past the deadline
+                long sleep = ThreadLocalRandom.current().nextLong(backoff + 1);
+                if (!idempotent || attempt >= maxAttempts || System.currentTimeMillis() + sleep >= deadline) {
+                    failures.incrementAndGet();
+                    throw new UpstreamUnavailableException(limiter.getName(),
+                            attempt + " attempt(s) failed: " + e.getMessage(), e);
+                }
+                log.warn("Upstream '{}' attempt {}/{} failed ({}), retrying in {}ms",
+                        limiter.getName(), attempt, maxAttempts, e.getMessage(), sleep);
+                retries.incrementAndGet();
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new UpstreamUnavailableException(limiter.getName(), "interrupted during retry backoff", e);
+                }
+                backoff *= 2;
+            }
+        }
+    }
+
+    public CircuitBreaker.State state() {
+        return breaker != null ? breaker.state() : CircuitBreaker.State.CLOSED;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", limiter.inFlight());
+        stats.put("calls", calls.get());
+        stats.put("retries", retries.get());
+        stats.put("failures", failures.get());
+        stats.put("hedged", hedged.get());
+        stats.put("hedgeWins", hedgeWins.get());
+        stats.put("hedgesSkipped", hedgesSkipped.get());
+        if (breaker != null) {
+            stats.put("circuit", breaker.stats());
+        }
+        return stats;
+    }
+
+    public void shutdown() {
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the call and, if it has not finished within the hedge delay, a
+     * second copy; the first success wins. The loser is not interrupted (the
+     * HTTP call timeout bounds it) and its result is discarded. Each attempt
+     * takes its own limiter permit and keeps it until it finishes; the hedge
+     * is skipped when no permit is free at once, or no hedge thread is.
+     */
+    private <T> T hedged(Supplier<T> call) {
+        CompletableFuture<T> primary;
+        try {
+            primary = CompletableFuture.supplyAsync(() -> limiter.call(call), hedgeExecutor);
+        } catch (RejectedExecutionException busy) {
+            return limiter.call(call);
+        }
+        try {
+            return primary.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException slow) {
+            // Hedge below, if there is room
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpstreamUnavailableException(limiter.getName(), "interrupted waiting for a response");
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+
+        CompletableFuture<T> hedge = startHedge(call);
+        if (hedge == null) {
+            hedgesSkipped.incrementAndGet();
+            return await(primary);
+        }
+        hedged.incrementAndGet();
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<T>> wonBy = new AtomicReference<>();
+        AtomicInteger failed = new AtomicInteger();
+        primary.whenComplete((value, error) -> settle(primary, value, error, winner, wonBy, failed));
+        hedge.whenComplete((value, error) -> settle(hedge, value, error, winner, wonBy, failed));
+        T value = await(winner);
+        if (wonBy.get() == hedge) {
+            hedgeWins.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * The hedge attempt holding a permit of its own, or null when none is free.
+     */
+    private <T> CompletableFuture<T> startHedge(Supplier<T> call) {
+        if (!limiter.tryAcquire()) {
+            return null;
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return call.get();
+                } finally {
+                    limiter.release();
+                }
+            }, hedgeExecutor);
+        } catch (RejectedExecutionException busy) {
+            limiter.release();
+            return null;
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpstreamUnavailableException(limiter.getName(), "interrupted waiting for a response");
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * Completes {@code winner} with the first success, or with the error once
+     * both attempts failed.
+     */
+    private static <T> void settle(CompletableFuture<T> attempt, T value, Throwable error,
+                                   CompletableFuture<T> winner, AtomicReference<CompletableFuture<T>> wonBy,
+                                   AtomicInteger failed) {
+        if (error == null) {
+            if (wonBy.compareAndSet(null, attempt)) {
+                winner.complete(value);
+            }
+        } else if (failed.incrementAndGet() == 2) {
+            winner.completeExceptionally(error);
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (error instanceof Error fatal) {
+            throw fatal;
+        }
+        return new CompletionException(error);
+    }
+
+    /**
+     * I/O failures (including call timeouts) and HTTP 429/5xx are worth
+     * retrying; other HTTP errors are the request's fault and would fail again.
+     */
+    static boolean isTransient(Throwable error) {
+        if (error instanceof UpstreamLimiter.UpstreamSaturatedException) {
+            return false;
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OpenAiHttpException http) {
+                return http.statusCode == 429 || http.statusCode >= 500;
+            }
+            if (cause instanceof IOException || cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
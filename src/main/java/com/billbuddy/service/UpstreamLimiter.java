@@ -0,0 +1,80 @@
+// UpstreamLimiter.java
+package com.billbuddy.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caps concurrent calls to one upstream (embeddings, completions). Callers wait
+ * at most {@code acquireTimeout} for a permit and then fail fast, so a slow
+ * upstream cannot absorb every request thread.
+ */
+@Slf4j
+public class UpstreamLimiter {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final long acquireTimeoutMs;
+
+    public UpstreamLimiter(String name, int maxConcurrent, Duration acquireTimeout) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.acquireTimeoutMs = acquireTimeout.toMillis();
+    }
+
+    public <T> T call(Supplier<T> call) {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpstreamSaturatedException(name, "interrupted while waiting for a permit");
+        }
+        if (!acquired) {
+            log.warn("Upstream '{}' saturated ({} in flight), rejecting call", name, maxConcurrent);
+            throw new UpstreamSaturatedException(name, "no permit within " + acquireTimeoutMs + "ms");
+        }
+
+        try {
+            return call.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Takes a permit only if one is free right now, for optional extra calls
+     * such as hedges; pair with {@link #release}.
+     */
+    boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int inFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public static class UpstreamSaturatedException extends UpstreamUnavailableException {
+        public UpstreamSaturatedException(String upstream, String detail) {
+            super(upstream, detail);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+// UpstreamUnavailableException.java
+package com.billbuddy.service;
+
+/**
+ * An upstream could not serve this call: no local permit, circuit open, or
+ * still failing after retries. Callers may degrade instead of failing.
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+
+    public UpstreamUnavailableException(String upstream, String detail) {
+        super("Upstream '" + upstream + "' unavailable: " + detail);
+    }
+
+    public UpstreamUnavailableException(String upstream, String detail, Throwable cause) {
+        super("Upstream '" + upstream + "' unavailable: " + detail, cause);
+    }
+}
@@ -1,100 +1,728 @@
 // VectorStoreService.java
 package com.billbuddy.service;
 
+import com.billbuddy.config.EmbeddingStorageMigrator;
+import com.billbuddy.index.LexicalIndex;
+import com.billbuddy.index.PlanCatalog;
+import com.billbuddy.index.RankFusion;
+import com.billbuddy.index.SearchHit;
+import com.billbuddy.index.VectorIndex;
+import com.billbuddy.index.VectorSnapshot;
 import com.billbuddy.model.Plan;
+import com.billbuddy.model.PlanChunk;
+import com.billbuddy.model.SearchFilter;
+import com.billbuddy.repository.PlanChunkRepository;
 import com.billbuddy.repository.PlanRepository;
 import com.billbuddy.util.DocumentChunker;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.billbuddy.util.EmbeddingCodec;
+import com.billbuddy.util.QueryFilterExtractor;
+import com.billbuddy.util.TokenEstimator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
 public class VectorStoreService {
 
     private final PlanRepository planRepository;
+    private final PlanChunkRepository planChunkRepository;
     private final EmbeddingService embeddingService;
     private final DocumentChunker documentChunker;
-    private final ObjectMapper objectMapper;
+    private final VectorIndex vectorIndex;
+    private final LexicalIndex lexicalIndex;
+    private final PlanCatalog planCatalog;
+    private final EmbeddingStorageMigrator embeddingStorageMigrator;
+    private final EmbeddingCodec.Encoding storageEncoding;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int indexingBatchSize;
+    private final int indexingConcurrency;
+    private final ExecutorService indexingExecutor;
+    private final int indexingMaxAttempts;
+    private final long indexingInitialBackoffMillis;
+    private final int fusionK;
+    private final int fusionDepth;
+    private final Path snapshotPath;
+    private volatile VectorSnapshot snapshot;
+    // Set when the vector index holds vectors the snapshot file lacks
+    private volatile boolean snapshotDirty;
+
+    /**
+     * A plan whose content changed since it was last embedded, with its chunks
+     * and their fingerprint as computed when it was staged, so embedding does
+     * not chunk it again.
+     */
+    public record StagedPlan(Plan plan, List<String> chunks, String fingerprint) {
+    }
 
     public VectorStoreService(PlanRepository planRepository,
+                              PlanChunkRepository planChunkRepository,
                               EmbeddingService embeddingService,
-                              DocumentChunker documentChunker) {
+                              DocumentChunker documentChunker,
+                              VectorIndex vectorIndex,
+                              LexicalIndex lexicalIndex,
+                              PlanCatalog planCatalog,
+                              EmbeddingStorageMigrator embeddingStorageMigrator,
+                              @Value("${billbuddy.embedding.storage-format:float32}") String storageFormat,
+                              TransactionTemplate transactionTemplate,
+                              ApplicationEventPublisher eventPublisher,
+                              @Value("${billbuddy.indexing.batch-size:50}") int indexingBatchSize,
+                              @Value("${billbuddy.indexing.concurrency:4}") int indexingConcurrency,
+                              @Qualifier("indexingExecutor") ExecutorService indexingExecutor,
+                              @Value("${billbuddy.indexing.max-attempts:4}") int indexingMaxAttempts,
+                              @Value("${billbuddy.indexing.initial-backoff:PT0.5S}") Duration indexingInitialBackoff,
+                              @Value("${billbuddy.retrieval.rrf-k:60}") int fusionK,
+                              @Value("${billbuddy.retrieval.fusion-depth:20}") int fusionDepth,
+                              @Value("${billbuddy.snapshot.file:billbuddy-index.snap}") String snapshotFile) {
         this.planRepository = planRepository;
+        this.planChunkRepository = planChunkRepository;
         this.embeddingService = embeddingService;
         this.documentChunker = documentChunker;
-        this.objectMapper = new ObjectMapper();
+        this.vectorIndex = vectorIndex;
+        this.lexicalIndex = lexicalIndex;
+        this.planCatalog = planCatalog;
+        this.embeddingStorageMigrator = embeddingStorageMigrator;
+        this.storageEncoding = EmbeddingCodec.Encoding.fromName(storageFormat);
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.indexingBatchSize = Math.max(indexingBatchSize, 1);
+        this.indexingConcurrency = Math.max(indexingConcurrency, 1);
+        this.indexingExecutor = indexingExecutor;
+        this.indexingMaxAttempts = Math.max(indexingMaxAttempts, 1);
+        this.indexingInitialBackoffMillis = indexingInitialBackoff.toMillis();
+        this.fusionK = Math.max(fusionK, 1);
+        this.fusionDepth = Math.max(fusionDepth, 1);
+        this.snapshotPath = snapshotFile == null || snapshotFile.isBlank() ? null : Path.of(snapshotFile.trim());
+    }
+
+    @PostConstruct
+    public void loadIndex() {
+        long startTime = System.currentTimeMillis();
+        embeddingStorageMigrator.migrateLegacyEmbeddings();
+        vectorIndex.clear();
+        lexicalIndex.clear();
+
+        snapshot = openSnapshot();
+
+        // The indexes get the catalog's detached copies. Vectors (and the ANN graph)
+        // come from the mapped snapshot when it has the plan's fingerprint, so stored
+        // chunk embeddings are only decoded for plans it lacks
+        List<Plan> stored = planRepository.findAll();
+        List<Plan> plans = planCatalog.replaceAll(stored);
+        for (Plan plan : plans) {
+            lexicalIndex.upsert(plan, planCatalog.entry(plan).searchableText());
+        }
+        List<Plan> fromChunks = plans;
+        boolean graphRebuilt = false;
+        if (snapshot != null) {
+            try {
+                VectorIndex.Restore restore = vectorIndex.restore(snapshot, plans);
+                fromChunks = restore.remaining();
+                graphRebuilt = restore.graphRebuilt();
+            } catch (RuntimeException e) {
+                log.warn("Restoring the vector index from {} failed; loading stored embeddings instead",
+                        snapshotPath, e);
+                vectorIndex.clear();
+            }
+        }
+        int restored = vectorIndex.size();
+
+        Map<Long, byte[]> legacyVectors = new HashMap<>();
+        if (!fromChunks.isEmpty()) {
+            Set<Long> pending = new HashSet<>();
+            fromChunks.forEach(plan -> pending.add(plan.getId()));
+            for (Plan plan : stored) {
+                if (plan.getEmbeddingVector() != null && pending.contains(plan.getId())) {
+                    legacyVectors.put(plan.getId(), plan.getEmbeddingVector());
+                }
+            }
+        }
+
+        if (!fromChunks.isEmpty()) {
+            Map<Long, List<PlanChunk>> chunksByPlan = new HashMap<>();
+            for (PlanChunk chunk : planChunkRepository.findAllByOrderByPlanIdAscChunkIndexAsc()) {
+                chunksByPlan.computeIfAbsent(chunk.getPlanId(), id -> new ArrayList<>()).add(chunk);
+            }
+            for (Plan plan : fromChunks) {
+                try {
+                    List<PlanChunk> chunks = chunksByPlan.get(plan.getId());
+                    if (chunks != null) {
+                        List<float[]> vectors = new ArrayList<>(chunks.size());
+                        List<String> texts = new ArrayList<>(chunks.size());
+                        for (PlanChunk chunk : chunks) {
+                            vectors.add(EmbeddingCodec.decode(chunk.getEmbeddingVector()));
+                            texts.add(chunk.getText());
+                        }
+                        vectorIndex.upsert(plan, vectors, texts);
+                    } else if (legacyVectors.containsKey(plan.getId())) {
+                        // Plan indexed before chunking: one whole-plan vector
+                        vectorIndex.upsert(plan, EmbeddingCodec.decode(legacyVectors.get(plan.getId())));
+                    }
+                } catch (Exception e) {
+                    log.warn("Error loading embedding for plan {}", plan.getId(), e);
+                }
+            }
+        }
+        // Rewrite when the index holds vectors the snapshot lacks, or a graph it lacks
+        snapshotDirty = vectorIndex.size() > restored || graphRebuilt;
+
+        log.info("Loaded {} plans ({} chunks, {} from snapshot) into vector index and {} into lexical index in {}ms",
+                vectorIndex.size(), vectorIndex.chunkCount(), restored, lexicalIndex.size(),
+                System.currentTimeMillis() - startTime);
+    }
+
+    @PreDestroy
+    public void close() {
+        writeSnapshot();
     }
 
-    @Transactional
+    /**
+     * Indexes one plan synchronously; re-embeds only when its content changed.
+     */
     public void indexPlan(Plan plan) {
         log.info("Indexing plan: {} - {}", plan.getProvider(), plan.getName());
+        List<StagedPlan> changed = stagePlans(List.of(plan));
+        if (changed.isEmpty()) {
+            log.info("Plan ID {} unchanged, kept its embeddings", plan.getId());
+            return;
+        }
+        if (embedPlans(changed) == 0) {
+            throw new RuntimeException("Failed to index plan " + plan.getId());
+        }
+    }
+
+    /**
+     * Synchronous bulk indexing: stages every plan, then embeds the changed ones.
+     * Returns the number of plans (re-)embedded.
+     */
+    public int indexPlans(List<Plan> plans) {
+        List<StagedPlan> changed = stagePlans(plans);
+        log.info("{} of {} plans changed since they were last embedded", changed.size(), plans.size());
+        int embedded = embedPlans(changed);
+        writeSnapshot();
+        return embedded;
+    }
+
+    /**
+     * Saves plans and makes them searchable lexically without any remote call.
+     * Incoming plans without an id are matched to stored rows by provider and
+     * name. Plans whose content fingerprint still equals the stored one keep
+     * their vectors (metadata is refreshed in place); the rest are returned so
+     * the caller can {@link #embedPlans embed} them, until then they are
+     * served from the lexical index and any previously stored vectors.
+     */
+    public List<StagedPlan> stagePlans(List<Plan> plans) {
+        if (plans.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Plan> storedByKey = new HashMap<>();
+        Set<String> names = new HashSet<>();
+        List<Long> ids = new ArrayList<>();
+        for (Plan plan : plans) {
+            if (plan.getId() != null) {
+                ids.add(plan.getId());
+            } else if (plan.getName() != null) {
+                names.add(plan.getName());
+            }
+        }
+        planRepository.findAllById(ids).forEach(stored -> storedByKey.put("#" + stored.getId(), stored));
+        if (!names.isEmpty()) {
+            planRepository.findByNameIn(names).forEach(stored -> storedByKey.put(naturalKey(stored), stored));
+        }
+
+        List<Plan> toSave = new ArrayList<>();
+        List<Plan> untouched = new ArrayList<>();
+        for (Plan plan : plans) {
+            Plan stored = storedByKey.get(plan.getId() != null ? "#" + plan.getId() : naturalKey(plan));
+            if (stored != null) {
+                // Columns owned by indexing, not by the caller
+                plan.setId(stored.getId());
+                plan.setContentHash(stored.getContentHash());
+                plan.setEmbeddingVector(stored.getEmbeddingVector());
+                plan.setEmbedding(stored.getEmbedding());
+            }
+            if (stored != null && stored.equals(plan)) {
+                untouched.add(stored);
+            } else {
+                toSave.add(plan);
+            }
+        }
 
-        // Create searchable text
-        String fullText = buildSearchableText(plan);
+        List<Plan> saved = toSave.isEmpty() ? List.of()
+                : transactionTemplate.execute(status -> planRepository.saveAll(toSave));
 
-        // Generate embedding
-        List<Double> embedding = embeddingService.generateEmbedding(fullText);
+        List<StagedPlan> changed = new ArrayList<>();
+        List<Long> refreshed = new ArrayList<>();
+        for (Plan plan : planCatalog.publish(saved)) {
+            lexicalIndex.upsert(plan, planCatalog.entry(plan).searchableText());
+            StagedPlan staged = stage(plan);
+            if (!staged.fingerprint().equals(plan.getContentHash())) {
+                changed.add(staged);
+            } else if (vectorIndex.refresh(plan)) {
+                refreshed.add(plan.getId());
+            }
+        }
+        for (Plan plan : untouched) {
+            // Same row, but the chunking or embedding model may have changed
+            StagedPlan staged = stage(plan);
+            if (!staged.fingerprint().equals(plan.getContentHash())) {
+                changed.add(staged);
+            }
+        }
+        if (!refreshed.isEmpty()) {
+            eventPublisher.publishEvent(new PlanIndexedEvent(refreshed));
+        }
+        return restoreFromSnapshot(changed);
+    }
 
-        // Store embedding as JSON
+    /**
+     * Writes the vector index to the snapshot file if it changed since the last
+     * write, then maps the new file in place of the old one.
+     */
+    public synchronized void writeSnapshot() {
+        if (snapshotPath == null || !snapshotDirty) {
+            return;
+        }
+        snapshotDirty = false;
+        long startTime = System.currentTimeMillis();
         try {
-            plan.setEmbedding(objectMapper.writeValueAsString(embedding));
-            planRepository.save(plan);
-            log.info("Successfully indexed plan ID: {}", plan.getId());
-        } catch (Exception e) {
-            log.error("Error indexing plan", e);
-            throw new RuntimeException("Failed to index plan", e);
+            int plans = VectorSnapshot.write(vectorIndex, snapshotPath);
+            snapshot = VectorSnapshot.open(snapshotPath);
+            log.info("Wrote index snapshot of {} plans to {} in {}ms",
+                    plans, snapshotPath, System.currentTimeMillis() - startTime);
+        } catch (IOException | RuntimeException e) {
+            snapshotDirty = true;
+            log.warn("Failed to write index snapshot {}", snapshotPath, e);
         }
     }
 
-    public List<Map.Entry<Plan, Double>> searchSimilar(String query, int topK) {
-        log.info("Searching for similar plans to query: {}", query);
+    private VectorSnapshot openSnapshot() {
+        if (snapshotPath == null) {
+            return null;
+        }
+        try {
+            VectorSnapshot opened = VectorSnapshot.open(snapshotPath);
+            if (opened != null) {
+                log.info("Mapped index snapshot {} ({} plans, {} chunks)",
+                        snapshotPath, opened.size(), opened.rowCount());
+            }
+            return opened;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unusable index snapshot {}: {}", snapshotPath, e.getMessage());
+            return null;
+        }
+    }
 
-        // Generate query embedding
-        List<Double> queryEmbedding = embeddingService.generateEmbedding(query);
+    /**
+     * Changed plans whose new fingerprint is already in the snapshot take their
+     * vectors from it (stored as chunks, no embedding call); returns the rest.
+     */
+    private List<StagedPlan> restoreFromSnapshot(List<StagedPlan> plans) {
+        VectorSnapshot current = snapshot;
+        if (current == null || plans.isEmpty()) {
+            return plans;
+        }
+        List<StagedPlan> restorable = new ArrayList<>();
+        List<float[]> vectors = new ArrayList<>();
+        List<StagedPlan> remaining = new ArrayList<>();
+        for (StagedPlan staged : plans) {
+            List<float[]> planVectors = current.vectors(staged.fingerprint());
+            if (planVectors == null || planVectors.size() != staged.chunks().size()
+                    || planVectors.get(0).length != current.dimension()) {
+                remaining.add(staged);
+                continue;
+            }
+            restorable.add(staged);
+            vectors.addAll(planVectors);
+        }
+        if (restorable.isEmpty()) {
+            return remaining;
+        }
+
+        try {
+            int restored = persistBatch(restorable, vectors, current);
+            log.info("Restored {} of {} changed plans from the index snapshot", restored, plans.size());
+            return remaining;
+        } catch (RuntimeException e) {
+            log.warn("Restoring {} plans from the index snapshot failed; embedding them instead", restorable.size(), e);
+            return plans;
+        }
+    }
+
+    /**
+     * Chunks and embeds staged plans in batches on a bounded worker pool with
+     * retries, then stores each batch's chunk vectors in one transaction
+     * (JDBC-batched) and adds them to the vector index. A plan whose stored
+     * content changed again in the meantime is skipped; its newer version is
+     * embedded separately. Batches whose embeddings still fail after retries
+     * stay lexical-only. Returns the number of plans embedded.
+     */
+    public int embedPlans(List<StagedPlan> plans) {
+        if (plans.isEmpty()) {
+            return 0;
+        }
+        long startTime = System.currentTimeMillis();
+        List<List<StagedPlan>> batches = new ArrayList<>();
+        for (int from = 0; from < plans.size(); from += indexingBatchSize) {
+            batches.add(plans.subList(from, Math.min(from + indexingBatchSize, plans.size())));
+        }
+        log.info("Embedding {} plans (batch size {}, concurrency {})",
+                plans.size(), indexingBatchSize, Math.min(indexingConcurrency, batches.size()));
+
+        List<Callable<List<float[]>>> calls = new ArrayList<>(batches.size());
+        for (List<StagedPlan> batch : batches) {
+            List<String> texts = new ArrayList<>();
+            for (StagedPlan staged : batch) {
+                texts.addAll(embeddingInputs(staged.plan(), staged.chunks()));
+            }
+            calls.add(() -> withRetries(() -> embeddingService.generateEmbeddings(texts), "embed plan batch"));
+        }
 
-        // Calculate similarity with all plans
-        List<Plan> allPlans = planRepository.findAll();
-        Map<Plan, Double> similarities = new HashMap<>();
+        // A single batch (the background queue's case) runs on the calling thread
+        boolean parallel = batches.size() > 1;
+        List<Future<List<float[]>>> embeddings = new ArrayList<>(batches.size());
+        int indexed = 0;
+        try {
+            for (Callable<List<float[]>> call : calls) {
+                if (parallel) {
+                    embeddings.add(indexingExecutor.submit(call));
+                } else {
+                    FutureTask<List<float[]>> task = new FutureTask<>(call);
+                    task.run();
+                    embeddings.add(task);
+                }
+            }
 
-        for (Plan plan : allPlans) {
-            if (plan.getEmbedding() != null) {
+            // Persist in submission order as each batch's embeddings arrive
+            for (int i = 0; i < batches.size(); i++) {
                 try {
-                    List<Double> planEmbedding = objectMapper.readValue(
-                            plan.getEmbedding(),
-                            objectMapper.getTypeFactory().constructCollectionType(List.class, Double.class)
-                    );
+                    List<float[]> batchEmbeddings = embeddings.get(i).get();
+                    indexed += persistBatch(batches.get(i), batchEmbeddings, null);
+                } catch (ExecutionException e) {
+                    log.error("Embedding failed for batch of {} plans after {} attempts; serving them lexically only",
+                            batches.get(i).size(), indexingMaxAttempts, e.getCause());
+                } catch (RuntimeException e) {
+                    log.error("Failed to persist batch of {} plans", batches.get(i).size(), e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Bulk indexing interrupted", e);
+        } finally {
+            // Only batches left over by an interrupt are still pending
+            for (Future<List<float[]>> embedding : embeddings) {
+                embedding.cancel(true);
+            }
+        }
 
-                    double similarity = embeddingService.cosineSimilarity(queryEmbedding, planEmbedding);
-                    similarities.put(plan, similarity);
+        if (indexed > 0) {
+            snapshotDirty = true;
+        }
+        long elapsed = Math.max(System.currentTimeMillis() - startTime, 1);
+        log.info("Embedded {}/{} plans in {}ms ({} plans/sec)",
+                indexed, plans.size(), elapsed, String.format("%.1f", indexed * 1000.0 / elapsed));
+        return indexed;
+    }
 
-                } catch (Exception e) {
-                    log.warn("Error processing embedding for plan {}", plan.getId(), e);
+    /**
+     * @param embeddings chunk vectors for the whole batch in plan then chunk order
+     * @param source     the snapshot the vectors came from, or null; into an empty
+     *                   vector index (first indexing on a fresh database) the batch
+     *                   is then restored in bulk, graph included
+     */
+    private int persistBatch(List<StagedPlan> batch, List<float[]> embeddings, VectorSnapshot source) {
+        List<List<float[]>> vectors = new ArrayList<>(batch.size());
+        int offset = 0;
+        for (StagedPlan staged : batch) {
+            vectors.add(embeddings.subList(offset, offset + staged.chunks().size()));
+            offset += staged.chunks().size();
+        }
+
+        List<Plan> saved = new ArrayList<>(batch.size());
+        List<List<String>> savedChunks = new ArrayList<>(batch.size());
+        List<List<float[]>> savedVectors = new ArrayList<>(batch.size());
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Plan> current = new HashMap<>();
+            planRepository.findAllById(batch.stream().map(staged -> staged.plan().getId()).toList())
+                    .forEach(plan -> current.put(plan.getId(), plan));
+            for (int i = 0; i < batch.size(); i++) {
+                StagedPlan staged = batch.get(i);
+                Plan plan = current.get(staged.plan().getId());
+                String hash = staged.fingerprint();
+                if (plan == null || !hash.equals(fingerprint(plan))) {
+                    continue;
+                }
+                plan.setContentHash(hash);
+                plan.setEmbeddingVector(null);
+                saved.add(plan);
+                savedChunks.add(staged.chunks());
+                savedVectors.add(vectors.get(i));
+            }
+            planRepository.saveAll(saved);
+            saveChunks(saved, savedChunks, savedVectors);
+        });
+
+        // New catalog copies carry the new fingerprint; both indexes switch to them
+        List<Plan> indexed = planCatalog.publish(saved);
+        Set<Plan> upserts = Collections.newSetFromMap(new IdentityHashMap<>());
+        upserts.addAll(indexed);
+        if (source != null && vectorIndex.chunkCount() == 0) {
+            try {
+                VectorIndex.Restore restore = vectorIndex.restore(source, indexed);
+                upserts.retainAll(restore.remaining());
+                if (restore.graphRebuilt()) {
+                    snapshotDirty = true;
+                }
+            } catch (IllegalStateException e) {
+                // Another batch reached the index first; upsert as usual
+            }
+        }
+        List<Long> planIds = new ArrayList<>(indexed.size());
+        for (int i = 0; i < indexed.size(); i++) {
+            Plan plan = indexed.get(i);
+            if (upserts.contains(plan)) {
+                vectorIndex.upsert(plan, savedVectors.get(i), savedChunks.get(i));
+            }
+            lexicalIndex.upsert(plan, planCatalog.entry(plan).searchableText());
+            planIds.add(plan.getId());
+        }
+        if (saved.size() < batch.size()) {
+            log.info("Skipped {} plans that changed again while embedding", batch.size() - saved.size());
+        }
+        eventPublisher.publishEvent(new PlanIndexedEvent(planIds));
+        return saved.size();
+    }
+
+    /**
+     * Replaces the stored chunks of {@code plans}; must run inside a transaction.
+     */
+    private void saveChunks(List<Plan> plans, List<List<String>> chunks, List<List<float[]>> vectors) {
+        if (plans.isEmpty()) {
+            return;
+        }
+        planChunkRepository.deleteByPlanIdIn(plans.stream().map(Plan::getId).toList());
+
+        List<PlanChunk> rows = new ArrayList<>();
+        for (int i = 0; i < plans.size(); i++) {
+            List<String> planChunks = chunks.get(i);
+            for (int c = 0; c < planChunks.size(); c++) {
+                PlanChunk chunk = new PlanChunk();
+                chunk.setPlanId(plans.get(i).getId());
+                chunk.setChunkIndex(c);
+                chunk.setText(planChunks.get(c));
+                chunk.setTokenCount(TokenEstimator.estimate(planChunks.get(c)));
+                chunk.setEmbeddingVector(EmbeddingCodec.encode(vectors.get(i).get(c), storageEncoding));
+                rows.add(chunk);
+            }
+        }
+        planChunkRepository.saveAll(rows);
+    }
+
+    private <T> T withRetries(Supplier<T> call, String description) {
+        long backoff = indexingInitialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                if (attempt >= indexingMaxAttempts) {
+                    throw e;
                 }
+                // Exponential backoff with full jitter
+                long sleep = ThreadLocalRandom.current().nextLong(backoff + 1);
+                log.warn("Attempt {}/{} to {} failed, retrying in {}ms",
+                        attempt, indexingMaxAttempts, description, sleep);
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoff *= 2;
             }
         }
+    }
+
+    public List<SearchHit> searchSimilar(String query, int topK) {
+        log.info("Searching for similar plans to query: {}", query);
 
-        // Return top K results
-        return similarities.entrySet().stream()
-                .sorted(Map.Entry.<Plan, Double>comparingByValue().reversed())
-                .limit(topK)
-                .collect(Collectors.toList());
+        // Generate query embedding
+        float[] queryEmbedding = embeddingService.embed(query);
+
+        return searchSimilar(queryEmbedding, topK);
     }
 
-    private String buildSearchableText(Plan plan) {
-        return String.format(
-                "Provider: %s. Plan: %s. Type: %s. Price: $%.2f/month. %s Features: %s. Best for: %s",
-                plan.getProvider(),
-                plan.getName(),
-                plan.getType(),
-                plan.getMonthlyPrice(),
+    public List<SearchHit> searchSimilar(float[] queryEmbedding, int topK) {
+        // Return top K results from the resident index
+        return vectorIndex.search(queryEmbedding, topK);
+    }
+
+    /**
+     * Top K among plans matching {@code filter}; only the surviving candidates are scored.
+     */
+    public List<SearchHit> searchSimilar(float[] queryEmbedding, int topK, SearchFilter filter) {
+        return vectorIndex.search(queryEmbedding, topK, filter);
+    }
+
+    /**
+     * BM25 over plan text only; needs no embedding, so no remote call.
+     */
+    public List<SearchHit> searchLexical(String query, int topK, SearchFilter filter) {
+        return lexicalIndex.search(query, topK, filter);
+    }
+
+    /**
+     * Vector and BM25 rankings, each {@code fusion-depth} deep, merged by
+     * reciprocal-rank fusion.
+     */
+    public List<SearchHit> searchHybrid(String query, float[] queryEmbedding,
+                                        int topK, SearchFilter filter) {
+        int depth = Math.max(topK, fusionDepth);
+        return RankFusion.reciprocalRank(fusionK, topK, List.of(
+                vectorIndex.search(queryEmbedding, depth, filter),
+                lexicalIndex.search(query, depth, filter)));
+    }
+
+    /**
+     * Unfiltered retrieval for a batch of queries: all vector rankings come
+     * from one pass over the index, each then fused with its BM25 ranking when
+     * {@code hybrid}. Results are in query order, each at most {@code topK[i]}.
+     */
+    public List<List<SearchHit>> searchBatch(List<String> queries, List<float[]> queryEmbeddings,
+                                             int[] topK, boolean hybrid) {
+        int depth = 0;
+        for (int k : topK) {
+            depth = Math.max(depth, hybrid ? Math.max(k, fusionDepth) : k);
+        }
+        List<List<SearchHit>> vectorHits = vectorIndex.searchBatch(queryEmbeddings, depth);
+
+        List<List<SearchHit>> results = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            List<SearchHit> ranked = vectorHits.get(i);
+            if (hybrid) {
+                int itemDepth = Math.max(topK[i], fusionDepth);
+                results.add(RankFusion.reciprocalRank(fusionK, topK[i], List.of(
+                        ranked.subList(0, Math.min(itemDepth, ranked.size())),
+                        lexicalIndex.search(queries.get(i), itemDepth, null))));
+            } else {
+                results.add(ranked.subList(0, Math.min(topK[i], ranked.size())));
+            }
+        }
+        return results;
+    }
+
+    public SearchFilter extractFilter(String query) {
+        return QueryFilterExtractor.extract(query, lexicalIndex.providers());
+    }
+
+    /**
+     * Plans answerable right now: lexically, and with vectors.
+     */
+    public int lexicalPlanCount() {
+        return lexicalIndex.size();
+    }
+
+    public int vectorPlanCount() {
+        return vectorIndex.size();
+    }
+
+    public long planVersion(Long planId) {
+        return vectorIndex.version(planId);
+    }
+
+    /**
+     * Chunks of the plan's descriptive text, streamed through the token-aware
+     * sentence chunker. Short plans yield a single chunk.
+     */
+    private List<String> chunkPlan(Plan plan) {
+        String body = joinFields(
                 plan.getDescription(),
-                plan.getFeatures(),
-                plan.getBestFor()
-        );
+                label("Features", plan.getFeatures()),
+                label("Limitations", plan.getLimitations()),
+                label("Best for", plan.getBestFor()));
+        List<String> chunks = new ArrayList<>();
+        documentChunker.chunks(new StringReader(body)).forEachRemaining(chunks::add);
+        if (chunks.isEmpty()) {
+            chunks.add(plan.getName() != null ? plan.getName() : "");
+        }
+        return chunks;
+    }
+
+    /**
+     * Each chunk is embedded behind the plan header so later chunks keep the
+     * provider, name, type and price context.
+     */
+    private List<String> embeddingInputs(Plan plan, List<String> chunks) {
+        String header = String.format(Locale.ROOT, "Provider: %s. Plan: %s. Type: %s. Price: $%.2f/month.",
+                plan.getProvider(), plan.getName(), plan.getType(), plan.getMonthlyPrice());
+        return chunks.stream().map(chunk -> header + " " + chunk).toList();
+    }
+
+    private StagedPlan stage(Plan plan) {
+        List<String> chunks = chunkPlan(plan);
+        return new StagedPlan(plan, chunks, fingerprint(embeddingInputs(plan, chunks)));
+    }
+
+    private String fingerprint(Plan plan) {
+        return fingerprint(embeddingInputs(plan, chunkPlan(plan)));
+    }
+
+    /**
+     * SHA-256 over the embedding model and the exact chunk inputs, so a change
+     * to the plan text, the chunking settings or the model forces a re-embed.
+     * The inputs are locale-independent, so every host computes the same value.
+     */
+    private String fingerprint(List<String> inputs) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(embeddingService.getModel().getBytes(StandardCharsets.UTF_8));
+            for (String input : inputs) {
+                digest.update((byte) 0);
+                digest.update(input.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String naturalKey(Plan plan) {
+        return (plan.getProvider() == null ? "" : plan.getProvider().toLowerCase(Locale.ROOT))
+                + "|" + plan.getName();
+    }
+
+    private static String label(String name, String value) {
+        return value == null || value.isBlank() ? null : name + ": " + value + ".";
+    }
+
+    private static String joinFields(String... parts) {
+        StringJoiner joiner = new StringJoiner(" ");
+        for (String part : parts) {
+            if (part != null && !part.isBlank()) {
+                joiner.add(part.trim());
+            }
+        }
+        return joiner.toString();
     }
 }
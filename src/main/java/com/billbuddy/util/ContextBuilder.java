@@ -0,0 +1,179 @@
+// ContextBuilder.java
+package com.billbuddy.util;
+
+import com.billbuddy.index.PlanCatalog;
+import com.billbuddy.index.SearchHit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Renders retrieved plans as prompt context within a token budget (estimated
+ * by {@link TokenEstimator}). Each plan is one compact table row plus a short
+ * detail line, added in relevance order; features shared by several plans are
+ * listed once. Plans that no longer fit are dropped, except that the first one
+ * that only partly fits keeps a truncated detail line. Rows, feature lists
+ * and detail text come pre-rendered from the {@link PlanCatalog}.
+ */
+@Component
+public class ContextBuilder {
+
+    // Below this, a truncated detail line carries too little to be worth including
+    private static final int MIN_DETAIL_TOKENS = 24;
+    private static final String TABLE_HEADER = "# | Provider | Plan | Type | $/month | Data | Speed | Contract";
+
+    private final PlanCatalog planCatalog;
+    private final int maxTokens;
+
+    public ContextBuilder(PlanCatalog planCatalog,
+                          @Value("${billbuddy.context.max-tokens:1500}") int maxTokens) {
+        this.planCatalog = planCatalog;
+        this.maxTokens = Math.max(maxTokens, 64);
+    }
+
+    /**
+     * @param text    rendered context
+     * @param tokens  estimated tokens of {@code text}
+     * @param plans   plans included
+     * @param dropped plans left out for lack of budget
+     */
+    public record Context(String text, int tokens, int plans, int dropped) {
+    }
+
+    public Context build(List<SearchHit> hits) {
+        List<SearchHit> ranked = new ArrayList<>(hits);
+        ranked.sort(Comparator.comparingDouble(SearchHit::score).reversed());
+
+        // Select within budget, sizing detail lines before shared features are pulled out
+        int used = TokenEstimator.estimate(TABLE_HEADER) + 1;
+        List<SearchHit> included = new ArrayList<>();
+        List<PlanCatalog.Entry> entries = new ArrayList<>();
+        int truncatedRoom = -1;
+        for (SearchHit hit : ranked) {
+            int n = included.size() + 1;
+            PlanCatalog.Entry entry = planCatalog.entry(hit.plan());
+            int rowTokens = TokenEstimator.estimate(n + entry.row()) + 1;
+            int detailTokens = TokenEstimator.estimate(detail(n, hit, entry, Set.of())) + 1;
+            if (used + rowTokens + detailTokens <= maxTokens) {
+                included.add(hit);
+                entries.add(entry);
+                used += rowTokens + detailTokens;
+                continue;
+            }
+            int room = maxTokens - used - rowTokens;
+            if (included.isEmpty() || room >= MIN_DETAIL_TOKENS) {
+                included.add(hit);
+                entries.add(entry);
+                truncatedRoom = Math.max(room, MIN_DETAIL_TOKENS);
+            }
+            break;
+        }
+
+        Set<String> sharedKeys = new HashSet<>();
+        Map<String, List<Integer>> shared = sharedFeatures(entries, sharedKeys);
+
+        StringBuilder table = new StringBuilder(TABLE_HEADER);
+        StringBuilder details = new StringBuilder();
+        for (int i = 0; i < included.size(); i++) {
+            table.append('\n').append(i + 1).append(entries.get(i).row());
+            String detail = detail(i + 1, included.get(i), entries.get(i), sharedKeys);
+            if (i == included.size() - 1 && truncatedRoom >= 0) {
+                detail = truncate(detail, truncatedRoom);
+            }
+            details.append('\n').append(detail);
+        }
+
+        StringBuilder text = new StringBuilder(table).append('\n').append(details);
+        if (!shared.isEmpty()) {
+            StringJoiner line = new StringJoiner("; ", "\nShared features: ", "");
+            shared.forEach((feature, plans) -> line.add(feature + " " + plans));
+            text.append(line);
+        }
+        String rendered = text.toString();
+        return new Context(rendered, TokenEstimator.estimate(rendered), included.size(), hits.size() - included.size());
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    /**
+     * "[n] description. Features: ... Limitations: ... Best for: ...", leaving
+     * out features in {@code sharedKeys}. A long description is replaced by the
+     * matched chunk when retrieval returned one.
+     */
+    private String detail(int n, SearchHit hit, PlanCatalog.Entry entry, Set<String> sharedKeys) {
+        String description = hit.passage() != null && entry.descriptionTokens() > maxTokens / 4
+                ? hit.passage().trim() : entry.description();
+
+        StringBuilder detail = new StringBuilder("[").append(n).append("] ").append(description);
+        int before = detail.length();
+        List<String> features = entry.features();
+        for (int i = 0; i < features.size(); i++) {
+            if (!sharedKeys.contains(entry.featureKeys().get(i))) {
+                detail.append(detail.length() == before ? " Features: " : ", ").append(features.get(i));
+            }
+        }
+        if (detail.length() > before) {
+            detail.append('.');
+        }
+        return detail.append(entry.detailTail()).toString();
+    }
+
+    /**
+     * Features listed by two or more of the plans, with the plan numbers;
+     * their keys are added to {@code sharedKeys}.
+     */
+    private static Map<String, List<Integer>> sharedFeatures(List<PlanCatalog.Entry> entries, Set<String> sharedKeys) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        Map<String, List<Integer>> plansByFeature = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            PlanCatalog.Entry entry = entries.get(i);
+            for (int f = 0; f < entry.features().size(); f++) {
+                String key = entry.featureKeys().get(f);
+                labels.putIfAbsent(key, entry.features().get(f));
+                List<Integer> plans = plansByFeature.computeIfAbsent(key, k -> new ArrayList<>());
+                if (!plans.contains(i + 1)) {
+                    plans.add(i + 1);
+                }
+            }
+        }
+
+        Map<String, List<Integer>> shared = new LinkedHashMap<>();
+        plansByFeature.forEach((key, plans) -> {
+            if (plans.size() > 1) {
+                shared.put(labels.get(key), plans);
+                sharedKeys.add(key);
+            }
+        });
+        return shared;
+    }
+
+    /**
+     * Cuts {@code text} at a word boundary to about {@code tokens} tokens.
+     */
+    private static String truncate(String text, int tokens) {
+        if (TokenEstimator.estimate(text) <= tokens) {
+            return text;
+        }
+        int used = 0;
+        int end = 0;
+        for (String word : text.split(" ")) {
+            int wordTokens = TokenEstimator.estimate(word);
+            if (used + wordTokens + 1 > tokens) {
+                break;
+            }
+            used += wordTokens;
+            end += word.length() + 1;
+        }
+        return text.substring(0, Math.max(end - 1, 0)) + " ...";
+    }
+}
@@ -1,30 +1,244 @@
 // DocumentChunker.java
 package com.billbuddy.util;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
+/**
+ * Splits text into chunks of whole sentences, each at most {@code max-tokens}
+ * (estimated by {@link TokenEstimator}), with trailing sentences worth up to
+ * {@code overlap-tokens} repeated at the start of the next chunk. Chunks are
+ * produced lazily from a {@link Reader}, so only the current chunk and one
+ * sentence are held in memory. A sentence longer than a chunk is split at
+ * word boundaries.
+ */
 @Component
 public class DocumentChunker {
 
-    private static final int DEFAULT_CHUNK_SIZE = 500;
-    private static final int DEFAULT_OVERLAP = 50;
+    private static final int DEFAULT_MAX_TOKENS = 256;
+    private static final int DEFAULT_OVERLAP_TOKENS = 32;
 
-    public List<String> chunkText(String text, int chunkSize, int overlap) {
-        List<String> chunks = new ArrayList<>();
-        int start = 0;
+    private final int maxTokens;
+    private final int overlapTokens;
 
-        while (start < text.length()) {
-            int end = Math.min(start + chunkSize, text.length());
-            chunks.add(text.substring(start, end));
-            start += (chunkSize - overlap);
-        }
+    public DocumentChunker() {
+        this(DEFAULT_MAX_TOKENS, DEFAULT_OVERLAP_TOKENS);
+    }
+
+    @Autowired
+    public DocumentChunker(@Value("${billbuddy.chunking.max-tokens:256}") int maxTokens,
+                           @Value("${billbuddy.chunking.overlap-tokens:32}") int overlapTokens) {
+        this.maxTokens = Math.max(maxTokens, 16);
+        this.overlapTokens = Math.max(0, Math.min(overlapTokens, this.maxTokens / 2));
+    }
+
+    public Iterator<String> chunks(Reader reader) {
+        return chunks(reader, maxTokens, overlapTokens);
+    }
+
+    public Iterator<String> chunks(Reader reader, int maxTokens, int overlapTokens) {
+        return new ChunkIterator(new SentenceReader(reader, maxTokens * 8), maxTokens, overlapTokens);
+    }
 
+    public List<String> chunkText(String text, int maxTokens, int overlapTokens) {
+        List<String> chunks = new ArrayList<>();
+        chunks(new StringReader(text), maxTokens, overlapTokens).forEachRemaining(chunks::add);
         return chunks;
     }
 
     public List<String> chunkText(String text) {
-        return chunkText(text, DEFAULT_CHUNK_SIZE, DEFAULT_OVERLAP);
+        return chunkText(text, maxTokens, overlapTokens);
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    /**
+     * Reads one sentence at a time: text up to '.', '!' or '?' followed by
+     * whitespace, or a blank line. Whitespace runs collapse to one space.
+     * Sentences longer than {@code maxChars} are cut at the last space.
+     */
+    private static final class SentenceReader {
+        private final BufferedReader reader;
+        private final int maxChars;
+        private final StringBuilder buffer = new StringBuilder();
+        private int pending = -2;
+
+        SentenceReader(Reader reader, int maxChars) {
+            this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+            this.maxChars = maxChars;
+        }
+
+        String next() {
+            try {
+                int newlines = 0;
+                while (true) {
+                    int c = read();
+                    if (c < 0) {
+                        return take(buffer.length());
+                    }
+                    if (c == '\n') {
+                        newlines++;
+                        if (newlines >= 2 && !buffer.isEmpty()) {
+                            return take(buffer.length());
+                        }
+                    }
+                    if (Character.isWhitespace(c)) {
+                        if (!buffer.isEmpty() && buffer.charAt(buffer.length() - 1) != ' ') {
+                            buffer.append(' ');
+                        }
+                        continue;
+                    }
+                    newlines = 0;
+                    buffer.append((char) c);
+
+                    if (c == '.' || c == '!' || c == '?') {
+                        int following = read();
+                        pending = following;
+                        if (following < 0 || Character.isWhitespace(following)) {
+                            return take(buffer.length());
+                        }
+                    }
+                    if (buffer.length() >= maxChars) {
+                        int cut = buffer.lastIndexOf(" ");
+                        return take(cut > maxChars / 2 ? cut : buffer.length());
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read document", e);
+            }
+        }
+
+        private int read() throws IOException {
+            if (pending != -2) {
+                int c = pending;
+                pending = -2;
+                return c;
+            }
+            return reader.read();
+        }
+
+        private String take(int length) {
+            String sentence = buffer.substring(0, length).trim();
+            buffer.delete(0, length);
+            if (sentence.isEmpty()) {
+                return buffer.isEmpty() && length == 0 ? null : next();
+            }
+            return sentence;
+        }
+    }
+
+    private static final class ChunkIterator implements Iterator<String> {
+        private final SentenceReader sentences;
+        private final int maxTokens;
+        private final int overlapTokens;
+        // Sentences (or pieces of an oversized sentence) read but not yet placed in a chunk
+        private final Deque<String> upcoming = new ArrayDeque<>();
+        // Trailing sentences of the previous chunk repeated as overlap
+        private final List<String> carried = new ArrayList<>();
+        private boolean exhausted;
+
+        ChunkIterator(SentenceReader sentences, int maxTokens, int overlapTokens) {
+            this.sentences = sentences;
+            this.maxTokens = maxTokens;
+            this.overlapTokens = overlapTokens;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peek() != null;
+        }
+
+        @Override
+        public String next() {
+            if (peek() == null) {
+                throw new NoSuchElementException();
+            }
+
+            List<String> chunk = new ArrayList<>(carried);
+            int tokens = 0;
+            for (String sentence : carried) {
+                tokens += TokenEstimator.estimate(sentence) + 1;
+            }
+            int fresh = 0;
+            String sentence;
+            while ((sentence = peek()) != null) {
+                int sentenceTokens = TokenEstimator.estimate(sentence) + 1;
+                if (fresh > 0 && tokens + sentenceTokens > maxTokens) {
+                    break;
+                }
+                if (fresh == 0 && tokens + sentenceTokens > maxTokens && !chunk.isEmpty()) {
+                    // The overlap leaves no room for the next sentence; drop it
+                    chunk.clear();
+                    tokens = 0;
+                }
+                upcoming.poll();
+                chunk.add(sentence);
+                tokens += sentenceTokens;
+                fresh++;
+            }
+
+            carried.clear();
+            int overlap = 0;
+            for (int i = chunk.size() - 1; i > chunk.size() - fresh; i--) {
+                overlap += TokenEstimator.estimate(chunk.get(i)) + 1;
+                if (overlap > overlapTokens) {
+                    break;
+                }
+                carried.add(0, chunk.get(i));
+            }
+            return String.join(" ", chunk);
+        }
+
+        private String peek() {
+            if (upcoming.isEmpty() && !exhausted) {
+                String sentence = sentences.next();
+                if (sentence == null) {
+                    exhausted = true;
+                } else if (TokenEstimator.estimate(sentence) + 1 > maxTokens) {
+                    upcoming.addAll(splitWords(sentence));
+                } else {
+                    upcoming.add(sentence);
+                }
+            }
+            return upcoming.peek();
+        }
+
+        private List<String> splitWords(String sentence) {
+            List<String> pieces = new ArrayList<>();
+            StringBuilder piece = new StringBuilder();
+            int tokens = 0;
+            for (String word : sentence.split(" ")) {
+                int wordTokens = TokenEstimator.estimate(word);
+                if (!piece.isEmpty() && tokens + wordTokens + 1 > maxTokens) {
+                    pieces.add(piece.toString());
+                    piece.setLength(0);
+                    tokens = 0;
+                }
+                if (!piece.isEmpty()) {
+                    piece.append(' ');
+                }
+                piece.append(word);
+                tokens += wordTokens;
+            }
+            if (!piece.isEmpty()) {
+                pieces.add(piece.toString());
+            }
+            return pieces;
+        }
     }
 }
@@ -0,0 +1,200 @@
+// EmbeddingCodec.java
+package com.billbuddy.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * Packs embedding vectors into a compact binary column value.
+ *
+ * <pre>
+ * offset  size  field
+ * 0       2     magic "BE"
+ * 2       1     format version (1)
+ * 3       1     encoding (0 = float32, 1 = float16, 2 = int8)
+ * 4       4     dimension
+ * 8       4     int8 only: scale (max |v| / 127)
+ * ...           little-endian payload
+ * </pre>
+ */
+public final class EmbeddingCodec {
+
+    public enum Encoding {
+        FLOAT32(0, 4),
+        FLOAT16(1, 2),
+        INT8(2, 1);
+
+        private final byte id;
+        private final int bytesPerValue;
+
+        Encoding(int id, int bytesPerValue) {
+            this.id = (byte) id;
+            this.bytesPerValue = bytesPerValue;
+        }
+
+        public static Encoding fromId(byte id) {
+            for (Encoding encoding : values()) {
+                if (encoding.id == id) {
+                    return encoding;
+                }
+            }
+            throw new IllegalArgumentException("Unknown embedding encoding: " + id);
+        }
+
+        public static Encoding fromName(String name) {
+            return switch (name.trim().toLowerCase(Locale.ROOT)) {
+                case "float32", "f32" -> FLOAT32;
+                case "float16", "fp16", "f16" -> FLOAT16;
+                case "int8", "i8" -> INT8;
+                default -> throw new IllegalArgumentException("Unknown embedding encoding: " + name);
+            };
+        }
+    }
+
+    private static final byte MAGIC_0 = 'B';
+    private static final byte MAGIC_1 = 'E';
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private EmbeddingCodec() {
+    }
+
+    public static byte[] encode(float[] vector, Encoding encoding) {
+        int scaleBytes = encoding == Encoding.INT8 ? 4 : 0;
+        ByteBuffer buffer = ByteBuffer
+                .allocate(HEADER_SIZE + scaleBytes + vector.length * encoding.bytesPerValue)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.put(MAGIC_0).put(MAGIC_1).put(VERSION).put(encoding.id).putInt(vector.length);
+
+        switch (encoding) {
+            case FLOAT32 -> {
+                for (float v : vector) {
+                    buffer.putFloat(v);
+                }
+            }
+            case FLOAT16 -> {
+                for (float v : vector) {
+                    buffer.putShort(toHalf(v));
+                }
+            }
+            case INT8 -> {
+                float maxAbs = 0f;
+                for (float v : vector) {
+                    maxAbs = Math.max(maxAbs, Math.abs(v));
+                }
+                float scale = maxAbs == 0f ? 1f : maxAbs / 127f;
+                buffer.putFloat(scale);
+                for (float v : vector) {
+                    buffer.put((byte) Math.round(v / scale));
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    public static float[] decode(byte[] data) {
+        if (!isEncoded(data)) {
+            throw new IllegalArgumentException("Not a packed embedding");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        byte version = buffer.get(2);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported embedding format version: " + version);
+        }
+        Encoding encoding = Encoding.fromId(buffer.get(3));
+        int dimension = buffer.getInt(4);
+        if (dimension < 0) {
+            throw new IllegalArgumentException("Negative embedding dimension: " + dimension);
+        }
+        int scaleBytes = encoding == Encoding.INT8 ? 4 : 0;
+        long expectedLength = HEADER_SIZE + scaleBytes + (long) dimension * encoding.bytesPerValue;
+        if (data.length != expectedLength) {
+            throw new IllegalArgumentException("Packed " + encoding + " embedding of dimension " + dimension
+                    + " should be " + expectedLength + " bytes, got " + data.length);
+        }
+        buffer.position(HEADER_SIZE);
+
+        float[] vector = new float[dimension];
+        switch (encoding) {
+            case FLOAT32 -> buffer.asFloatBuffer().get(vector);
+            case FLOAT16 -> {
+                for (int i = 0; i < dimension; i++) {
+                    vector[i] = fromHalf(buffer.getShort());
+                }
+            }
+            case INT8 -> {
+                float scale = buffer.getFloat();
+                for (int i = 0; i < dimension; i++) {
+                    vector[i] = buffer.get() * scale;
+                }
+            }
+        }
+        return vector;
+    }
+
+    public static boolean isEncoded(byte[] data) {
+        return data != null && data.length >= HEADER_SIZE && data[0] == MAGIC_0 && data[1] == MAGIC_1;
+    }
+
+    // IEEE 754 binary16 conversion (round-to-nearest-even), Float.floatToFloat16 is JDK 20+
+
+    static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xff) - 127 + 15;
+        int mantissa = bits & 0x7fffff;
+
+        if (exponent >= 0x1f) {
+            // Overflow, infinity or NaN
+            boolean nan = ((bits >>> 23) & 0xff) == 0xff && mantissa != 0;
+            return (short) (sign | 0x7c00 | (nan ? 0x200 : 0));
+        }
+        if (exponent <= 0) {
+            if (exponent < -10) {
+                return (short) sign;
+            }
+            mantissa |= 0x800000;
+            int shift = 14 - exponent;
+            int half = mantissa >> shift;
+            int remainder = mantissa & ((1 << shift) - 1);
+            int midpoint = 1 << (shift - 1);
+            if (remainder > midpoint || (remainder == midpoint && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+
+        int half = (exponent << 10) | (mantissa >> 13);
+        int remainder = mantissa & 0x1fff;
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+            half++;
+        }
+        return (short) (sign | half);
+    }
+
+    static float fromHalf(short value) {
+        int bits = value & 0xffff;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1f;
+        int mantissa = bits & 0x3ff;
+
+        if (exponent == 0) {
+            if (mantissa == 0) {
+                return Float.intBitsToFloat(sign);
+            }
+            // Subnormal: normalise into a float exponent
+            exponent = 1;
+            while ((mantissa & 0x400) == 0) {
+                mantissa <<= 1;
+                exponent--;
+            }
+            mantissa &= 0x3ff;
+        } else if (exponent == 0x1f) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent + 127 - 15) << 23) | (mantissa << 13));
+    }
+}
@@ -3,23 +3,90 @@ package com.billbuddy.util;
 
 import com.billbuddy.model.QueryResponse;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Query/response/error log. Request threads only format the line and hand it
+ * to a lock-free queue; a single writer thread batches lines through one
+ * reusable buffer and file channel, rotates the file by size or age and
+ * flushes everything on shutdown. When the queue is full, entries are dropped
+ * (counted) or, with {@code overflow=block}, the caller waits briefly first.
+ */
 @Component
 @Slf4j
 public class ObservabilityLogger {
 
     private final ObjectMapper objectMapper;
-    private static final String LOG_FILE = "billbuddy-queries.log";
 
-    public ObservabilityLogger() {
+    private final Path logFile;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final boolean blockWhenFull;
+    private final long blockTimeoutNanos;
+    private final long maxFileSize;
+    private final long rotateIntervalMillis;
+    private final int maxFiles;
+
+    private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rotations = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private FileChannel channel;
+    private long fileSize;
+    private long fileOpenedAt;
+
+    public ObservabilityLogger(@Value("${billbuddy.query-log.file:billbuddy-queries.log}") String logFile,
+                               @Value("${billbuddy.query-log.queue-capacity:8192}") int queueCapacity,
+                               @Value("${billbuddy.query-log.batch-size:256}") int batchSize,
+                               @Value("${billbuddy.query-log.flush-interval:PT0.2S}") Duration flushInterval,
+                               @Value("${billbuddy.query-log.overflow:drop}") String overflow,
+                               @Value("${billbuddy.query-log.block-timeout:PT0.05S}") Duration blockTimeout,
+                               @Value("${billbuddy.query-log.max-file-size:10MB}") DataSize maxFileSize,
+                               @Value("${billbuddy.query-log.rotate-interval:P1D}") Duration rotateInterval,
+                               @Value("${billbuddy.query-log.max-files:5}") int maxFiles) {
         this.objectMapper = new ObjectMapper();
+        this.logFile = Path.of(logFile);
+        this.queueCapacity = Math.max(queueCapacity, 1);
+        this.batchSize = Math.max(batchSize, 1);
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.blockWhenFull = "block".equalsIgnoreCase(overflow.trim());
+        this.blockTimeoutNanos = blockTimeout.toNanos();
+        this.maxFileSize = maxFileSize.toBytes();
+        this.rotateIntervalMillis = rotateInterval.toMillis();
+        this.maxFiles = Math.max(maxFiles, 1);
+
+        this.writer = new Thread(this::runWriter, "billbuddy-query-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
     }
 
     public void logQuery(String sessionId, String query) {
@@ -60,11 +127,184 @@ public class ObservabilityLogger {
         log.error("Error logged: {}", sessionId, e);
     }
 
+    public Map<String, Object> stats() {
+        return Map.of(
+                "pending", pending.get(),
+                "written", written.get(),
+                "dropped", dropped.get(),
+                "rotations", rotations.get(),
+                "writeErrors", writeErrors.get()
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private void writeLog(String entry) {
-        try (FileWriter writer = new FileWriter(LOG_FILE, true)) {
-            writer.write(entry);
+        if (!reserveSlot()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(entry);
+        if (pending.get() >= batchSize) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private boolean reserveSlot() {
+        long deadline = System.nanoTime() + (blockWhenFull ? blockTimeoutNanos : 0);
+        while (true) {
+            int current = pending.get();
+            if (current < queueCapacity) {
+                if (pending.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+                continue;
+            }
+            if (!running || System.nanoTime() >= deadline) {
+                return false;
+            }
+            // Backpressure: nudge the writer and wait for it to drain
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    private void runWriter() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        while (running || pending.get() > 0) {
+            if (pending.get() == 0) {
+                LockSupport.parkNanos(flushIntervalNanos);
+                continue;
+            }
+            try {
+                if (drain(buffer) == 0) {
+                    // A producer reserved a slot but has not enqueued yet
+                    Thread.onSpinWait();
+                }
+            } catch (IOException | RuntimeException e) {
+                // Keep the writer alive: if it died, producers would fill the queue and drop every entry
+                writeErrors.incrementAndGet();
+                log.error("Failed to write log", e);
+                closeChannel();
+                LockSupport.parkNanos(flushIntervalNanos);
+            }
+        }
+        closeChannel();
+    }
+
+    private int drain(ByteBuffer buffer) throws IOException {
+        openIfNeeded();
+        if (fileSize > 0 && ageDue()) {
+            // A file left over from before a restart may already be due
+            rotate();
+            openIfNeeded();
+        }
+        buffer.clear();
+        int lines = 0;
+        String entry;
+        while ((entry = queue.poll()) != null) {
+            pending.decrementAndGet();
+            byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > buffer.remaining()) {
+                flush(buffer);
+                if (bytes.length > buffer.capacity()) {
+                    ByteBuffer oversized = ByteBuffer.wrap(bytes);
+                    while (oversized.hasRemaining()) {
+                        fileSize += channel.write(oversized);
+                    }
+                    lines++;
+                    continue;
+                }
+            }
+            buffer.put(bytes);
+            lines++;
+            if (lines >= batchSize) {
+                break;
+            }
+        }
+        flush(buffer);
+        written.addAndGet(lines);
+
+        if (fileSize >= maxFileSize || ageDue()) {
+            rotate();
+        }
+        return lines;
+    }
+
+    private boolean ageDue() {
+        return rotateIntervalMillis > 0 && System.currentTimeMillis() - fileOpenedAt >= rotateIntervalMillis;
+    }
+
+    private void flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileSize += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void openIfNeeded() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        Path parent = logFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileSize = channel.size();
+        fileOpenedAt = fileSize > 0 ? fileStartedAt() : System.currentTimeMillis();
+    }
+
+    /**
+     * When the existing log file was started, so a restart does not reset its
+     * age for time-based rotation: its creation time where the file system
+     * records one, else its last-modified time.
+     */
+    private long fileStartedAt() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(logFile, BasicFileAttributes.class);
+            return Math.min(attributes.creationTime().toMillis(), attributes.lastModifiedTime().toMillis());
         } catch (IOException e) {
-            log.error("Failed to write log", e);
+            return System.currentTimeMillis();
+        }
+    }
+
+    private void rotate() throws IOException {
+        closeChannel();
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path source = rotated(i);
+            if (Files.exists(source)) {
+                Files.move(source, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (Files.exists(logFile)) {
+            Files.move(logFile, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        rotations.incrementAndGet();
+    }
+
+    private Path rotated(int index) {
+        return logFile.resolveSibling(logFile.getFileName() + "." + index);
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close query log", e);
+            }
+            channel = null;
         }
     }
 }
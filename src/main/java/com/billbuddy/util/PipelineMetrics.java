@@ -0,0 +1,92 @@
+// PipelineMetrics.java
+package com.billbuddy.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micrometer instruments for the query pipeline: a latency histogram per stage
+ * ({@code billbuddy.stage.duration}, tagged {@code stage}), answers by source,
+ * failed requests, unparseable answers and requests in flight. Component-level
+ * counters (caches, upstreams, indexing, query log) are bound from their stats
+ * in MetricsConfig.
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String EMBEDDING = "embedding";
+    public static final String RETRIEVAL = "retrieval";
+    public static final String CONTEXT = "context";
+    public static final String COMPLETION = "completion";
+    public static final String PARSING = "parsing";
+    public static final String LOGGING = "logging";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> answerCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> parseFailures = new ConcurrentHashMap<>();
+    private final Counter failedRequests;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.failedRequests = Counter.builder("billbuddy.requests.failed")
+                .description("Queries that ended in an error")
+                .register(registry);
+        Gauge.builder("billbuddy.requests.inflight", inFlight, AtomicInteger::get)
+                .description("Queries currently being answered")
+                .register(registry);
+    }
+
+    public StageTimings start() {
+        return new StageTimings(this);
+    }
+
+    public void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    public void requestFinished() {
+        inFlight.decrementAndGet();
+    }
+
+    public void requestFailed() {
+        failedRequests.increment();
+    }
+
+    /**
+     * @param source completion, cache or fallback
+     */
+    public void answered(String source) {
+        answerCounters.computeIfAbsent(source, key -> Counter.builder("billbuddy.answers")
+                .description("Answers by where they came from")
+                .tag("source", key)
+                .register(registry)).increment();
+    }
+
+    /**
+     * @param format sections or json
+     */
+    public void parseFailed(String format) {
+        parseFailures.computeIfAbsent(format, key -> Counter.builder("billbuddy.parse.failures")
+                .description("Answers without a recommendation or with malformed JSON")
+                .tag("format", key)
+                .register(registry)).increment();
+    }
+
+    public void recordStage(String stage, long elapsedNanos) {
+        stageTimers.computeIfAbsent(stage, key -> Timer.builder("billbuddy.stage.duration")
+                .description("Time spent in each query pipeline stage")
+                .tag("stage", key)
+                .publishPercentileHistogram()
+                .register(registry)).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,111 @@
+// QueryFilterExtractor.java
+package com.billbuddy.util;
+
+import com.billbuddy.model.PlanType;
+import com.billbuddy.model.SearchFilter;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pulls obvious structured constraints out of a free-text question, e.g.
+ * "mobile under $60 with no contract". Only explicit cues are recognised;
+ * prices must carry a dollar sign so "under 5 people" is not a price.
+ */
+public final class QueryFilterExtractor {
+
+    private static final Map<PlanType, Pattern> TYPE_CUES = Map.of(
+            PlanType.MOBILE, cue("mobile|phone|sim|cellular"),
+            PlanType.INTERNET, cue("internet|nbn|broadband|wi-?fi"),
+            PlanType.ENERGY, cue("energy|electricity|solar"),
+            PlanType.GAS, cue("gas")
+    );
+
+    private static final String AMOUNT = "\\$\\s?(\\d+(?:\\.\\d{1,2})?)";
+
+    private static final Pattern BETWEEN = Pattern.compile(
+            "between\\s+" + AMOUNT + "\\s*(?:and|to|-)\\s*\\$?\\s?(\\d+(?:\\.\\d{1,2})?)",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern RANGE = Pattern.compile(AMOUNT + "\\s*(?:-|to)\\s*" + AMOUNT);
+
+    private static final Pattern MAX_PRICE = Pattern.compile(
+            "(?:under|below|less than|cheaper than|up to|at most|no more than|max(?:imum)?(?: of)?|<)\\s*" + AMOUNT,
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern MIN_PRICE = Pattern.compile(
+            "(?:over|above|more than|at least|from|>)\\s*" + AMOUNT,
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern NO_CONTRACT = cue("no contract|no lock-?\\s?in|month-to-month|without (?:a )?contract");
+
+    private QueryFilterExtractor() {
+    }
+
+    /**
+     * @param providers provider names currently in the catalog, matched as whole words
+     * @return the extracted filter, or null when the question carries no cues
+     */
+    public static SearchFilter extract(String query, Collection<String> providers) {
+        if (query == null || query.isBlank()) {
+            return null;
+        }
+
+        Set<PlanType> types = EnumSet.noneOf(PlanType.class);
+        TYPE_CUES.forEach((type, pattern) -> {
+            if (pattern.matcher(query).find()) {
+                types.add(type);
+            }
+        });
+
+        Double minPrice = null;
+        Double maxPrice = null;
+        Matcher range = find(BETWEEN, query);
+        if (range == null) {
+            range = find(RANGE, query);
+        }
+        if (range != null) {
+            minPrice = Double.parseDouble(range.group(1));
+            maxPrice = Double.parseDouble(range.group(2));
+        } else {
+            Matcher max = MAX_PRICE.matcher(query);
+            if (max.find()) {
+                maxPrice = Double.parseDouble(max.group(1));
+            }
+            Matcher min = MIN_PRICE.matcher(query);
+            if (min.find()) {
+                minPrice = Double.parseDouble(min.group(1));
+            }
+        }
+
+        Set<String> matchedProviders = new LinkedHashSet<>();
+        for (String provider : providers) {
+            if (provider != null && cue(Pattern.quote(provider)).matcher(query).find()) {
+                matchedProviders.add(provider);
+            }
+        }
+
+        SearchFilter filter = SearchFilter.builder()
+                .types(types.isEmpty() ? null : types)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .maxContractMonths(NO_CONTRACT.matcher(query).find() ? 0 : null)
+                .providers(matchedProviders.isEmpty() ? null : matchedProviders)
+                .build();
+        return filter.hasConstraints() ? filter : null;
+    }
+
+    private static Matcher find(Pattern pattern, String query) {
+        Matcher matcher = pattern.matcher(query);
+        return matcher.find() ? matcher : null;
+    }
+
+    private static Pattern cue(String alternatives) {
+        return Pattern.compile("\\b(?:" + alternatives + ")\\b", Pattern.CASE_INSENSITIVE);
+    }
+}
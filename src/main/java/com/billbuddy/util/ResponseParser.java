@@ -0,0 +1,339 @@
+// ResponseParser.java
+package com.billbuddy.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts the structured parts of a completion in one pass. Two formats are
+ * accepted: the labelled sections the prompt asks for (RECOMMENDATION /
+ * EXPLANATION / MONTHLY COST / TRADEOFFS, in any order and case, with the
+ * markdown emphasis and label variants models add) and the JSON object
+ * returned by the structured-output mode, detected by its leading brace.
+ */
+public final class ResponseParser {
+
+    public static final String RECOMMENDATION = "RECOMMENDATION";
+    public static final String EXPLANATION = "EXPLANATION";
+    public static final String MONTHLY_COST = "MONTHLY COST";
+    public static final String TRADEOFFS = "TRADEOFFS";
+
+    private static final String[] SECTIONS = {RECOMMENDATION, EXPLANATION, MONTHLY_COST, TRADEOFFS};
+    // Label spellings seen in model output, each with the index of its section
+    private static final String[] LABELS = {
+            "RECOMMENDATION", "RECOMMENDED PLAN",
+            "EXPLANATION", "REASONING",
+            "MONTHLY COST", "ESTIMATED MONTHLY COST", "ESTIMATED COST", "MONTHLY PRICE",
+            "TRADEOFFS", "TRADE-OFFS", "TRADE OFFS"};
+    private static final int[] LABEL_SECTIONS = {0, 0, 1, 1, 2, 2, 2, 2, 3, 3, 3};
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private ResponseParser() {
+    }
+
+    public enum Format { SECTIONS, JSON }
+
+    /**
+     * @param monthlyCost the cost as written; {@code estimatedMonthlyCost} is
+     *                    the first amount in it
+     * @param complete    false when the answer had no recommendation or was
+     *                    malformed JSON (then parsed as sections instead)
+     */
+    public record Parsed(String recommendation, String explanation, String monthlyCost,
+                         Double estimatedMonthlyCost, List<String> tradeoffs,
+                         Format format, boolean complete) {
+    }
+
+    public static Parsed parse(String answer) {
+        if (answer == null) {
+            return new Parsed("", "", "", null, List.of(), Format.SECTIONS, false);
+        }
+        int brace = jsonStart(answer);
+        if (brace >= 0) {
+            Parsed parsed = parseJson(answer, brace);
+            if (parsed != null) {
+                return parsed;
+            }
+            Parsed sections = parseSections(answer);
+            return new Parsed(sections.recommendation(), sections.explanation(), sections.monthlyCost(),
+                    sections.estimatedMonthlyCost(), sections.tradeoffs(), Format.JSON, false);
+        }
+        return parseSections(answer);
+    }
+
+    /**
+     * The answer as labelled sections: JSON answers are rendered, anything
+     * else is returned unchanged.
+     */
+    public static String asSections(String answer) {
+        if (answer == null || jsonStart(answer) < 0) {
+            return answer;
+        }
+        Parsed parsed = parse(answer);
+        StringBuilder text = new StringBuilder(answer.length() + 64)
+                .append(RECOMMENDATION).append(": ").append(parsed.recommendation()).append('\n')
+                .append(EXPLANATION).append(": ").append(parsed.explanation()).append('\n')
+                .append(MONTHLY_COST).append(": ")
+                .append(parsed.estimatedMonthlyCost() != null
+                        ? String.format("$%.2f/month", parsed.estimatedMonthlyCost()) : parsed.monthlyCost())
+                .append('\n')
+                .append(TRADEOFFS).append(':');
+        for (String tradeoff : parsed.tradeoffs()) {
+            text.append("\n- ").append(tradeoff);
+        }
+        return text.append('\n').toString();
+    }
+
+    /**
+     * The canonical section label ({@link #RECOMMENDATION} etc.) a line starts
+     * with, or null. Leading markdown ({@code **}, {@code #}) is ignored.
+     */
+    public static String label(CharSequence line) {
+        int match = matchLabel(line, 0, line.length());
+        return match < 0 ? null : SECTIONS[LABEL_SECTIONS[match >>> 24]];
+    }
+
+    /**
+     * The text after a line's label and its colon.
+     */
+    public static String labelContent(String line) {
+        int match = matchLabel(line, 0, line.length());
+        return match < 0 ? line : line.substring(match & 0xFFFFFF).trim();
+    }
+
+    /**
+     * The first amount in {@code text}, ignoring a currency sign and thousands
+     * separators ("$1,299.50 per month" is 1299.5); null when there is none,
+     * or when it has more significant digits than a long holds exactly (18).
+     */
+    public static Double parseCost(CharSequence text) {
+        if (text == null) {
+            return null;
+        }
+        int n = text.length();
+        int i = 0;
+        while (i < n && !isDigit(text.charAt(i))) {
+            i++;
+        }
+        if (i == n) {
+            return null;
+        }
+        long mantissa = 0;
+        int scale = -1;
+        int digits = 0;
+        for (; i < n; i++) {
+            char c = text.charAt(i);
+            if (isDigit(c)) {
+                if (mantissa != 0 || c != '0') {
+                    if (++digits > 18) {
+                        return null;
+                    }
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == ',' && scale < 0 && i + 1 < n && isDigit(text.charAt(i + 1))) {
+                continue;
+            } else if (c == '.' && scale < 0 && i + 1 < n && isDigit(text.charAt(i + 1))) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        // One division by an exact power of ten keeps the result correctly rounded
+        return scale > 0 ? mantissa / Math.pow(10, scale) : (double) mantissa;
+    }
+
+    /**
+     * One entry per non-blank line, without list bullets.
+     */
+    public static List<String> tradeoffs(String text) {
+        List<String> items = new ArrayList<>();
+        int n = text.length();
+        int start = 0;
+        while (start <= n) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = n;
+            }
+            int from = start;
+            while (from < end && (Character.isWhitespace(text.charAt(from)) || isBullet(text.charAt(from)))) {
+                from++;
+            }
+            int to = end;
+            while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+                to--;
+            }
+            if (to > from) {
+                items.add(text.substring(from, to));
+            }
+            start = end + 1;
+        }
+        return items;
+    }
+
+    private static Parsed parseSections(String answer) {
+        // Start and end offsets of each section's content; the first occurrence wins
+        int[] starts = {-1, -1, -1, -1};
+        int[] ends = new int[SECTIONS.length];
+        int current = -1;
+        int n = answer.length();
+        int lineStart = 0;
+        while (lineStart < n) {
+            int lineEnd = answer.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = n;
+            }
+            int match = matchLabel(answer, lineStart, lineEnd);
+            if (match >= 0) {
+                if (current >= 0) {
+                    ends[current] = lineStart;
+                }
+                int section = LABEL_SECTIONS[match >>> 24];
+                if (starts[section] < 0) {
+                    starts[section] = lineStart + (match & 0xFFFFFF);
+                    current = section;
+                } else {
+                    current = -1;
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        if (current >= 0) {
+            ends[current] = n;
+        }
+
+        String[] texts = new String[SECTIONS.length];
+        for (int s = 0; s < SECTIONS.length; s++) {
+            texts[s] = starts[s] < 0 ? "" : answer.substring(starts[s], ends[s]).trim();
+        }
+        return new Parsed(texts[0], texts[1], texts[2], parseCost(texts[2]), tradeoffs(texts[3]),
+                Format.SECTIONS, !texts[0].isEmpty());
+    }
+
+    /**
+     * Matches a section label at the start of {@code text[from, to)}. Returns
+     * the label's index in the high byte and the content offset (relative to
+     * {@code from}) in the low 24 bits, or -1.
+     */
+    private static int matchLabel(CharSequence text, int from, int to) {
+        int i = from;
+        while (i < to && isMarkup(text.charAt(i))) {
+            i++;
+        }
+        for (int l = 0; l < LABELS.length; l++) {
+            String label = LABELS[l];
+            int end = i + label.length();
+            if (end > to || !regionMatchesIgnoreCase(text, i, label)) {
+                continue;
+            }
+            // "**Label**:" and "**Label:**" both occur
+            while (end < to && (text.charAt(end) == '*' || text.charAt(end) == '_')) {
+                end++;
+            }
+            if (end == to || text.charAt(end) != ':') {
+                continue;
+            }
+            end++;
+            while (end < to && isMarkup(text.charAt(end))) {
+                end++;
+            }
+            return l << 24 | (end - from);
+        }
+        return -1;
+    }
+
+    private static Parsed parseJson(String answer, int brace) {
+        int close = answer.lastIndexOf('}');
+        if (close < brace) {
+            return null;
+        }
+        JsonNode root;
+        try {
+            root = MAPPER.readTree(answer.substring(brace, close + 1));
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+        if (root == null || !root.isObject()) {
+            return null;
+        }
+        String recommendation = text(root.get("recommendation"));
+        String explanation = text(root.get("explanation"));
+        JsonNode cost = root.get("estimatedMonthlyCost");
+        String monthlyCost = text(cost);
+        Double estimatedMonthlyCost = cost != null && cost.isNumber() ? cost.doubleValue() : parseCost(monthlyCost);
+
+        List<String> tradeoffs;
+        JsonNode items = root.get("tradeoffs");
+        if (items != null && items.isArray()) {
+            tradeoffs = new ArrayList<>(items.size());
+            for (JsonNode item : items) {
+                String value = text(item);
+                if (!value.isEmpty()) {
+                    tradeoffs.add(value);
+                }
+            }
+        } else {
+            tradeoffs = tradeoffs(text(items));
+        }
+        return new Parsed(recommendation, explanation, monthlyCost, estimatedMonthlyCost, tradeoffs,
+                Format.JSON, !recommendation.isEmpty());
+    }
+
+    /**
+     * Offset of the opening brace when the answer is a JSON object, possibly
+     * in a code fence; -1 otherwise.
+     */
+    private static int jsonStart(String answer) {
+        int i = 0;
+        int n = answer.length();
+        while (i < n && Character.isWhitespace(answer.charAt(i))) {
+            i++;
+        }
+        if (i < n && answer.charAt(i) == '{') {
+            return i;
+        }
+        if (answer.startsWith("```", i)) {
+            int lineEnd = answer.indexOf('\n', i);
+            if (lineEnd > 0) {
+                int j = lineEnd + 1;
+                while (j < n && Character.isWhitespace(answer.charAt(j))) {
+                    j++;
+                }
+                return j < n && answer.charAt(j) == '{' ? j : -1;
+            }
+        }
+        return -1;
+    }
+
+    private static String text(JsonNode node) {
+        return node == null || node.isNull() ? "" : node.asText().trim();
+    }
+
+    private static boolean regionMatchesIgnoreCase(CharSequence text, int offset, String upper) {
+        for (int k = 0; k < upper.length(); k++) {
+            if (Character.toUpperCase(text.charAt(offset + k)) != upper.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isMarkup(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '*' || c == '#' || c == '_';
+    }
+
+    private static boolean isBullet(char c) {
+        return c == '-' || c == '*' || c == '\u2022';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,140 @@
+// SimilarityKernel.java
+package com.billbuddy.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Allocation-free similarity primitives over float[] vectors. When the JVM is
+ * started with {@code --add-modules jdk.incubator.vector} dot products run on
+ * the JDK Vector API (SIMD); otherwise an unrolled scalar loop is used.
+ * Set {@code -Dbillbuddy.simd=false} to force the scalar path.
+ *
+ * <p>For pre-normalized vectors cosine similarity is just {@link #dot}.
+ */
+@Slf4j
+public final class SimilarityKernel {
+
+    interface DotKernel {
+        float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+    }
+
+    private static final DotKernel KERNEL = loadKernel();
+
+    private SimilarityKernel() {
+    }
+
+    public static String implementation() {
+        return KERNEL instanceof ScalarDotKernel ? "scalar" : "vector-api";
+    }
+
+    public static float dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Vectors must have same dimension");
+        }
+        return KERNEL.dot(a, 0, b, 0, a.length);
+    }
+
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.dot(a, aOffset, b, bOffset, length);
+    }
+
+    public static float norm(float[] vector) {
+        return (float) Math.sqrt(KERNEL.dot(vector, 0, vector, 0, vector.length));
+    }
+
+    public static float cosine(float[] a, float[] b) {
+        float normA = norm(a);
+        float normB = norm(b);
+        if (normA == 0f || normB == 0f) {
+            return 0f;
+        }
+        return dot(a, b) / (normA * normB);
+    }
+
+    /**
+     * Returns a unit-length copy (all zeros stays all zeros).
+     */
+    public static float[] normalize(float[] vector) {
+        float[] normalized = vector.clone();
+        normalizeInPlace(normalized, 0, normalized.length);
+        return normalized;
+    }
+
+    public static float normalizeInPlace(float[] vector, int offset, int length) {
+        float norm = (float) Math.sqrt(KERNEL.dot(vector, offset, vector, offset, length));
+        if (norm > 0f) {
+            float inverse = 1f / norm;
+            for (int i = offset; i < offset + length; i++) {
+                vector[i] *= inverse;
+            }
+        }
+        return norm;
+    }
+
+    /**
+     * Scores one query against rows {@code [fromRow, toRow)} of a row-major
+     * matrix, writing {@code out[row - fromRow]}.
+     */
+    public static void dotBatch(float[] query, float[] matrix, int dimension,
+                                int fromRow, int toRow, float[] out) {
+        for (int row = fromRow; row < toRow; row++) {
+            out[row - fromRow] = KERNEL.dot(query, 0, matrix, row * dimension, dimension);
+        }
+    }
+
+    /**
+     * Scores several queries against rows {@code [fromRow, toRow)}, writing
+     * {@code out[q][row - fromRow]}. Each row is loaded once and dotted with
+     * every query while it is still in cache, so a batch streams the matrix
+     * from memory once instead of once per query.
+     */
+    public static void dotMatrix(float[][] queries, float[] matrix, int dimension,
+                                 int fromRow, int toRow, float[][] out) {
+        for (int row = fromRow; row < toRow; row++) {
+            int offset = row * dimension;
+            for (int q = 0; q < queries.length; q++) {
+                out[q][row - fromRow] = KERNEL.dot(queries[q], 0, matrix, offset, dimension);
+            }
+        }
+    }
+
+    private static DotKernel loadKernel() {
+        if (!Boolean.parseBoolean(System.getProperty("billbuddy.simd", "true"))) {
+            return new ScalarDotKernel();
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                DotKernel kernel = (DotKernel) Class.forName("com.billbuddy.util.VectorApiDotKernel")
+                        .getDeclaredConstructor()
+                        .newInstance();
+                log.info("Similarity kernel using the JDK Vector API");
+                return kernel;
+            } catch (ClassNotFoundException e) {
+                log.info("Built without the SIMD kernel (-DskipSimd), using scalar similarity kernel");
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.warn("JDK Vector API unavailable, using scalar similarity kernel", e);
+            }
+        }
+        return new ScalarDotKernel();
+    }
+
+    static final class ScalarDotKernel implements DotKernel {
+        @Override
+        public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+            // Four independent accumulators break the add dependency chain
+            float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+            int i = 0;
+            int bound = length & ~3;
+            for (; i < bound; i += 4) {
+                s0 += a[aOffset + i] * b[bOffset + i];
+                s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+                s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+                s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+            }
+            for (; i < length; i++) {
+                s0 += a[aOffset + i] * b[bOffset + i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+// StageTimings.java
+package com.billbuddy.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Stage durations of one request. Every recorded stage feeds the
+ * {@code billbuddy.stage.duration} histogram and is also kept for the
+ * request's own breakdown, returned when the request asks for debug output.
+ */
+public class StageTimings {
+
+    private final PipelineMetrics metrics;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> nanos = new LinkedHashMap<>();
+
+    StageTimings(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public <T> T time(String stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    public void time(String stage, Runnable work) {
+        long start = System.nanoTime();
+        try {
+            work.run();
+        } finally {
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    public synchronized void record(String stage, long elapsedNanos) {
+        nanos.merge(stage, elapsedNanos, Long::sum);
+        metrics.recordStage(stage, elapsedNanos);
+    }
+
+    public long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Stage durations in milliseconds, in the order the stages first ran.
+     */
+    public synchronized Map<String, Double> toMillis() {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        nanos.forEach((stage, elapsed) -> millis.put(stage, toMillis(elapsed)));
+        return millis;
+    }
+
+    public static double toMillis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
@@ -0,0 +1,73 @@
+// StreamingSectionParser.java
+package com.billbuddy.util;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Incrementally splits a streamed answer into its labelled sections
+ * (RECOMMENDATION / EXPLANATION / MONTHLY COST / TRADEOFFS). Text is fed as it
+ * arrives; a section is emitted as soon as the next label starts, and the last
+ * one on {@link #finish()}. Labels are recognized as in {@link ResponseParser}.
+ */
+public class StreamingSectionParser {
+
+    public static final String RECOMMENDATION = ResponseParser.RECOMMENDATION;
+    public static final String EXPLANATION = ResponseParser.EXPLANATION;
+    public static final String MONTHLY_COST = ResponseParser.MONTHLY_COST;
+    public static final String TRADEOFFS = ResponseParser.TRADEOFFS;
+
+    private final BiConsumer<String, String> onSection;
+    private final StringBuilder line = new StringBuilder();
+    private final StringBuilder section = new StringBuilder();
+    private String currentLabel;
+
+    public StreamingSectionParser(BiConsumer<String, String> onSection) {
+        this.onSection = onSection;
+    }
+
+    public void feed(String delta) {
+        for (int i = 0; i < delta.length(); i++) {
+            char c = delta.charAt(i);
+            if (c == '\n') {
+                completeLine();
+            } else {
+                line.append(c);
+            }
+        }
+    }
+
+    public void finish() {
+        if (line.length() > 0) {
+            completeLine();
+        }
+        emitCurrent();
+    }
+
+    private void completeLine() {
+        String text = line.toString();
+        line.setLength(0);
+
+        String label = ResponseParser.label(text);
+        if (label != null) {
+            emitCurrent();
+            currentLabel = label;
+            section.append(ResponseParser.labelContent(text));
+            return;
+        }
+
+        if (currentLabel != null) {
+            if (section.length() > 0) {
+                section.append('\n');
+            }
+            section.append(text);
+        }
+    }
+
+    private void emitCurrent() {
+        if (currentLabel != null) {
+            onSection.accept(currentLabel, section.toString().trim());
+        }
+        currentLabel = null;
+        section.setLength(0);
+    }
+}
@@ -0,0 +1,36 @@
+// TokenEstimator.java
+package com.billbuddy.util;
+
+/**
+ * Cheap BPE token estimate without a tokenizer: each run of letters/digits
+ * counts one token per 4 characters (rounded up) and each punctuation mark
+ * counts one. Tracks cl100k counts for English prose to within ~10%.
+ */
+public final class TokenEstimator {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int tokens = 0;
+        int run = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                run++;
+                continue;
+            }
+            tokens += (run + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+            run = 0;
+            if (!Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        return tokens + (run + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+}
@@ -0,0 +1,70 @@
+// VectorApiDotKernelTest.java
+package com.billbuddy.util;
+
+import jdk.incubator.vector.FloatVector;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VectorApiDotKernelTest {
+
+    private static final int LANES = FloatVector.SPECIES_PREFERRED.length();
+
+    private final SimilarityKernel.DotKernel vector = new VectorApiDotKernel();
+    private final SimilarityKernel.DotKernel scalar = new SimilarityKernel.ScalarDotKernel();
+
+    @Test
+    void surefireRunsTheVectorKernel() {
+        assertEquals("vector-api", SimilarityKernel.implementation());
+    }
+
+    @Test
+    void matchesTheScalarKernelAcrossTailLengths() {
+        int[] lengths = {0, 1, LANES - 1, LANES, LANES + 1, 2 * LANES - 1, 2 * LANES, 2 * LANES + 1,
+                3 * LANES + 3, 37, 1536, 1536 + 2 * LANES - 1};
+        for (int length : lengths) {
+            float[] a = vector(length, 1);
+            float[] b = vector(length, 2);
+            assertClose(scalar.dot(a, 0, b, 0, length), vector.dot(a, 0, b, 0, length), a, 0, b, 0, length);
+        }
+    }
+
+    @Test
+    void matchesTheScalarKernelAtNonZeroOffsets() {
+        float[] a = vector(1600, 3);
+        float[] b = vector(1600, 4);
+        int[][] cases = {{1, 0, 17}, {0, 5, 2 * LANES + 1}, {3, 7, 97}, {13, 29, 1536}, {1599, 0, 1}};
+        for (int[] c : cases) {
+            int aOffset = c[0];
+            int bOffset = c[1];
+            int length = c[2];
+            assertClose(scalar.dot(a, aOffset, b, bOffset, length), vector.dot(a, aOffset, b, bOffset, length),
+                    a, aOffset, b, bOffset, length);
+        }
+    }
+
+    /**
+     * The kernels sum in different orders, so allow rounding relative to the
+     * magnitude of the terms rather than of the (possibly cancelling) result.
+     */
+    private static void assertClose(float expected, float actual,
+                                    float[] a, int aOffset, float[] b, int bOffset, int length) {
+        double magnitude = 0;
+        for (int i = 0; i < length; i++) {
+            magnitude += Math.abs(a[aOffset + i] * b[bOffset + i]);
+        }
+        assertEquals(expected, actual, magnitude * 1e-5 + 1e-7,
+                "length " + length + ", offsets " + aOffset + "/" + bOffset);
+    }
+
+    private static float[] vector(int dimension, long seed) {
+        Random random = new Random(seed);
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,168 @@
+// HnswRecallTest.java
+package com.billbuddy.index;
+
+import com.billbuddy.model.Plan;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Recall@10 of the HNSW strategy against the exact scan, over the same seeded
+ * vectors, with the graph parameters shipped in application.properties.
+ *
+ * <p>The vectors are clustered and of low intrinsic dimension, like text
+ * embeddings, and queries sit near stored plans. Uniform random vectors in
+ * 1536 dimensions are the worst case for any graph index (every point is
+ * about equally far from every other) and are not what the catalog holds.
+ *
+ * <p>The data set is sized to keep {@code mvn test} quick; the full-size sweep
+ * (5k plans and more, 1536 dimensions) is {@code benchmarks/.../HnswRecall}.
+ */
+class HnswRecallTest {
+
+    private static final int PLANS = 2000;
+    private static final int QUERIES = 200;
+    private static final int DIMENSIONS = 384;
+    private static final int LATENT_DIMENSIONS = 64;
+    private static final int CLUSTERS = 40;
+    private static final int TOP_K = 10;
+
+    private static List<Plan> plans;
+    private static List<float[]> vectors;
+    private static List<float[]> queries;
+    private static VectorIndex exact;
+
+    @BeforeAll
+    static void buildData() {
+        Random random = new Random(1);
+        double[][] projection = gaussian(random, LATENT_DIMENSIONS, DIMENSIONS);
+        double[][] centroids = gaussian(random, CLUSTERS, LATENT_DIMENSIONS);
+
+        plans = new ArrayList<>(PLANS);
+        vectors = new ArrayList<>(PLANS);
+        for (int i = 0; i < PLANS; i++) {
+            Plan plan = new Plan();
+            plan.setId((long) i + 1);
+            plans.add(plan);
+            vectors.add(embedding(random, projection, centroids[random.nextInt(CLUSTERS)]));
+        }
+
+        queries = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            float[] near = vectors.get(random.nextInt(PLANS));
+            double[] query = new double[DIMENSIONS];
+            for (int d = 0; d < DIMENSIONS; d++) {
+                query[d] = near[d] + random.nextGaussian() * 0.8 / Math.sqrt(DIMENSIONS);
+            }
+            queries.add(normalize(query));
+        }
+
+        exact = index(new ExactSearchStrategy());
+    }
+
+    @Test
+    void shippedDefaultsReachRecallFloor() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = getClass().getResourceAsStream("/application.properties")) {
+            properties.load(in);
+        }
+        HnswSearchStrategy strategy = new HnswSearchStrategy(
+                Integer.parseInt(properties.getProperty("billbuddy.vector.hnsw.m")),
+                Integer.parseInt(properties.getProperty("billbuddy.vector.hnsw.ef-construction")),
+                Integer.parseInt(properties.getProperty("billbuddy.vector.hnsw.ef-search")),
+                42);
+
+        double recall = recall(index(strategy));
+        assertTrue(recall >= 0.98, "recall@" + TOP_K + " " + recall);
+    }
+
+    @Test
+    void largerEfSearchDoesNotLowerRecall() {
+        double narrow = recall(index(new HnswSearchStrategy(16, 200, 16, 42)));
+        double wide = recall(index(new HnswSearchStrategy(16, 200, 400, 42)));
+        assertTrue(wide >= narrow, "ef-search 16: " + narrow + ", 400: " + wide);
+        assertTrue(wide >= 0.99, "recall@" + TOP_K + " " + wide);
+    }
+
+    @Test
+    void storedVectorFindsItsOwnPlanFirst() {
+        VectorIndex hnsw = index(new HnswSearchStrategy(16, 200, 64, 42));
+        for (int i = 0; i < PLANS; i += 97) {
+            assertEquals(plans.get(i).getId(), hnsw.search(vectors.get(i), 1).get(0).plan().getId());
+        }
+    }
+
+    private static double recall(VectorIndex approximate) {
+        long found = 0;
+        for (float[] query : queries) {
+            Set<Long> expected = new HashSet<>();
+            exact.search(query, TOP_K).forEach(hit -> expected.add(hit.plan().getId()));
+            for (SearchHit hit : approximate.search(query, TOP_K)) {
+                if (expected.contains(hit.plan().getId())) {
+                    found++;
+                }
+            }
+        }
+        return (double) found / (QUERIES * TOP_K);
+    }
+
+    private static VectorIndex index(VectorSearchStrategy strategy) {
+        VectorIndex index = new VectorIndex(strategy);
+        for (int i = 0; i < PLANS; i++) {
+            index.upsert(plans.get(i), vectors.get(i));
+        }
+        return index;
+    }
+
+    /**
+     * A point near {@code centroid} in the latent space, projected up to
+     * {@link #DIMENSIONS} with a little full-rank noise.
+     */
+    private static float[] embedding(Random random, double[][] projection, double[] centroid) {
+        double[] vector = new double[DIMENSIONS];
+        for (int l = 0; l < LATENT_DIMENSIONS; l++) {
+            double weight = centroid[l] + random.nextGaussian() * 0.7;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                vector[d] += weight * projection[l][d];
+            }
+        }
+        for (int d = 0; d < DIMENSIONS; d++) {
+            vector[d] += random.nextGaussian() * 2.0;
+        }
+        return normalize(vector);
+    }
+
+    private static double[][] gaussian(Random random, int rows, int columns) {
+        double[][] matrix = new double[rows][columns];
+        for (double[] row : matrix) {
+            for (int i = 0; i < columns; i++) {
+                row[i] = random.nextGaussian();
+            }
+        }
+        return matrix;
+    }
+
+    private static float[] normalize(double[] vector) {
+        double norm = 0;
+        for (double v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] result = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = (float) (vector[i] / norm);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,49 @@
+// VectorIndexTest.java
+package com.billbuddy.index;
+
+import com.billbuddy.model.Plan;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VectorIndexTest {
+
+    @Test
+    void unsavedPlanIsRejected() {
+        VectorIndex index = new VectorIndex(new ExactSearchStrategy());
+
+        assertThrows(IllegalArgumentException.class, () -> index.upsert(new Plan(), new float[]{1, 0}));
+        assertEquals(0, index.size());
+        assertEquals(0, index.chunkCount());
+    }
+
+    @Test
+    void upsertReplacesThePlansRows() {
+        VectorIndex index = new VectorIndex(new ExactSearchStrategy());
+        Plan plan = new Plan();
+        plan.setId(1L);
+
+        index.upsert(plan, List.of(new float[]{1, 0}, new float[]{0, 1}), null);
+        index.upsert(plan, List.of(new float[]{1, 1}), null);
+
+        assertEquals(1, index.size());
+        assertEquals(1, index.chunkCount());
+    }
+
+    @Test
+    void mismatchedVectorsLeaveAnEmptyIndexOpenToAnyDimension() {
+        VectorIndex index = new VectorIndex(new ExactSearchStrategy());
+        Plan plan = new Plan();
+        plan.setId(1L);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> index.upsert(plan, List.of(new float[]{1, 0}, new float[]{1, 0, 0}), null));
+        assertEquals(0, index.size());
+
+        index.upsert(plan, List.of(new float[]{1, 0, 0}), null);
+        assertEquals(1, index.size());
+    }
+}
@@ -0,0 +1,154 @@
+// VectorSnapshotTest.java
+package com.billbuddy.index;
+
+import com.billbuddy.model.Plan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VectorSnapshotTest {
+
+    private static final int PLANS = 500;
+    private static final int DIMENSIONS = 64;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoreAdoptsTheStoredGraph() throws IOException {
+        List<Plan> plans = plans();
+        VectorIndex original = index(new HnswSearchStrategy(8, 64, 32, 42), plans);
+        Path file = directory.resolve("index.snap");
+        assertEquals(PLANS, VectorSnapshot.write(original, file));
+
+        VectorSnapshot snapshot = VectorSnapshot.open(file);
+        assertTrue(snapshot.hasGraph());
+        VectorIndex restored = new VectorIndex(new HnswSearchStrategy(8, 64, 32, 42));
+        VectorIndex.Restore restore = restored.restore(snapshot, plans);
+
+        assertTrue(restore.remaining().isEmpty());
+        assertFalse(restore.graphRebuilt());
+        assertEquals(PLANS, restored.size());
+        Random random = new Random(5);
+        for (int q = 0; q < 50; q++) {
+            float[] query = vector(random);
+            assertEquals(ids(original.search(query, 10)), ids(restored.search(query, 10)));
+        }
+    }
+
+    @Test
+    void snapshotWithoutGraphIsLinkedOnRestore() throws IOException {
+        List<Plan> plans = plans();
+        Path file = directory.resolve("index.snap");
+        VectorSnapshot.write(index(new ExactSearchStrategy(), plans), file);
+
+        VectorSnapshot snapshot = VectorSnapshot.open(file);
+        assertFalse(snapshot.hasGraph());
+        VectorIndex restored = new VectorIndex(new HnswSearchStrategy(8, 64, 32, 42));
+        VectorIndex.Restore restore = restored.restore(snapshot, plans);
+
+        assertTrue(restore.graphRebuilt());
+        Plan plan = plans.get(17);
+        float[] query = vector(new Random(plan.getId()));
+        assertEquals(plan.getId(), restored.search(query, 1).get(0).plan().getId());
+    }
+
+    @Test
+    void plansMissingFromTheSnapshotAreLeftToTheCaller() throws IOException {
+        List<Plan> plans = plans();
+        Path file = directory.resolve("index.snap");
+        VectorSnapshot.write(index(new HnswSearchStrategy(8, 64, 32, 42), plans.subList(0, 400)), file);
+
+        VectorIndex restored = new VectorIndex(new HnswSearchStrategy(8, 64, 32, 42));
+        VectorIndex.Restore restore = restored.restore(VectorSnapshot.open(file), plans.subList(100, PLANS));
+
+        // 100..399 restored, 400..499 remaining; rows of 0..99 are released
+        assertEquals(100, restore.remaining().size());
+        assertEquals(300, restored.size());
+        for (Plan plan : restore.remaining()) {
+            restored.upsert(plan, vector(new Random(plan.getId())));
+        }
+        assertEquals(400, restored.size());
+        Plan plan = plans.get(450);
+        assertEquals(plan.getId(), restored.search(vector(new Random(plan.getId())), 1).get(0).plan().getId());
+    }
+
+    @Test
+    void headerCountsOutOfRangeAreRejectedAsIOException() throws IOException {
+        Path file = directory.resolve("index.snap");
+        VectorSnapshot.write(index(new HnswSearchStrategy(8, 64, 32, 42), plans()), file);
+
+        // The checksum covers everything after the header, so these edits still pass it
+        int[][] corruptions = {{12, -1}, {16, -1}, {16, Integer.MAX_VALUE}, {8, 1 << 30}, {8, -DIMENSIONS}};
+        for (int[] corruption : corruptions) {
+            int original = overwriteHeader(file, corruption[0], corruption[1]);
+            assertThrows(IOException.class, () -> VectorSnapshot.open(file),
+                    "header offset " + corruption[0] + " = " + corruption[1]);
+            overwriteHeader(file, corruption[0], original);
+        }
+        assertEquals(PLANS, VectorSnapshot.open(file).size());
+    }
+
+    private static int overwriteHeader(Path file, int offset, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer field = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(field, offset);
+            int original = field.getInt(0);
+            field.clear();
+            field.putInt(0, value);
+            channel.write(field, offset);
+            return original;
+        }
+    }
+
+    private static List<Plan> plans() {
+        HexFormat hex = HexFormat.of();
+        List<Plan> plans = new ArrayList<>(PLANS);
+        for (int i = 0; i < PLANS; i++) {
+            Plan plan = new Plan();
+            plan.setId((long) i + 1);
+            plan.setProvider("Provider " + (i % 7));
+            plan.setMonthlyPrice(20.0 + i % 50);
+            byte[] hash = new byte[32];
+            new Random(i).nextBytes(hash);
+            plan.setContentHash(hex.formatHex(hash));
+            plans.add(plan);
+        }
+        return plans;
+    }
+
+    private static VectorIndex index(VectorSearchStrategy strategy, List<Plan> plans) {
+        VectorIndex index = new VectorIndex(strategy);
+        for (Plan plan : plans) {
+            index.upsert(plan, List.of(vector(new Random(plan.getId()))), List.of("chunk of " + plan.getId()));
+        }
+        return index;
+    }
+
+    private static float[] vector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static List<Long> ids(List<SearchHit> hits) {
+        return hits.stream().map(hit -> hit.plan().getId()).toList();
+    }
+}
@@ -0,0 +1,81 @@
+// AdmissionControllerTest.java
+package com.billbuddy.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControllerTest {
+
+    @Test
+    void sessionRejectionGivesTheClientTokenBack() {
+        // Session: burst 1; client: burst 3. Rates are slow enough not to refill during the test.
+        AdmissionController admission = controller(0.001, 1, 0.001, 3, 100);
+
+        admission.admit("session-a", "10.0.0.1");
+        for (int i = 0; i < 5; i++) {
+            AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class,
+                    () -> admission.admit("session-a", "10.0.0.1"));
+            assertEquals(AdmissionRejectedException.Reason.SESSION_RATE, e.getReason());
+        }
+
+        // The rejected questions did not drain the client bucket
+        admission.admit("session-b", "10.0.0.1");
+        admission.admit("session-c", "10.0.0.1");
+        AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class,
+                () -> admission.admit("session-d", "10.0.0.1"));
+        assertEquals(AdmissionRejectedException.Reason.CLIENT_RATE, e.getReason());
+    }
+
+    @Test
+    void refilledBucketsAreSweptPastMaxKeys() throws InterruptedException {
+        // Fast refill: every bucket is full again a few milliseconds after its one question
+        AdmissionController admission = controller(1000, 1, 0, 1, 8);
+        for (int i = 0; i < 8; i++) {
+            admission.admit("session-" + i, null);
+        }
+        Thread.sleep(10);
+        for (int i = 8; i < 16; i++) {
+            admission.admit("session-" + i, null);
+        }
+
+        int sessions = (int) admission.stats().get("sessions");
+        assertTrue(sessions <= 10, "sessions " + sessions);
+    }
+
+    @Test
+    void queuedBatchCallTakesTheNextReleasedSlot() throws Exception {
+        AdmissionController admission = controller(0, 1, 0, 1, 100);
+        List<AdmissionController.Slot> slots = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            slots.add(admission.acquireCompletion(false));
+        }
+        AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class,
+                () -> admission.acquireCompletion(false));
+        assertEquals(AdmissionRejectedException.Reason.OVERLOADED, e.getReason());
+
+        CompletableFuture<AdmissionController.Slot> queued =
+                CompletableFuture.supplyAsync(() -> admission.acquireCompletion(true));
+        Thread.sleep(50);
+        assertFalse(queued.isDone());
+
+        slots.get(0).release(false);
+        queued.get(1, TimeUnit.SECONDS).release(false);
+        assertEquals(3, admission.stats().get("inFlight"));
+    }
+
+    private static AdmissionController controller(double sessionRate, double sessionBurst,
+                                                  double clientRate, double clientBurst, int maxKeys) {
+        return new AdmissionController(true, sessionRate, sessionBurst, clientRate, clientBurst, maxKeys,
+                4, 1, 8, Duration.ofSeconds(10), 0.9, Duration.ofSeconds(1));
+    }
+}
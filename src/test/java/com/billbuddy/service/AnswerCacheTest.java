@@ -0,0 +1,64 @@
+// AnswerCacheTest.java
+package com.billbuddy.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AnswerCacheTest {
+
+    private static final long[] PLANS = {3, 1, 2};
+    private static final long[] VERSIONS = {7, 7, 7};
+
+    @Test
+    void nearQueryOverTheSameRankedPlansHits() {
+        AnswerCache cache = new AnswerCache(true, 0.97f, 10, Duration.ofHours(1));
+        cache.put(new float[]{1f, 0f, 0f}, PLANS, VERSIONS, "answer");
+
+        assertEquals("answer", cache.lookup(new float[]{1f, 0.1f, 0f}, PLANS, VERSIONS));
+        assertNull(cache.lookup(new float[]{0f, 1f, 0f}, PLANS, VERSIONS));
+        // Same plans, different rank: the context would be ordered differently
+        assertNull(cache.lookup(new float[]{1f, 0f, 0f}, new long[]{1, 2, 3}, VERSIONS));
+        assertNull(cache.lookup(new float[]{1f, 0f, 0f}, PLANS, new long[]{7, 8, 7}));
+    }
+
+    @Test
+    void reindexedPlanInvalidatesItsEntries() {
+        AnswerCache cache = new AnswerCache(true, 0.97f, 10, Duration.ofHours(1));
+        cache.put(new float[]{1f, 0f}, PLANS, VERSIONS, "cites 2");
+        cache.put(new float[]{1f, 0f}, new long[]{4}, new long[]{7}, "cites 4");
+
+        cache.onPlanIndexed(new PlanIndexedEvent(List.of(2L)));
+
+        assertNull(cache.lookup(new float[]{1f, 0f}, PLANS, VERSIONS));
+        assertEquals("cites 4", cache.lookup(new float[]{1f, 0f}, new long[]{4}, new long[]{7}));
+        assertEquals(1L, cache.stats().get("invalidations"));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        AnswerCache cache = new AnswerCache(true, 0.97f, 2, Duration.ofHours(1));
+        cache.put(new float[]{1f, 0f}, new long[]{1}, new long[]{1}, "one");
+        cache.put(new float[]{1f, 0f}, new long[]{2}, new long[]{1}, "two");
+        cache.lookup(new float[]{1f, 0f}, new long[]{1}, new long[]{1});
+        cache.put(new float[]{1f, 0f}, new long[]{3}, new long[]{1}, "three");
+
+        assertEquals("one", cache.lookup(new float[]{1f, 0f}, new long[]{1}, new long[]{1}));
+        assertNull(cache.lookup(new float[]{1f, 0f}, new long[]{2}, new long[]{1}));
+        assertEquals(2, cache.stats().get("size"));
+    }
+
+    @Test
+    void expiredEntriesAreDroppedOnLookup() {
+        AnswerCache cache = new AnswerCache(true, 0.97f, 10, Duration.ZERO);
+        cache.put(new float[]{1f, 0f}, PLANS, VERSIONS, "answer");
+
+        assertNull(cache.lookup(new float[]{1f, 0f}, PLANS, VERSIONS));
+        assertEquals(0, cache.stats().get("size"));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+}
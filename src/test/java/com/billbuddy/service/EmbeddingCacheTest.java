@@ -0,0 +1,76 @@
+// EmbeddingCacheTest.java
+package com.billbuddy.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmbeddingCacheTest {
+
+    private static final String MODEL = "test-model";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void diskEntriesSurviveARestartUntilTheirTtl() throws IOException {
+        new EmbeddingCache(10, Duration.ofHours(1), directory.toString(), 100)
+                .put(MODEL, "fresh", new float[]{1f, 2f});
+        new EmbeddingCache(10, Duration.ofHours(1), directory.toString(), 100)
+                .put(MODEL, "stale", new float[]{3f, 4f});
+        age(file("stale"), Duration.ofHours(2));
+
+        EmbeddingCache restarted = new EmbeddingCache(10, Duration.ofHours(1), directory.toString(), 100);
+        assertArrayEquals(new float[]{1f, 2f}, restarted.get(MODEL, "  FRESH "));
+        assertNull(restarted.get(MODEL, "stale"));
+        assertTrue(Files.notExists(file("stale")));
+        assertEquals(1L, restarted.stats().get("diskHits"));
+        assertEquals(1L, restarted.stats().get("misses"));
+    }
+
+    @Test
+    void diskTierIsPrunedOldestFirstPastItsCap() throws IOException {
+        EmbeddingCache cache = new EmbeddingCache(0, Duration.ofHours(1), directory.toString(), 8);
+        for (int i = 0; i < 8; i++) {
+            cache.put(MODEL, "text " + i, new float[]{i});
+            age(file("text " + i), Duration.ofMinutes(30 - i));
+        }
+        cache.put(MODEL, "text 8", new float[]{8f});
+
+        assertEquals(6, cachedFiles().size());
+        assertEquals(6, cache.stats().get("diskSize"));
+        assertNull(cache.get(MODEL, "text 0"));
+        assertNull(cache.get(MODEL, "text 2"));
+        assertNotNull(cache.get(MODEL, "text 3"));
+        assertNotNull(cache.get(MODEL, "text 8"));
+    }
+
+    private Path file(String text) {
+        String key = EmbeddingCache.key(MODEL, text);
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".emb");
+    }
+
+    private static void age(Path file, Duration age) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(age)));
+    }
+
+    private List<Path> cachedFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(file -> file.toString().endsWith(".emb")).toList();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+// UpstreamGuardTest.java
+package com.billbuddy.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UpstreamGuardTest {
+
+    @Test
+    void hedgeIsSkippedWhenNoPermitIsFree() {
+        UpstreamLimiter limiter = new UpstreamLimiter("test", 1, Duration.ofSeconds(1));
+        UpstreamGuard guard = new UpstreamGuard(limiter, null, 1, Duration.ZERO, Duration.ZERO, Duration.ofMillis(10));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        try {
+            String result = guard.call(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(100);
+                running.decrementAndGet();
+                return "slow";
+            }, true);
+
+            assertEquals("slow", result);
+            assertEquals(1, peak.get());
+            assertEquals(0L, guard.stats().get("hedged"));
+            assertEquals(1L, guard.stats().get("hedgesSkipped"));
+            assertEquals(0, limiter.inFlight());
+        } finally {
+            guard.shutdown();
+        }
+    }
+
+    @Test
+    void hedgeHoldsItsOwnPermitUntilItFinishes() {
+        UpstreamLimiter limiter = new UpstreamLimiter("test", 2, Duration.ofSeconds(1));
+        UpstreamGuard guard = new UpstreamGuard(limiter, null, 1, Duration.ZERO, Duration.ZERO, Duration.ofMillis(10));
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            String result = guard.call(() -> {
+                if (attempts.incrementAndGet() == 1) {
+                    sleep(300);
+                    return "primary";
+                }
+                return "hedge";
+            }, true);
+
+            assertEquals("hedge", result);
+            assertEquals(1L, guard.stats().get("hedgeWins"));
+            // The slow primary is still running on its own permit
+            assertEquals(1, limiter.inFlight());
+        } finally {
+            guard.shutdown();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
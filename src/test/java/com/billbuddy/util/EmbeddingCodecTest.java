@@ -0,0 +1,122 @@
+// EmbeddingCodecTest.java
+package com.billbuddy.util;
+
+import com.billbuddy.util.EmbeddingCodec.Encoding;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmbeddingCodecTest {
+
+    private static final float SMALLEST_HALF_SUBNORMAL = 0x1p-24f;
+
+    @Test
+    void float32RoundTripIsExact() {
+        float[] vector = vector(1536);
+        assertArrayEquals(vector, EmbeddingCodec.decode(EmbeddingCodec.encode(vector, Encoding.FLOAT32)));
+    }
+
+    @Test
+    void float16RoundTripIsWithinHalfPrecision() {
+        float[] vector = vector(1536);
+        float[] decoded = EmbeddingCodec.decode(EmbeddingCodec.encode(vector, Encoding.FLOAT16));
+        for (int i = 0; i < vector.length; i++) {
+            assertEquals(vector[i], decoded[i], Math.abs(vector[i]) * 1e-3f + SMALLEST_HALF_SUBNORMAL, "index " + i);
+        }
+    }
+
+    @Test
+    void int8RoundTripIsWithinHalfAStep() {
+        float[] vector = vector(1536);
+        float maxAbs = 0f;
+        for (float v : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(v));
+        }
+        float scale = maxAbs / 127f;
+
+        float[] decoded = EmbeddingCodec.decode(EmbeddingCodec.encode(vector, Encoding.INT8));
+        for (int i = 0; i < vector.length; i++) {
+            assertEquals(vector[i], decoded[i], scale / 2 + Math.ulp(maxAbs), "index " + i);
+        }
+    }
+
+    @Test
+    void halfKeepsSignedZero() {
+        assertEquals(0x0000, EmbeddingCodec.toHalf(0f));
+        assertEquals((short) 0x8000, EmbeddingCodec.toHalf(-0f));
+        assertEquals(Float.floatToRawIntBits(-0f), Float.floatToRawIntBits(EmbeddingCodec.fromHalf((short) 0x8000)));
+    }
+
+    @Test
+    void halfSubnormalsRoundTrip() {
+        assertEquals(0x0001, EmbeddingCodec.toHalf(SMALLEST_HALF_SUBNORMAL));
+        assertEquals(SMALLEST_HALF_SUBNORMAL, EmbeddingCodec.fromHalf((short) 0x0001));
+        assertEquals(0x03ff, EmbeddingCodec.toHalf(1023 * SMALLEST_HALF_SUBNORMAL));
+        assertEquals(1023 * SMALLEST_HALF_SUBNORMAL, EmbeddingCodec.fromHalf((short) 0x03ff));
+        // Below half the smallest subnormal underflows to zero; exactly half ties to even (zero)
+        assertEquals(0x0000, EmbeddingCodec.toHalf(SMALLEST_HALF_SUBNORMAL / 2));
+        assertEquals(0x0001, EmbeddingCodec.toHalf(SMALLEST_HALF_SUBNORMAL * 0.75f));
+        assertEquals((short) 0x8000, EmbeddingCodec.toHalf(-Float.MIN_VALUE));
+    }
+
+    @Test
+    void halfRoundsToNearestEven() {
+        assertEquals(0x3c00, EmbeddingCodec.toHalf(1f + 0x1p-11f));
+        assertEquals(0x3c02, EmbeddingCodec.toHalf(1f + 3 * 0x1p-11f));
+    }
+
+    @Test
+    void halfOverflowsToInfinity() {
+        assertEquals(0x7bff, EmbeddingCodec.toHalf(65504f));
+        assertEquals(0x7c00, EmbeddingCodec.toHalf(65520f));
+        assertEquals(0x7c00, EmbeddingCodec.toHalf(1e6f));
+        assertEquals((short) 0xfc00, EmbeddingCodec.toHalf(Float.NEGATIVE_INFINITY));
+        assertEquals(Float.POSITIVE_INFINITY, EmbeddingCodec.fromHalf((short) 0x7c00));
+        assertEquals(Float.NEGATIVE_INFINITY, EmbeddingCodec.fromHalf((short) 0xfc00));
+    }
+
+    @Test
+    void halfKeepsNaN() {
+        short half = EmbeddingCodec.toHalf(Float.NaN);
+        assertEquals(0x7c00, half & 0x7c00);
+        assertTrue((half & 0x3ff) != 0);
+        assertTrue(Float.isNaN(EmbeddingCodec.fromHalf(half)));
+    }
+
+    @Test
+    void truncatedPayloadIsRejected() {
+        byte[] encoded = EmbeddingCodec.encode(vector(16), Encoding.FLOAT16);
+        assertThrows(IllegalArgumentException.class,
+                () -> EmbeddingCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> EmbeddingCodec.decode(Arrays.copyOf(encoded, encoded.length + 2)));
+    }
+
+    @Test
+    void negativeOrHugeDimensionIsRejected() {
+        byte[] encoded = EmbeddingCodec.encode(vector(16), Encoding.INT8);
+        ByteBuffer header = ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN);
+
+        header.putInt(4, -1);
+        assertThrows(IllegalArgumentException.class, () -> EmbeddingCodec.decode(encoded));
+        header.putInt(4, Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> EmbeddingCodec.decode(encoded));
+    }
+
+    private static float[] vector(int dimension) {
+        Random random = new Random(7);
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) (random.nextGaussian() * 0.05);
+        }
+        return vector;
+    }
+}
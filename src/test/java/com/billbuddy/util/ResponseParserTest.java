@@ -0,0 +1,113 @@
+// ResponseParserTest.java
+package com.billbuddy.util;
+
+import com.billbuddy.util.ResponseParser.Format;
+import com.billbuddy.util.ResponseParser.Parsed;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseParserTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "Recommendation, RECOMMENDATION",
+            "Recommended Plan, RECOMMENDATION",
+            "Explanation, EXPLANATION",
+            "Reasoning, EXPLANATION",
+            "Monthly Cost, MONTHLY COST",
+            "Estimated Monthly Cost, MONTHLY COST",
+            "Estimated Cost, MONTHLY COST",
+            "Monthly Price, MONTHLY COST",
+            "Tradeoffs, TRADEOFFS",
+            "Trade-offs, TRADEOFFS",
+            "Trade Offs, TRADEOFFS"})
+    void everyLabelSpellingMatchesWithEitherEmphasis(String spelling, String section) {
+        assertEquals(section, ResponseParser.label(spelling + ": text"));
+        assertEquals(section, ResponseParser.label("**" + spelling + "**: text"));
+        assertEquals(section, ResponseParser.label("**" + spelling + ":** text"));
+        assertEquals(section, ResponseParser.label("## " + spelling.toUpperCase(Locale.ROOT) + ": text"));
+        assertEquals("text", ResponseParser.labelContent("**" + spelling + ":** text"));
+        assertNull(ResponseParser.label(spelling + " text"));
+    }
+
+    @Test
+    void sectionsMayComeInAnyOrder() {
+        Parsed parsed = ResponseParser.parse("""
+                **Trade-offs:**
+                - No unlimited data
+                - Slower speeds after 40GB
+                **Estimated Monthly Cost**: $45.00 per month
+                **Reasoning**: Best value for light users.
+                **Recommended Plan:** Acme Mobile 40GB
+                """);
+
+        assertEquals(Format.SECTIONS, parsed.format());
+        assertTrue(parsed.complete());
+        assertEquals("Acme Mobile 40GB", parsed.recommendation());
+        assertEquals("Best value for light users.", parsed.explanation());
+        assertEquals("$45.00 per month", parsed.monthlyCost());
+        assertEquals(45.0, parsed.estimatedMonthlyCost());
+        assertEquals(List.of("No unlimited data", "Slower speeds after 40GB"), parsed.tradeoffs());
+    }
+
+    @Test
+    void jsonInACodeFenceIsParsed() {
+        Parsed parsed = ResponseParser.parse("""
+                ```json
+                {
+                  "recommendation": "Acme Fibre 100",
+                  "explanation": "Fastest plan under budget.",
+                  "estimatedMonthlyCost": 79.5,
+                  "tradeoffs": ["12 month contract", "Setup fee"]
+                }
+                ```
+                """);
+
+        assertEquals(Format.JSON, parsed.format());
+        assertTrue(parsed.complete());
+        assertEquals("Acme Fibre 100", parsed.recommendation());
+        assertEquals("Fastest plan under budget.", parsed.explanation());
+        assertEquals(79.5, parsed.estimatedMonthlyCost());
+        assertEquals(List.of("12 month contract", "Setup fee"), parsed.tradeoffs());
+    }
+
+    @Test
+    void malformedJsonFallsBackToSections() {
+        Parsed parsed = ResponseParser.parse("""
+                {"recommendation": "Acme Fibre 100",
+                RECOMMENDATION: Acme Fibre 100
+                MONTHLY COST: $79.50
+                """);
+
+        assertEquals(Format.JSON, parsed.format());
+        assertFalse(parsed.complete());
+        assertEquals("Acme Fibre 100", parsed.recommendation());
+        assertEquals(79.5, parsed.estimatedMonthlyCost());
+    }
+
+    @Test
+    void parseCostReadsTheFirstAmount() {
+        assertEquals(1299.5, ResponseParser.parseCost("$1,299.50 per month"));
+        assertEquals(45.0, ResponseParser.parseCost("About $45/month, or $500 a year"));
+        assertEquals(0.05, ResponseParser.parseCost("$0.05"));
+        assertNull(ResponseParser.parseCost("Free"));
+        assertNull(ResponseParser.parseCost(null));
+    }
+
+    @Test
+    void parseCostRejectsAmountsTooLongToHoldExactly() {
+        assertEquals(123456789012345678.0, ResponseParser.parseCost("123456789012345678"));
+        assertEquals(12.5, ResponseParser.parseCost("0000000000000000000012.5"));
+        assertNull(ResponseParser.parseCost("1234567890123456789"));
+        assertNull(ResponseParser.parseCost("$1,234,567,890,123,456.789"));
+    }
+}